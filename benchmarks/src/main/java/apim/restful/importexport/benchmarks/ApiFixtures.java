@@ -0,0 +1,227 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.benchmarks;
+
+import apim.restful.importexport.utils.ArchiveWriter;
+import org.wso2.carbon.apimgt.api.model.API;
+import org.wso2.carbon.apimgt.api.model.APIIdentifier;
+import org.wso2.carbon.apimgt.api.model.APIStatus;
+import org.wso2.carbon.apimgt.api.model.Documentation;
+import org.wso2.carbon.apimgt.api.model.DocumentationType;
+import org.wso2.carbon.apimgt.api.model.Tier;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This class generates the synthetic APIs and API folders used by the benchmarks. Content is generated
+ * from fixed seeds, so that every run works on the same data
+ */
+public final class ApiFixtures {
+
+    /**
+     * Shapes of the generated API folders
+     */
+    public enum Shape {
+        //many small FILE documents
+        SMALL_DOCS,
+        //a single large, highly compressible WSDL
+        LARGE_WSDL,
+        //a large, incompressible icon
+        LARGE_ICON
+    }
+
+    public static final String API_NAME = "PizzaShackAPI";
+    public static final String API_VERSION = "1.0.0";
+    public static final String API_PROVIDER = "admin";
+
+    private static final int SMALL_DOC_COUNT = 200;
+    private static final int SMALL_DOC_SIZE = 4 * 1024;
+    private static final int LARGE_WSDL_SIZE = 16 * 1024 * 1024;
+    private static final int LARGE_ICON_SIZE = 4 * 1024 * 1024;
+
+    private ApiFixtures() {
+    }
+
+    /**
+     * Create an empty directory for the files of a benchmark under the temporary directory
+     *
+     * @param benchmarkName Name of the benchmark
+     * @return Created directory
+     * @throws IOException If the directory cannot be created
+     */
+    public static File createWorkDirectory(String benchmarkName) throws IOException {
+        File workDirectory = new File(System.getProperty("java.io.tmpdir"),
+                "api-import-export-" + benchmarkName + "-" + UUID.randomUUID());
+        if (!workDirectory.mkdirs()) {
+            throw new IOException("Directory creation failed " + workDirectory.getPath());
+        }
+        return workDirectory;
+    }
+
+    /**
+     * Write the folder of an exported API of the given shape
+     *
+     * @param archiveWriter Destination of the API folder
+     * @param shape         Shape of the API folder
+     * @throws IOException If an entry cannot be written
+     */
+    public static void writeApiFolder(ArchiveWriter archiveWriter, Shape shape) throws IOException {
+        String apiFolder = API_NAME + "-" + API_VERSION + "/";
+        Random random = new Random(shape.ordinal());
+
+        archiveWriter.writeEntry(apiFolder + "Meta-information/api.json", "{\"id\":{\"providerName\":\"" +
+                API_PROVIDER + "\",\"apiName\":\"" + API_NAME + "\",\"version\":\"" + API_VERSION + "\"}}");
+        archiveWriter.writeEntry(apiFolder + "Meta-information/swagger.json", new String(text(random, 16 * 1024),
+                "UTF-8"));
+
+        switch (shape) {
+            case SMALL_DOCS:
+                for (int i = 0; i < SMALL_DOC_COUNT; i++) {
+                    archiveWriter.writeEntry(apiFolder + "Docs/doc-" + i + ".txt",
+                            new ByteArrayInputStream(text(random, SMALL_DOC_SIZE)));
+                }
+                break;
+            case LARGE_WSDL:
+                archiveWriter.writeEntry(apiFolder + "WSDL/" + API_NAME + "-" + API_VERSION + ".wsdl",
+                        new ByteArrayInputStream(text(random, LARGE_WSDL_SIZE)));
+                break;
+            case LARGE_ICON:
+                archiveWriter.writeEntry(apiFolder + "Image/icon.png",
+                        new ByteArrayInputStream(bytes(random, LARGE_ICON_SIZE)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    /**
+     * Create an API with the attributes commonly set on published APIs
+     *
+     * @return Created API
+     */
+    public static API createAPI() {
+        API api = new API(new APIIdentifier(API_PROVIDER, API_NAME, API_VERSION));
+        api.setDescription("Pizza ordering API used for benchmarking the export and import of APIs");
+        api.setContext("/pizzashack/" + API_VERSION);
+        api.setUrl("https://localhost:9443/pizzashack-api-1.0.0/api/");
+        api.setTransports("http,https");
+        api.setStatus(APIStatus.PUBLISHED);
+        api.setVisibility("public");
+        api.setInSequence("log_in_message");
+
+        Set<String> tags = new HashSet<String>();
+        tags.add("pizza");
+        tags.add("food");
+        api.addTags(tags);
+
+        Set<Tier> tiers = new HashSet<Tier>();
+        tiers.add(new Tier("Gold"));
+        tiers.add(new Tier("Silver"));
+        tiers.add(new Tier("Unlimited"));
+        api.addAvailableTiers(tiers);
+        return api;
+    }
+
+    /**
+     * Create documentation of all source types
+     *
+     * @param count Number of documents
+     * @return Created documents
+     */
+    public static Documentation[] createDocumentations(int count) {
+        return createDocumentations(count, true);
+    }
+
+    /**
+     * Create documentation of the INLINE and URL source types, and optionally of the FILE source type
+     *
+     * @param count        Number of documents
+     * @param includeFiles Whether documents of the FILE source type are created
+     * @return Created documents
+     */
+    public static Documentation[] createDocumentations(int count, boolean includeFiles) {
+        Documentation[] documentations = new Documentation[count];
+        int sourceTypes = includeFiles ? 3 : 2;
+        for (int i = 0; i < count; i++) {
+            Documentation documentation = new Documentation(DocumentationType.HOWTO, "Document " + i);
+            documentation.setSummary("Summary of document " + i + " of the benchmarked API");
+            switch (i % sourceTypes) {
+                case 0:
+                    documentation.setSourceType(Documentation.DocumentSourceType.INLINE);
+                    break;
+                case 1:
+                    documentation.setSourceType(Documentation.DocumentSourceType.URL);
+                    documentation.setSourceUrl("https://docs.example.com/pizzashack/" + i);
+                    break;
+                default:
+                    documentation.setSourceType(Documentation.DocumentSourceType.FILE);
+                    documentation.setFilePath(File.separator + "Docs" + File.separator + "doc-" + i + ".pdf");
+                    break;
+            }
+            documentations[i] = documentation;
+        }
+        return documentations;
+    }
+
+    /**
+     * Generate incompressible content
+     *
+     * @param random Source of the content
+     * @param size   Size of the content in bytes
+     * @return Generated content
+     */
+    public static byte[] bytes(Random random, int size) {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        return content;
+    }
+
+    /**
+     * Generate XML like text which compresses similar to WSDLs and documents
+     *
+     * @param random Source of the content
+     * @param size   Size of the content in bytes
+     * @return Generated content
+     */
+    public static byte[] text(Random random, int size) {
+        String[] words = {"<xsd:element ", "name=\"", "type=\"xsd:string\"", "/>\n", "<wsdl:operation>",
+                "order", "pizza", "customer", "address", "delivery", "</wsdl:operation>\n", " "};
+        StringBuilder text = new StringBuilder(size + 32);
+        while (text.length() < size) {
+            text.append(words[random.nextInt(words.length)]);
+            if (random.nextInt(8) == 0) {
+                text.append(random.nextInt(100000));
+            }
+        }
+        text.setLength(size);
+        try {
+            return text.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.benchmarks;
+
+import apim.restful.importexport.APIExportException;
+import apim.restful.importexport.APIImportException;
+import apim.restful.importexport.utils.APIImportUtil;
+import apim.restful.importexport.utils.ArchiveGeneratorUtil;
+import apim.restful.importexport.utils.DirectoryArchiveWriter;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks zipping an exported API folder with ArchiveGeneratorUtil and extracting an uploaded
+ * archive with APIImportUtil, for API folders of different shapes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArchiveBenchmark {
+
+    @Param({"SMALL_DOCS", "LARGE_WSDL", "LARGE_ICON"})
+    public ApiFixtures.Shape shape;
+
+    private File workDirectory;
+    private File exportDirectory;
+    private File archive;
+    private File extractDirectory;
+
+    @Setup(Level.Trial)
+    public void createFixtures() throws IOException, APIExportException {
+        workDirectory = ApiFixtures.createWorkDirectory("archive");
+        exportDirectory = new File(workDirectory, "export");
+        ApiFixtures.writeApiFolder(new DirectoryArchiveWriter(exportDirectory.getPath()), shape);
+        ArchiveGeneratorUtil.archiveDirectory(exportDirectory.getPath());
+        archive = new File(exportDirectory.getPath() + ".zip");
+        extractDirectory = new File(workDirectory, "extract");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteExtractedFiles() {
+        FileUtils.deleteQuietly(extractDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFixtures() {
+        FileUtils.deleteQuietly(workDirectory);
+    }
+
+    @Benchmark
+    public void archiveDirectory() throws APIExportException {
+        ArchiveGeneratorUtil.archiveDirectory(exportDirectory.getPath());
+    }
+
+    @Benchmark
+    public String extractArchive() throws APIImportException {
+        return APIImportUtil.extractArchive(archive, extractDirectory.getPath() + File.separator);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.benchmarks;
+
+import apim.restful.importexport.utils.GsonHolder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.carbon.apimgt.api.model.API;
+import org.wso2.carbon.apimgt.api.model.Documentation;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Gson serialization of api.json and docs.json as done by the export, and their
+ * deserialization as done by the import. The benchmarks creating a Gson instance per call are the baseline
+ * for the shared instances of {@link GsonHolder} and the streamed parsing of the import
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsonBenchmark {
+
+    @Param({"10", "200"})
+    public int documentCount;
+
+    private API api;
+    private Documentation[] documentations;
+    private String apiJson;
+    private String documentationJson;
+
+    @Setup
+    public void createFixtures() {
+        api = ApiFixtures.createAPI();
+        documentations = ApiFixtures.createDocumentations(documentCount);
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        apiJson = gson.toJson(api);
+        documentationJson = gson.toJson(documentations);
+    }
+
+    @Benchmark
+    public String serializeAPI() {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(api);
+    }
+
+    @Benchmark
+    public API deserializeAPI() {
+        return new Gson().fromJson(apiJson, API.class);
+    }
+
+    @Benchmark
+    public String serializeDocumentation() {
+        return new GsonBuilder().setPrettyPrinting().create().toJson(documentations);
+    }
+
+    @Benchmark
+    public Documentation[] deserializeDocumentation() {
+        return new Gson().fromJson(documentationJson, Documentation[].class);
+    }
+
+    @Benchmark
+    public String serializeAPIShared() {
+        return GsonHolder.getGson().toJson(api);
+    }
+
+    @Benchmark
+    public String serializeAPISharedPretty() {
+        return GsonHolder.getPrettyGson().toJson(api);
+    }
+
+    @Benchmark
+    public API deserializeAPIShared() {
+        return GsonHolder.getGson().fromJson(apiJson, API.class);
+    }
+
+    @Benchmark
+    public API deserializeAPIWithProvider() {
+        JsonElement configElement = new JsonParser().parse(apiJson);
+        configElement.getAsJsonObject().getAsJsonObject("id").addProperty("providerName", "importer");
+        return new Gson().fromJson(configElement, API.class);
+    }
+
+    @Benchmark
+    public API deserializeAPIWithProviderStreamed() {
+        JsonObject configObject = new JsonParser().parse(new JsonReader(new StringReader(apiJson)))
+                .getAsJsonObject();
+        configObject.getAsJsonObject("id").addProperty("providerName", "importer");
+        return GsonHolder.getGson().fromJson(configObject, API.class);
+    }
+
+    @Benchmark
+    public void deserializeDocumentationStreamed(Blackhole blackhole) throws IOException {
+        JsonReader jsonReader = new JsonReader(new StringReader(documentationJson));
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            Documentation documentation = GsonHolder.getGson().fromJson(jsonReader, Documentation.class);
+            blackhole.consume(documentation);
+        }
+        jsonReader.endArray();
+    }
+}
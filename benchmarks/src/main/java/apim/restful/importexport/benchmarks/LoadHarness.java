@@ -0,0 +1,397 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.benchmarks;
+
+import apim.restful.importexport.APIExportException;
+import apim.restful.importexport.APIImportException;
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.ExportContext;
+import apim.restful.importexport.ImportContext;
+import apim.restful.importexport.utils.APIExportUtil;
+import apim.restful.importexport.utils.APIImportUtil;
+import apim.restful.importexport.utils.ArchiveGeneratorUtil;
+import apim.restful.importexport.utils.AuthenticatorUtil;
+import apim.restful.importexport.utils.DirectoryArchiveWriter;
+import apim.restful.importexport.utils.MetricsRegistry;
+import apim.restful.importexport.utils.PhaseStatistics;
+import apim.restful.importexport.utils.StreamedImportArchive;
+import apim.restful.importexport.utils.WorkspaceManager;
+import apim.restful.importexport.utils.ZipArchiveWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.wso2.carbon.apimgt.api.APIProvider;
+import org.wso2.carbon.apimgt.api.model.APIIdentifier;
+import org.wso2.carbon.registry.api.Registry;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.user.api.UserStoreManager;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class drives concurrent exports and imports of an API against in-memory stand-ins of the API
+ * provider, the registry and the user store, and reports throughput, latency percentiles, bytes
+ * written to temporary storage and heap allocated per operation, followed by the recorded metrics of
+ * every export and import phase.
+ * <p/>
+ * Each operation carries out the same steps as the corresponding request of the APIService: the
+ * user is authorized, a workspace is allocated, the API is exported to a directory and archived, or
+ * the uploaded archive is read and the API is imported, and the workspace is released. The provider,
+ * registry and user store are looked up through the Carbon context by the APIService, hence the
+ * harness passes the stand-ins to the same utilities instead of calling the JAX-RS resource.
+ * <p/>
+ * The harness is configured through system properties:
+ * <ul>
+ * <li>harness.operation - export, import or mixed (default mixed)</li>
+ * <li>harness.threads - number of concurrent clients (default 8)</li>
+ * <li>harness.warmup - seconds run before measuring (default 10)</li>
+ * <li>harness.duration - seconds measured (default 30)</li>
+ * <li>harness.documents - number of documents of the API (default 20)</li>
+ * <li>harness.provider.latency, harness.registry.latency, harness.userstore.latency - milliseconds
+ * every call on the stand-in is delayed (default 2, 1 and 5)</li>
+ * </ul>
+ */
+public final class LoadHarness {
+
+    private static final String USERNAME = ApiFixtures.API_PROVIDER;
+    private static final String PASSWORD = "admin";
+    private static final String ADMIN_ROLE_NAME = "admin";
+    private static final int SUPER_TENANT_ID = -1234;
+
+    private final APIProvider provider;
+    private final Registry registry;
+    private final UserStoreManager userStoreManager;
+    private final AtomicLong providerCalls = new AtomicLong();
+    private final AtomicLong registryCalls = new AtomicLong();
+    private final AtomicLong userStoreCalls = new AtomicLong();
+    private final APIIdentifier apiIdentifier =
+            new APIIdentifier(ApiFixtures.API_PROVIDER, ApiFixtures.API_NAME, ApiFixtures.API_VERSION);
+    private byte[] uploadedArchive;
+
+    private LoadHarness(int documentCount, long providerLatency, long registryLatency, long userStoreLatency)
+            throws IOException {
+        Map<String, byte[]> defaultResources = new HashMap<String, byte[]>();
+        defaultResources.put("swagger.json", ("{\"swagger\":\"2.0\",\"info\":{\"title\":\"" + ApiFixtures.API_NAME +
+                "\",\"version\":\"" + ApiFixtures.API_VERSION + "\"},\"paths\":{\"/order\":{\"post\":" +
+                "{\"x-auth-type\":\"Application & Application User\",\"x-throttling-tier\":\"Unlimited\"}}}}")
+                .getBytes(APIImportExportConstants.CHARSET));
+
+        //FILE documents, icons and WSDLs are left out, as importing them sets registry permissions
+        //through the realm of a running server
+        provider = StandIns.createProvider(providerLatency, ApiFixtures.createDocumentations(documentCount, false),
+                providerCalls);
+        registry = StandIns.createRegistry(registryLatency, defaultResources, registryCalls);
+        userStoreManager = StandIns.createUserStoreManager(userStoreLatency, USERNAME, PASSWORD,
+                new String[]{ADMIN_ROLE_NAME, "Internal/everyone"}, userStoreCalls);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String operation = System.getProperty("harness.operation", "mixed");
+        if (!Arrays.asList("export", "import", "mixed").contains(operation)) {
+            throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+        int threads = Integer.getInteger("harness.threads", 8);
+        long warmup = Long.getLong("harness.warmup", 10L);
+        long duration = Long.getLong("harness.duration", 30L);
+
+        LoadHarness harness = new LoadHarness(Integer.getInteger("harness.documents", 20),
+                Long.getLong("harness.provider.latency", 2L), Long.getLong("harness.registry.latency", 1L),
+                Long.getLong("harness.userstore.latency", 5L));
+        harness.prepareUpload();
+
+        System.out.println("Warming up " + threads + " clients for " + warmup + " s");
+        harness.run(operation, threads, warmup);
+
+        //authorization decisions expiring during the measurement are fetched from the user store again
+        AuthenticatorUtil.invalidateAuthorizationCache();
+        harness.resetCalls();
+        MetricsRegistry.reset();
+
+        System.out.println("Measuring " + threads + " clients for " + duration + " s");
+        long allocatedBefore = getAllocatedBytes();
+        Statistics[] statistics = harness.run(operation, threads, duration);
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        harness.report(statistics, duration, allocated);
+    }
+
+    /**
+     * Export the API once into an in-memory archive, which is uploaded by every import
+     *
+     * @throws APIExportException If the API cannot be exported
+     * @throws IOException        If the archive cannot be written
+     */
+    private void prepareUpload() throws APIExportException, IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        ZipArchiveWriter archiveWriter = new ZipArchiveWriter(archive);
+        Response response = APIExportUtil.retrieveApiToExport(apiIdentifier, new ExportContext(USERNAME, provider,
+                registry, SUPER_TENANT_ID, archiveWriter));
+        archiveWriter.finish();
+        if (Response.Status.OK.getStatusCode() != response.getStatus()) {
+            throw new IllegalStateException("Export of the uploaded API failed with status " + response.getStatus());
+        }
+        uploadedArchive = archive.toByteArray();
+    }
+
+    private void resetCalls() {
+        providerCalls.set(0);
+        registryCalls.set(0);
+        userStoreCalls.set(0);
+    }
+
+    /**
+     * Run the clients for the given period
+     *
+     * @param operation Operation carried out by the clients
+     * @param threads   Number of clients
+     * @param seconds   Length of the period
+     * @return Statistics of the exports and the imports
+     * @throws InterruptedException If waiting for the clients got interrupted
+     */
+    private Statistics[] run(final String operation, int threads, long seconds) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final Statistics exports = new Statistics("export");
+        final Statistics imports = new Statistics("import");
+
+        Thread[] clients = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final boolean startWithExport = i % 2 == 0;
+            clients[i] = new Thread("harness-client-" + i) {
+                public void run() {
+                    Recorder exportRecorder = new Recorder();
+                    Recorder importRecorder = new Recorder();
+                    boolean export = "export".equals(operation) || ("mixed".equals(operation) && startWithExport);
+                    while (System.nanoTime() < deadline) {
+                        if (export) {
+                            exportRecorder.record(LoadHarness.this, true);
+                        } else {
+                            importRecorder.record(LoadHarness.this, false);
+                        }
+                        if ("mixed".equals(operation)) {
+                            export = !export;
+                        }
+                    }
+                    exports.add(exportRecorder);
+                    imports.add(importRecorder);
+                }
+            };
+            clients[i].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        return new Statistics[]{exports, imports};
+    }
+
+    /**
+     * Export the API the way the APIService does
+     *
+     * @return Number of bytes written to the workspace
+     * @throws Exception If the export fails
+     */
+    private long exportAPI() throws Exception {
+        authorize();
+        File workspace = WorkspaceManager.allocateWorkspace();
+        try {
+            String archiveBasePath = new File(workspace, APIImportExportConstants.EXPORT_FOLDER_NAME).getPath();
+            APIExportUtil.createDirectory(archiveBasePath);
+
+            ExportContext exportContext = new ExportContext(USERNAME, provider, registry, SUPER_TENANT_ID,
+                    new DirectoryArchiveWriter(archiveBasePath));
+            Response response = APIExportUtil.retrieveApiToExport(apiIdentifier, exportContext);
+            if (Response.Status.OK.getStatusCode() != response.getStatus()) {
+                throw new IllegalStateException("Export failed with status " + response.getStatus());
+            }
+            ArchiveGeneratorUtil.archiveDirectory(archiveBasePath);
+
+            long writtenBytes = FileUtils.sizeOfDirectory(workspace);
+            //the archive is read as it would be written to the response
+            FileUtils.copyFile(new File(archiveBasePath + ".zip"), new NullOutputStream());
+            return writtenBytes;
+        } finally {
+            WorkspaceManager.releaseWorkspace(workspace);
+        }
+    }
+
+    /**
+     * Import the uploaded API the way the APIService does
+     *
+     * @return Number of bytes written to the workspace
+     * @throws Exception If the import fails
+     */
+    private long importAPI() throws Exception {
+        authorize();
+        File workspace = WorkspaceManager.allocateWorkspace();
+        try {
+            ImportContext importContext = new ImportContext(USERNAME, provider, registry);
+            StreamedImportArchive archive = APIImportUtil.readArchive(new ByteArrayInputStream(uploadedArchive),
+                    workspace);
+            try {
+                APIImportUtil.importAPI(archive, importContext, true);
+                return FileUtils.sizeOfDirectory(workspace);
+            } finally {
+                archive.close();
+            }
+        } finally {
+            WorkspaceManager.releaseWorkspace(workspace);
+        }
+    }
+
+    private void authorize() throws UserStoreException {
+        Response response = AuthenticatorUtil.authorizeUser(USERNAME, PASSWORD, userStoreManager, ADMIN_ROLE_NAME);
+        if (Response.Status.OK.getStatusCode() != response.getStatus()) {
+            throw new IllegalStateException("Authorization failed with status " + response.getStatus());
+        }
+    }
+
+    private void report(Statistics[] statistics, long duration, long allocated) {
+        long operations = 0;
+        System.out.println();
+        System.out.println(String.format("%-8s %10s %8s %10s %10s %10s %14s", "op", "count", "errors", "ops/s",
+                "p50 ms", "p99 ms", "tmp bytes/op"));
+        for (Statistics operationStatistics : statistics) {
+            operations += operationStatistics.count;
+            operationStatistics.print(duration);
+        }
+        System.out.println();
+        if (allocated >= 0 && operations > 0) {
+            System.out.println("heap allocated per operation: " + allocated / operations + " bytes");
+        } else {
+            System.out.println("heap allocated per operation: not supported by this JVM");
+        }
+        System.out.println("stand-in calls: provider " + providerCalls.get() + ", registry " + registryCalls.get() +
+                ", user store " + userStoreCalls.get());
+
+        System.out.println();
+        System.out.println(String.format("%-26s %-8s %10s %10s %10s %14s", "phase", "outcome", "count", "mean ms",
+                "max ms", "bytes/op"));
+        for (PhaseStatistics phase : MetricsRegistry.getPhaseStatistics()) {
+            System.out.println(String.format("%-26s %-8s %10d %10.2f %10.2f %14d", phase.getPhase(),
+                    phase.getOutcome(), phase.getCount(), phase.getTotalTimeMicros() / 1000.0 / phase.getCount(),
+                    phase.getMaxTimeMicros() / 1000.0, phase.getBytes() / phase.getCount()));
+        }
+    }
+
+    /**
+     * Retrieve the number of bytes allocated by all live threads, including the worker pools of the
+     * exports. Allocations of threads terminated in between are not accounted for
+     *
+     * @return Allocated bytes or -1 if allocation measurement is not supported
+     */
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long allocated = 0;
+        for (long allocatedByThread : allocationBean.getThreadAllocatedBytes(allocationBean.getAllThreadIds())) {
+            if (allocatedByThread > 0) {
+                allocated += allocatedByThread;
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Latencies and written bytes of the operations carried out by a single client
+     */
+    private static final class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+        private long writtenBytes;
+
+        void record(LoadHarness harness, boolean export) {
+            long start = System.nanoTime();
+            try {
+                writtenBytes += export ? harness.exportAPI() : harness.importAPI();
+            } catch (APIImportException e) {
+                errors++;
+                System.err.println("Import failed " + e.getErrorDescription());
+                return;
+            } catch (Exception e) {
+                errors++;
+                System.err.println((export ? "Export" : "Import") + " failed " + e);
+                return;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Aggregated latencies and written bytes of an operation
+     */
+    private static final class Statistics {
+
+        private final String operation;
+        private long[] latencies = new long[0];
+        private int count;
+        private int errors;
+        private long writtenBytes;
+
+        Statistics(String operation) {
+            this.operation = operation;
+        }
+
+        synchronized void add(Recorder recorder) {
+            latencies = Arrays.copyOf(latencies, count + recorder.count);
+            System.arraycopy(recorder.latencies, 0, latencies, count, recorder.count);
+            count += recorder.count;
+            errors += recorder.errors;
+            writtenBytes += recorder.writtenBytes;
+        }
+
+        void print(long duration) {
+            if (count == 0 && errors == 0) {
+                return;
+            }
+            Arrays.sort(latencies);
+            System.out.println(String.format("%-8s %10d %8d %10.1f %10.2f %10.2f %14d", operation, count, errors,
+                    (double) count / duration, percentile(0.50), percentile(0.99),
+                    count == 0 ? 0 : writtenBytes / count));
+        }
+
+        private double percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return latencies[Math.max(index, 0)] / 1000000.0;
+        }
+    }
+}
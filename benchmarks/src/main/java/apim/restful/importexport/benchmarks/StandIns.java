@@ -0,0 +1,287 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.benchmarks;
+
+import org.apache.commons.io.IOUtils;
+import org.wso2.carbon.apimgt.api.APIProvider;
+import org.wso2.carbon.apimgt.api.model.API;
+import org.wso2.carbon.apimgt.api.model.Documentation;
+import org.wso2.carbon.apimgt.api.model.Tier;
+import org.wso2.carbon.registry.api.Registry;
+import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.user.api.UserStoreManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class creates in-memory stand-ins for the API provider, the registry and the user store, so
+ * that exports and imports can be driven without an API Manager instance. Every call on a stand-in
+ * is delayed by a configurable latency, simulating the round trip to the registry database or the
+ * user store
+ */
+public final class StandIns {
+
+    private StandIns() {
+    }
+
+    /**
+     * Create an API provider serving the fixture API and accepting every imported API
+     *
+     * @param latencyMillis  Delay of every call in milliseconds
+     * @param documentations Documentation of the served API
+     * @param calls          Counter of the calls made on the provider
+     * @return Stand-in of the API provider
+     */
+    public static APIProvider createProvider(long latencyMillis, final Documentation[] documentations,
+            AtomicLong calls) {
+        return (APIProvider) createStandIn(APIProvider.class, new StandInHandler(latencyMillis, calls) {
+            protected Object handle(Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("getAPI".equals(methodName)) {
+                    //a new instance per call, as exports modify the retrieved API
+                    API api = ApiFixtures.createAPI();
+                    //custom sequences are read through the synapse configuration of a running server
+                    api.setInSequence(null);
+                    return api;
+                } else if ("getAllDocumentation".equals(methodName)) {
+                    return new ArrayList<Documentation>(Arrays.asList(documentations));
+                } else if ("getTiers".equals(methodName)) {
+                    Set<Tier> tiers = new HashSet<Tier>();
+                    tiers.add(new Tier("Gold"));
+                    tiers.add(new Tier("Silver"));
+                    tiers.add(new Tier("Unlimited"));
+                    return tiers;
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Create a registry holding its resources in memory
+     *
+     * @param latencyMillis    Delay of every call in milliseconds
+     * @param defaultResources Content returned for paths not put into the registry, keyed by the
+     *                         name of the resource, i.e. the last segment of its path
+     * @param calls            Counter of the calls made on the registry
+     * @return Stand-in of the registry
+     */
+    public static Registry createRegistry(long latencyMillis, final Map<String, byte[]> defaultResources,
+            AtomicLong calls) {
+        final Map<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+        return (Registry) createStandIn(Registry.class, new StandInHandler(latencyMillis, calls) {
+            protected Object handle(Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("resourceExists".equals(methodName)) {
+                    return getResource((String) args[0]) != null;
+                } else if ("get".equals(methodName)) {
+                    return getResource((String) args[0]);
+                } else if ("newResource".equals(methodName)) {
+                    return createResource(null, null);
+                } else if ("put".equals(methodName)) {
+                    resources.put((String) args[0], (Resource) args[1]);
+                    return args[0];
+                } else if ("delete".equals(methodName)) {
+                    resources.remove((String) args[0]);
+                    return null;
+                }
+                return defaultValue(method.getReturnType());
+            }
+
+            private Resource getResource(String path) {
+                Resource resource = resources.get(path);
+                if (resource == null) {
+                    byte[] content = defaultResources.get(path.substring(path.lastIndexOf('/') + 1));
+                    if (content != null) {
+                        resource = createResource(content, null);
+                    }
+                }
+                return resource;
+            }
+        });
+    }
+
+    /**
+     * Create a user store holding a single user
+     *
+     * @param latencyMillis Delay of every call in milliseconds
+     * @param username      Tenant aware name of the user
+     * @param password      Password of the user
+     * @param roles         Roles of the user
+     * @param calls         Counter of the calls made on the user store
+     * @return Stand-in of the user store
+     */
+    public static UserStoreManager createUserStoreManager(long latencyMillis, final String username,
+            final String password, final String[] roles, AtomicLong calls) {
+        return (UserStoreManager) createStandIn(UserStoreManager.class, new StandInHandler(latencyMillis, calls) {
+            protected Object handle(Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("authenticate".equals(methodName)) {
+                    return username.equals(args[0]) && password.equals(args[1]);
+                } else if ("getRoleListOfUser".equals(methodName)) {
+                    return username.equals(args[0]) ? roles.clone() : new String[0];
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Create a registry resource holding its content in memory. Resources are created by the registry
+     * stand-in, hence calls on them are not delayed
+     *
+     * @param content   Initial content of the resource
+     * @param mediaType Initial media type of the resource
+     * @return Created resource
+     */
+    private static Resource createResource(final byte[] content, final String mediaType) {
+        return (Resource) createStandIn(Resource.class, new StandInHandler(0, new AtomicLong()) {
+            private Object resourceContent = content;
+            private String resourceMediaType = mediaType;
+            private final Date lastModified = new Date();
+
+            protected Object handle(Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("getContent".equals(methodName)) {
+                    return resourceContent;
+                } else if ("setContent".equals(methodName)) {
+                    resourceContent = args[0];
+                    return null;
+                } else if ("setContentStream".equals(methodName)) {
+                    try {
+                        resourceContent = IOUtils.toByteArray((InputStream) args[0]);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return null;
+                } else if ("getContentStream".equals(methodName)) {
+                    return new ByteArrayInputStream(getContentBytes());
+                } else if ("getMediaType".equals(methodName)) {
+                    return resourceMediaType;
+                } else if ("setMediaType".equals(methodName)) {
+                    resourceMediaType = (String) args[0];
+                    return null;
+                } else if ("getLastModified".equals(methodName)) {
+                    return lastModified;
+                }
+                return defaultValue(method.getReturnType());
+            }
+
+            private byte[] getContentBytes() {
+                if (resourceContent instanceof String) {
+                    try {
+                        return ((String) resourceContent).getBytes("UTF-8");
+                    } catch (UnsupportedEncodingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return resourceContent == null ? new byte[0] : (byte[]) resourceContent;
+            }
+        });
+    }
+
+    private static Object createStandIn(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * Invocation handler delaying every call on a stand-in by the configured latency
+     */
+    private abstract static class StandInHandler implements InvocationHandler {
+
+        private final long latencyNanos;
+        private final AtomicLong calls;
+
+        StandInHandler(long latencyMillis, AtomicLong calls) {
+            this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+            this.calls = calls;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                String methodName = method.getName();
+                if ("equals".equals(methodName)) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(methodName)) {
+                    return System.identityHashCode(proxy);
+                }
+                return getClass().getName();
+            }
+
+            calls.incrementAndGet();
+            if (latencyNanos > 0) {
+                long deadline = System.nanoTime() + latencyNanos;
+                long remaining = latencyNanos;
+                while (remaining > 0) {
+                    LockSupport.parkNanos(remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+            }
+            return handle(method, args);
+        }
+
+        /**
+         * Carry out a call on the stand-in
+         *
+         * @param method Called method
+         * @param args   Arguments of the call
+         * @return Result of the call
+         */
+        protected abstract Object handle(Method method, Object[] args);
+
+        /**
+         * Result of calls the stand-in does not implement, i.e. calls reporting that nothing was found
+         *
+         * @param returnType Return type of the called method
+         * @return Default value of the return type
+         */
+        protected static Object defaultValue(Class<?> returnType) {
+            if (returnType.isPrimitive() && returnType != void.class) {
+                return Array.get(Array.newInstance(returnType, 1), 0);
+            } else if (returnType.isAssignableFrom(ArrayList.class) && Collection.class.isAssignableFrom(returnType)) {
+                return new ArrayList<Object>();
+            } else if (returnType.isAssignableFrom(HashSet.class) && Collection.class.isAssignableFrom(returnType)) {
+                return new HashSet<Object>();
+            } else if (returnType.isAssignableFrom(HashMap.class) && Map.class.isAssignableFrom(returnType)) {
+                return new HashMap<Object, Object>();
+            }
+            return null;
+        }
+    }
+}
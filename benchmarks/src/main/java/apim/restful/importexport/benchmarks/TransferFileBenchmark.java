@@ -0,0 +1,81 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.benchmarks;
+
+import apim.restful.importexport.APIImportException;
+import apim.restful.importexport.utils.APIImportUtil;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks storing an uploaded archive with APIImportUtil.transferFile for different copy buffer sizes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferFileBenchmark {
+
+    @Param({"1024", "8192", "65536"})
+    public int bufferSize;
+
+    @Param({"1048576", "33554432"})
+    public int uploadSize;
+
+    private File workDirectory;
+    private byte[] upload;
+
+    @Setup(Level.Trial)
+    public void createUpload() throws IOException {
+        workDirectory = ApiFixtures.createWorkDirectory("transfer");
+        upload = ApiFixtures.bytes(new Random(uploadSize), uploadSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteUpload() {
+        FileUtils.deleteQuietly(workDirectory);
+    }
+
+    @Benchmark
+    public void transferFile() throws APIImportException {
+        APIImportUtil.transferFile(new ByteArrayInputStream(upload), "APIArchive.zip", workDirectory.getPath(),
+                bufferSize);
+    }
+}
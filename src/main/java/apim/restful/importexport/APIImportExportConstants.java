@@ -29,12 +29,64 @@ public final class APIImportExportConstants {
     public static final String DIRECTORY_SEPARATOR = File.separator;
     //string representing the false state when preserving the provider
     public static final String STATUS_FALSE = "FALSE";
-    //length of the name of the temporary directory
-    public static final int TEMP_FILENAME_LENGTH = 5;
+    //string representing the true state of a boolean query parameter
+    public static final String STATUS_TRUE = "TRUE";
+    //path separator used for the entries of a zipped archive
+    public static final String ARCHIVE_PATH_SEPARATOR = "/";
+    //character encoding of the text files of an archive
+    public static final String CHARSET = "UTF-8";
     //system property for default temporary directory
     public static final String TEMP_DIR = "java.io.tmpdir";
     //name of the uploaded zip file
     public static final String UPLOAD_FILE_NAME = "APIArchive.zip";
+    //name of the folder of a workspace holding the resources of a single API export
+    public static final String EXPORT_FOLDER_NAME = "export";
+    //name of the zip file of a bulk export
+    public static final String BULK_EXPORT_FILE_NAME = "APIs.zip";
+    //name of the manifest at the root of a bulk export, recording the exported APIs and resources
+    public static final String EXPORT_MANIFEST_FILE_NAME = "export-manifest.json";
+    //name of the manifest at the root of an archive, listing the size and hash of each entry
+    public static final String ARCHIVE_MANIFEST_FILE_NAME = "MANIFEST.json";
+    //location of the manifest of an API of an incremental export
+    public static final String MANIFEST_FILE_LOCATION = DIRECTORY_SEPARATOR + "Meta-information" +
+            DIRECTORY_SEPARATOR + "manifest.json";
+    //name of the folder of a bulk export holding the resources shared by several APIs
+    public static final String BLOB_FOLDER_NAME = "blobs";
+    //name of the file mapping the resources of an API to the shared resources of a bulk export
+    public static final String BLOB_REFERENCES_FILE_NAME = "blobs.json";
+    //location of the file mapping the resources of an API to the shared resources of a bulk export
+    public static final String BLOB_REFERENCES_LOCATION = DIRECTORY_SEPARATOR + "Meta-information" +
+            DIRECTORY_SEPARATOR + BLOB_REFERENCES_FILE_NAME;
+    //system property for the size in bytes up to which resources of a bulk export are stored once
+    public static final String EXPORT_BLOB_THRESHOLD_PROPERTY = "apim.importexport.export.blob.threshold";
+    //default size in bytes up to which resources of a bulk export are stored once
+    public static final int DEFAULT_EXPORT_BLOB_THRESHOLD = 1048576;
+    //system property for the size in bytes up to which entries streamed into an archive are buffered in memory
+    public static final String EXPORT_BUFFER_THRESHOLD_PROPERTY = "apim.importexport.export.buffer.threshold";
+    //default size in bytes up to which entries streamed into an archive are buffered in memory
+    public static final long DEFAULT_EXPORT_BUFFER_THRESHOLD = 1048576L;
+    //system property for the level used to deflate the entries of exported archives, -1 for the zlib default
+    public static final String ARCHIVE_COMPRESSION_LEVEL_PROPERTY = "apim.importexport.archive.compression.level";
+    //default level used to deflate the entries of exported archives
+    public static final int DEFAULT_ARCHIVE_COMPRESSION_LEVEL = -1;
+    //system property for the comma separated extensions of entries which are stored without compression
+    public static final String ARCHIVE_COMPRESSED_TYPES_PROPERTY = "apim.importexport.archive.compressed.types";
+    //default extensions of entries which are stored without compression, since they are already compressed
+    public static final String DEFAULT_ARCHIVE_COMPRESSED_TYPES = "png,jpg,jpeg,gif,pdf,zip,gz,jar,docx,xlsx,pptx";
+    //system property for the number of threads deflating the entries of archives written from a directory
+    public static final String ARCHIVE_WORKERS_PROPERTY = "apim.importexport.archive.workers";
+    //system property for the size in bytes of the chunks archive entries are split into for deflating
+    public static final String ARCHIVE_CHUNK_SIZE_PROPERTY = "apim.importexport.archive.chunk.size";
+    //default size in bytes of the chunks archive entries are split into for deflating
+    public static final int DEFAULT_ARCHIVE_CHUNK_SIZE = 1048576;
+    //system property enabling pretty printing of the JSON files of exported archives
+    public static final String EXPORT_PRETTY_PRINT_PROPERTY = "apim.importexport.export.pretty.print";
+    //size of the buffer used when copying file content to a response
+    public static final int BUFFER_SIZE = 8192;
+    //HTTP status code of a response carrying a byte range of the content
+    public static final int PARTIAL_CONTENT = 206;
+    //HTTP status code of a response to an unsatisfiable byte range request
+    public static final int RANGE_NOT_SATISFIABLE = 416;
     //location of the api JSON file
     public static final String JSON_FILE_LOCATION = DIRECTORY_SEPARATOR + "Meta-information" + DIRECTORY_SEPARATOR +
             "api.json";
@@ -73,5 +125,88 @@ public final class APIImportExportConstants {
     public static final String WSDL_LOCATION = DIRECTORY_SEPARATOR + "WSDL" + DIRECTORY_SEPARATOR;
     //extension of wsdl files
     public static final String WSDL_EXTENSION = ".wsdl";
+    //system property for the number of APIs imported in parallel by a bulk import
+    public static final String BULK_IMPORT_WORKERS_PROPERTY = "apim.importexport.bulk.import.workers";
+    //default number of APIs imported in parallel by a bulk import
+    public static final int DEFAULT_BULK_IMPORT_WORKERS = 4;
+    //system property for the number of registry resources retrieved concurrently by exports
+    public static final String EXPORT_WORKERS_PROPERTY = "apim.importexport.export.workers";
+    //default number of registry resources retrieved concurrently by exports
+    public static final int DEFAULT_EXPORT_WORKERS = 8;
+    //system property for the number of document files retrieved concurrently by exports
+    public static final String DOCUMENT_EXPORT_WORKERS_PROPERTY = "apim.importexport.export.document.workers";
+    //default number of document files retrieved concurrently by exports
+    public static final int DEFAULT_DOCUMENT_EXPORT_WORKERS = 4;
+    //system property for the number of tasks waiting for a thread of a worker pool, beyond which the
+    //submitting thread runs the task itself
+    public static final String WORKER_QUEUE_SIZE_PROPERTY = "apim.importexport.worker.queue.size";
+    //default number of tasks waiting for a thread of a worker pool
+    public static final int DEFAULT_WORKER_QUEUE_SIZE = 256;
+    //system property for the size in bytes above which entries of a streamed import are stored on disk
+    public static final String IMPORT_SPILL_THRESHOLD_PROPERTY = "apim.importexport.import.spill.threshold";
+    //default size in bytes above which entries of a streamed import are stored on disk
+    public static final long DEFAULT_IMPORT_SPILL_THRESHOLD = 1048576L;
+    //system property for the total size in bytes of the entries of a streamed import kept in memory
+    public static final String IMPORT_MEMORY_LIMIT_PROPERTY = "apim.importexport.import.memory.limit";
+    //default total size in bytes of the entries of a streamed import kept in memory
+    public static final long DEFAULT_IMPORT_MEMORY_LIMIT = 16777216L;
+    //system property for the size in bytes above which resources of an imported API are memory mapped
+    public static final String IMPORT_MAP_THRESHOLD_PROPERTY = "apim.importexport.import.map.threshold";
+    //default size in bytes above which resources of an imported API are memory mapped
+    public static final long DEFAULT_IMPORT_MAP_THRESHOLD = 1048576L;
+    //name of the directory under the temporary directory holding the workspaces of requests
+    public static final String WORKSPACE_ROOT_NAME = "api-import-export";
+    //system property for the maximum number of bytes stored in workspaces
+    public static final String WORKSPACE_QUOTA_PROPERTY = "apim.importexport.workspace.quota";
+    //default maximum number of bytes stored in workspaces
+    public static final long DEFAULT_WORKSPACE_QUOTA = 1073741824L;
+    //system property for the number of seconds after which a workspace not in use is swept
+    public static final String WORKSPACE_MAX_AGE_PROPERTY = "apim.importexport.workspace.max.age";
+    //default number of seconds after which a workspace not in use is swept
+    public static final long DEFAULT_WORKSPACE_MAX_AGE = 3600L;
+    //system property for the number of seconds between sweeps of orphaned workspaces
+    public static final String WORKSPACE_SWEEP_INTERVAL_PROPERTY = "apim.importexport.workspace.sweep.interval";
+    //default number of seconds between sweeps of orphaned workspaces
+    public static final long DEFAULT_WORKSPACE_SWEEP_INTERVAL = 600L;
+    //system property for the number of seconds between measurements of the disk usage of workspaces
+    public static final String WORKSPACE_USAGE_INTERVAL_PROPERTY = "apim.importexport.workspace.usage.interval";
+    //default number of seconds between measurements of the disk usage of workspaces
+    public static final long DEFAULT_WORKSPACE_USAGE_INTERVAL = 10L;
+    //system property for the number of asynchronous jobs run concurrently
+    public static final String JOB_WORKERS_PROPERTY = "apim.importexport.job.workers";
+    //default number of asynchronous jobs run concurrently
+    public static final int DEFAULT_JOB_WORKERS = 2;
+    //system property for the number of asynchronous jobs waiting to be run
+    public static final String JOB_QUEUE_SIZE_PROPERTY = "apim.importexport.job.queue.size";
+    //default number of asynchronous jobs waiting to be run
+    public static final int DEFAULT_JOB_QUEUE_SIZE = 10;
+    //system property for the number of seconds a finished job is kept
+    public static final String JOB_RETENTION_PROPERTY = "apim.importexport.job.retention";
+    //default number of seconds a finished job is kept
+    public static final long DEFAULT_JOB_RETENTION = 3600L;
+    //system property for the maximum number of cached authorization decisions
+    public static final String AUTH_CACHE_SIZE_PROPERTY = "apim.importexport.auth.cache.size";
+    //default maximum number of cached authorization decisions
+    public static final long DEFAULT_AUTH_CACHE_SIZE = 1000;
+    //system property for the time in seconds an authorization decision is cached
+    public static final String AUTH_CACHE_EXPIRY_PROPERTY = "apim.importexport.auth.cache.expiry";
+    //default time in seconds an authorization decision is cached
+    public static final long DEFAULT_AUTH_CACHE_EXPIRY = 300;
+    //system property for the maximum number of cached API providers and registries
+    public static final String HANDLE_CACHE_SIZE_PROPERTY = "apim.importexport.handle.cache.size";
+    //default maximum number of cached API providers and registries
+    public static final long DEFAULT_HANDLE_CACHE_SIZE = 100;
+    //system property for the time in seconds an API provider or registry is cached
+    public static final String HANDLE_CACHE_EXPIRY_PROPERTY = "apim.importexport.handle.cache.expiry";
+    //default time in seconds an API provider or registry is cached
+    public static final long DEFAULT_HANDLE_CACHE_EXPIRY = 300;
+    //system property for the maximum number of tenants whose tiers are cached
+    public static final String TIER_CACHE_SIZE_PROPERTY = "apim.importexport.tier.cache.size";
+    //default maximum number of tenants whose tiers are cached
+    public static final long DEFAULT_TIER_CACHE_SIZE = 100;
+    //system property for the time in seconds the tiers of a tenant are cached
+    public static final String TIER_CACHE_EXPIRY_PROPERTY = "apim.importexport.tier.cache.expiry";
+    //default time in seconds the tiers of a tenant are cached
+    public static final long DEFAULT_TIER_CACHE_EXPIRY = 60;
 
 }
@@ -0,0 +1,146 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the outcome of importing a single API. When the import is a dry run, the outcome is
+ * the one the import would have, and nothing is added to the provider or registry
+ */
+public class APIImportResult {
+
+    /**
+     * Possible outcomes of importing an API
+     */
+    public enum Status {
+        CREATED, UPDATED, SKIPPED, FAILED
+    }
+
+    private final String archiveFolder;
+    private String apiName;
+    private String version;
+    private String provider;
+    private Status status;
+    private String errorDescription;
+    private List<String> droppedTiers;
+    private List<String> changedFields;
+    private List<String> warnings;
+
+    /**
+     * @param archiveFolder Folder of the archive which contains the API
+     */
+    public APIImportResult(String archiveFolder) {
+        this.archiveFolder = archiveFolder;
+    }
+
+    public String getArchiveFolder() {
+        return archiveFolder;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * Set the identity of the imported API
+     *
+     * @param provider Provider name of the API
+     * @param apiName  Name of the API
+     * @param version  Version of the API
+     */
+    public void setAPI(String provider, String apiName, String version) {
+        this.provider = provider;
+        this.apiName = apiName;
+        this.version = version;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getErrorDescription() {
+        return errorDescription;
+    }
+
+    public List<String> getDroppedTiers() {
+        return droppedTiers;
+    }
+
+    /**
+     * Set the tiers of the API which are not available in the tenant and were dropped by the import
+     *
+     * @param droppedTiers Names of the dropped tiers, left out of the result if empty
+     */
+    public void setDroppedTiers(List<String> droppedTiers) {
+        this.droppedTiers = droppedTiers.isEmpty() ? null : droppedTiers;
+    }
+
+    public List<String> getChangedFields() {
+        return changedFields;
+    }
+
+    /**
+     * Set the fields of the definition of an existing API which differ from the archive and were updated
+     *
+     * @param changedFields Names of the changed fields, empty if the definition of the API is unchanged
+     */
+    public void setChangedFields(List<String> changedFields) {
+        this.changedFields = changedFields;
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Record a problem with an optional resource of the API, which is left out of the import
+     *
+     * @param warning Description of the problem
+     */
+    public void addWarning(String warning) {
+        if (warnings == null) {
+            warnings = new ArrayList<String>();
+        }
+        warnings.add(warning);
+    }
+
+    /**
+     * Mark the import of the API as failed
+     *
+     * @param errorDescription Description of the failure
+     */
+    public void setFailed(String errorDescription) {
+        this.status = Status.FAILED;
+        this.errorDescription = errorDescription;
+    }
+}
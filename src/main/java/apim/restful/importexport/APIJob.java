@@ -0,0 +1,163 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the state of an asynchronous export or import job. A job is owned by the user who
+ * submitted it and is kept until it expires after completion
+ */
+public class APIJob {
+
+    /**
+     * Types of jobs
+     */
+    public enum Type {
+        EXPORT, IMPORT
+    }
+
+    /**
+     * States of a job
+     */
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String jobId;
+    private final Type type;
+    private final String owner;
+    private final File workspace;
+    private final JobProgress progress = new JobProgress();
+    private final long createdTime = System.currentTimeMillis();
+    private volatile long finishedTime;
+    private volatile State state = State.QUEUED;
+    private volatile File archive;
+    private volatile List<APIImportResult> importResults;
+    private volatile String errorDescription;
+
+    /**
+     * @param jobId     Unique ID of the job
+     * @param type      Type of the job
+     * @param owner     User name of the user who submitted the job
+     * @param workspace Directory holding the files of the job
+     */
+    public APIJob(String jobId, Type type, String owner, File workspace) {
+        this.jobId = jobId;
+        this.type = type;
+        this.owner = owner;
+        this.workspace = workspace;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public File getWorkspace() {
+        return workspace;
+    }
+
+    public JobProgress getProgress() {
+        return progress;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setRunning() {
+        this.state = State.RUNNING;
+    }
+
+    /**
+     * Mark the job as completed
+     *
+     * @param archive       Archive generated by an export job, null for import jobs
+     * @param importResults Import results of an import job, null for export jobs
+     */
+    public void setCompleted(File archive, List<APIImportResult> importResults) {
+        this.archive = archive;
+        this.importResults = importResults;
+        this.progress.setPhase(JobProgress.Phase.COMPLETED, null);
+        this.finishedTime = System.currentTimeMillis();
+        this.state = State.COMPLETED;
+    }
+
+    /**
+     * Mark the job as failed
+     *
+     * @param errorDescription Reason of the failure
+     */
+    public void setFailed(String errorDescription) {
+        this.errorDescription = errorDescription;
+        this.finishedTime = System.currentTimeMillis();
+        this.state = State.FAILED;
+    }
+
+    public File getArchive() {
+        return archive;
+    }
+
+    /**
+     * Check whether the job finished before the given time
+     *
+     * @param time Time in milliseconds
+     * @return true if the job is finished and its finishing time is before the given time
+     */
+    public boolean isFinishedBefore(long time) {
+        State currentState = state;
+        return (currentState == State.COMPLETED || currentState == State.FAILED) && finishedTime < time;
+    }
+
+    /**
+     * Take a snapshot of the job state to be reported to the client
+     *
+     * @return Job attributes in reporting order
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> job = new LinkedHashMap<String, Object>();
+        job.put("jobId", jobId);
+        job.put("type", type.name());
+        job.put("state", state.name());
+        job.put("createdTime", createdTime);
+        job.put("progress", progress.toMap());
+        if (archive != null) {
+            job.put("archiveSize", archive.length());
+        }
+        if (importResults != null) {
+            job.put("importResults", importResults);
+        }
+        if (errorDescription != null) {
+            job.put("errorDescription", errorDescription);
+        }
+        return job;
+    }
+}
@@ -19,36 +19,64 @@
 package apim.restful.importexport;
 
 
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
+import apim.restful.importexport.utils.APIExportFilter;
 import apim.restful.importexport.utils.APIExportUtil;
 import apim.restful.importexport.utils.APIImportUtil;
+import apim.restful.importexport.utils.APIJobManager;
 import apim.restful.importexport.utils.ArchiveGeneratorUtil;
 import apim.restful.importexport.utils.AuthenticatorUtil;
-import org.apache.commons.lang.RandomStringUtils;
+import apim.restful.importexport.utils.DeduplicatingArchiveWriter;
+import apim.restful.importexport.utils.DirectoryArchiveWriter;
+import apim.restful.importexport.utils.ExportBaseline;
+import apim.restful.importexport.utils.GsonHolder;
+import apim.restful.importexport.utils.MetricsRegistry;
+import apim.restful.importexport.utils.PhaseStatistics;
+import apim.restful.importexport.utils.StreamedImportArchive;
+import apim.restful.importexport.utils.TierCache;
+import apim.restful.importexport.utils.WorkspaceManager;
+import apim.restful.importexport.utils.ZipArchiveWriter;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.cxf.jaxrs.ext.multipart.Multipart;
 
 import org.wso2.carbon.apimgt.api.APIManagementException;
+import org.wso2.carbon.apimgt.api.APIProvider;
 import org.wso2.carbon.apimgt.api.model.APIIdentifier;
 import org.wso2.carbon.apimgt.impl.utils.APIUtil;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
 import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
 /**
@@ -64,20 +92,25 @@ public class APIService {
      * This service exports an API from API Manager for a given API ID
      * Meta information, API icon, documentation, WSDL and sequences are exported
      * This service generates a zipped archive which contains all the above mentioned resources
-     * for a given API
+     * for a given API. In streaming mode the resources are written directly to the response
+     * without being stored in a temporary directory
      *
      * @param name         Name of the API that needs to be exported
      * @param version      Version of the API that needs to be exported
      * @param providerName Provider name of the API that needs to be exported
+     * @param streaming    "true" to stream the archive to the response
+     * @param since        Time in milliseconds since the epoch; if given only the resources changed since are exported
      * @return Zipped API as the response to the service call
      */
     @GET
     @Path("/export-api")
     @Produces("application/zip")
     public Response exportAPI(@QueryParam("name") String name, @QueryParam("version") String version,
-            @QueryParam("provider") String providerName, @Context HttpHeaders httpHeaders) {
+            @QueryParam("provider") String providerName, @QueryParam("streaming") String streaming,
+            @QueryParam("since") Long since, @Context HttpHeaders httpHeaders) {
 
         String userName;
+        File workspace = null;
         if (name == null || version == null || providerName == null) {
             log.error("Invalid API Information ");
 
@@ -93,7 +126,7 @@ public class APIService {
                 return authorizationResponse;
             }
 
-            userName = AuthenticatorUtil.getAuthenticatedUserName();
+            userName = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
             //provider names with @ signs are only accepted
             String apiDomain = MultitenantUtils.getTenantDomain(providerName);
             String apiRequesterDomain = MultitenantUtils.getTenantDomain(userName);
@@ -107,18 +140,22 @@ public class APIService {
             }
 
             apiIdentifier = new APIIdentifier(APIUtil.replaceEmailDomain(providerName), name, version);
+            ExportBaseline baseline = since != null ? new ExportBaseline(since) : null;
 
-            //create temp location for storing API data to generate archive
-            String currentDirectory = System.getProperty(APIImportExportConstants.TEMP_DIR);
-            String createdFolders = File.separator + RandomStringUtils.
-                    randomAlphanumeric(APIImportExportConstants.TEMP_FILENAME_LENGTH) + File.separator;
-            File exportFolder = new File(currentDirectory + createdFolders);
-            APIExportUtil.createDirectory(exportFolder.getPath());
-            String archiveBasePath = exportFolder.toString();
+            if (APIImportExportConstants.STATUS_TRUE.equalsIgnoreCase(streaming)) {
+                return streamApiArchive(apiIdentifier, userName, baseline);
+            }
+
+            //create a workspace for storing API data to generate archive
+            workspace = WorkspaceManager.allocateWorkspace();
+            String archiveBasePath = new File(workspace, APIImportExportConstants.EXPORT_FOLDER_NAME).getPath();
+            APIExportUtil.createDirectory(archiveBasePath);
 
-            APIExportUtil.setArchiveBasePath(archiveBasePath);
+            ExportContext exportContext = APIExportUtil.createExportContext(userName,
+                    APIExportUtil.getProvider(userName), new DirectoryArchiveWriter(archiveBasePath),
+                    new JobProgress(), baseline);
 
-            Response apiResourceRetrievalResponse = APIExportUtil.retrieveApiToExport(apiIdentifier, userName);
+            Response apiResourceRetrievalResponse = APIExportUtil.retrieveApiToExport(apiIdentifier, exportContext);
 
             //Retrieve resources : thumbnail, meta information, wsdl, sequences and documents
             // available for the exporting API
@@ -126,14 +163,184 @@ public class APIService {
                 return apiResourceRetrievalResponse;
             }
 
-            ArchiveGeneratorUtil.archiveDirectory(archiveBasePath);
+            MetricsRegistry.PhaseTimer archiveTimer = MetricsRegistry.startTimer(MetricsRegistry.Phase.ARCHIVE_API,
+                    exportContext.getTenantDomain());
+            try {
+                ArchiveGeneratorUtil.archiveDirectory(archiveBasePath);
+                archiveTimer.setBytes(new File(archiveBasePath + ".zip").length());
+                archiveTimer.succeeded();
+            } finally {
+                archiveTimer.stop();
+            }
 
             log.info("API" + name + "-" + version + " exported successfully");
 
-            File file = new File(archiveBasePath + ".zip");
-            Response.ResponseBuilder response = Response.ok(file);
-            response.header("Content-Disposition", "attachment; filename=\"" + file.getName() +
-                    "\"");
+            //the workspace is released by the response once the archive is written
+            Response.ResponseBuilder response = Response.ok(new WorkspaceFileStreamingOutput(
+                    new File(archiveBasePath + ".zip"), workspace));
+            workspace = null;
+            response.header("Content-Disposition", "attachment; filename=\"" + name + "-" + version + ".zip\"");
+            return response.build();
+
+        } catch (WorkspaceQuotaExceededException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity("Temporary storage is exhausted.\n")
+                    .type(MediaType.APPLICATION_JSON).build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while exporting ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        } finally {
+            WorkspaceManager.releaseWorkspace(workspace);
+        }
+
+    }
+
+    /**
+     * This service exports a set of APIs from API Manager into a single zipped archive which
+     * contains a folder per API in the same layout as a single API export. APIs are either listed
+     * explicitly or selected from the APIs of the requester's tenant
+     *
+     * @param providerName Provider name of the APIs that need to be exported
+     * @param namePattern  Name pattern of the APIs that need to be exported, '*' matches any characters
+     * @param tag          Tag of the APIs that need to be exported
+     * @param status       Lifecycle state of the APIs that need to be exported
+     * @param apis         APIs that need to be exported in the form name:version:provider
+     * @param since        Time in milliseconds since the epoch; if given only the resources changed since are exported
+     * @return Zipped APIs as the response to the service call
+     */
+    @GET
+    @Path("/export-apis")
+    @Produces("application/zip")
+    public Response exportAPIs(@QueryParam("provider") String providerName, @QueryParam("name") String namePattern,
+            @QueryParam("tag") String tag, @QueryParam("status") String status, @QueryParam("api") List<String> apis,
+            @QueryParam("since") Long since, @Context HttpHeaders httpHeaders) {
+
+        return exportAPIs(providerName, namePattern, tag, status, apis,
+                since != null ? new ExportBaseline(since) : null, httpHeaders);
+    }
+
+    /**
+     * This service exports the resources of a set of APIs which changed since a previous bulk export.
+     * The manifest of the previous export is uploaded, and APIs and resources whose last modified time
+     * is the same as recorded in it are only referenced by the manifest of the new export
+     *
+     * @param manifestInputStream Manifest of the previous export
+     * @param providerName        Provider name of the APIs that need to be exported
+     * @param namePattern         Name pattern of the APIs that need to be exported, '*' matches any characters
+     * @param tag                 Tag of the APIs that need to be exported
+     * @param status              Lifecycle state of the APIs that need to be exported
+     * @param apis                APIs that need to be exported in the form name:version:provider
+     * @return Zipped APIs as the response to the service call
+     */
+    @POST
+    @Path("/export-apis")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces("application/zip")
+    public Response exportChangedAPIs(@Multipart("manifest") InputStream manifestInputStream,
+            @QueryParam("provider") String providerName, @QueryParam("name") String namePattern,
+            @QueryParam("tag") String tag, @QueryParam("status") String status, @QueryParam("api") List<String> apis,
+            @Context HttpHeaders httpHeaders) {
+
+        ExportManifest previousManifest;
+        try {
+            previousManifest = GsonHolder.getGson().fromJson(new InputStreamReader(manifestInputStream,
+                    APIImportExportConstants.CHARSET), ExportManifest.class);
+        } catch (IOException e) {
+            log.error("Unable to read the manifest of the previous export", e);
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid manifest")
+                    .type(MediaType.APPLICATION_JSON).build();
+        } catch (JsonParseException e) {
+            log.error("Unable to parse the manifest of the previous export", e);
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid manifest")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+        if (previousManifest == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid manifest")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+
+        return exportAPIs(providerName, namePattern, tag, status, apis, new ExportBaseline(previousManifest),
+                httpHeaders);
+    }
+
+    /**
+     * Export the selected APIs into a single zipped archive written directly to the response
+     *
+     * @param providerName Provider name of the APIs that need to be exported
+     * @param namePattern  Name pattern of the APIs that need to be exported
+     * @param tag          Tag of the APIs that need to be exported
+     * @param status       Lifecycle state of the APIs that need to be exported
+     * @param apis         APIs that need to be exported in the form name:version:provider
+     * @param baseline     Baseline of an incremental export, null to export everything
+     * @param httpHeaders  HTTP headers for the authentication mechanism
+     * @return Zipped APIs as the response to the service call
+     */
+    private Response exportAPIs(String providerName, String namePattern, String tag, String status,
+            List<String> apis, final ExportBaseline baseline, HttpHeaders httpHeaders) {
+
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            final String userName = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+            APIExportFilter filter = new APIExportFilter();
+            Response filterResponse = populateExportFilter(filter, userName, providerName, namePattern, tag, status,
+                    apis);
+            if (filterResponse != null) {
+                return filterResponse;
+            }
+
+
+            final APIProvider provider = APIExportUtil.getProvider(userName);
+            final List<APIIdentifier> apiIdentifiers;
+            try {
+                apiIdentifiers = filter.selectAPIs(provider);
+            } catch (APIManagementException e) {
+                log.error("Unable to retrieve APIs to export", e);
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                        .type(MediaType.APPLICATION_JSON).build();
+            }
+
+            if (apiIdentifiers.isEmpty()) {
+                return Response.status(Response.Status.NOT_FOUND).entity("No APIs found to export")
+                        .type(MediaType.APPLICATION_JSON).build();
+            }
+            log.info("Exporting " + apiIdentifiers.size() + " APIs");
+
+            StreamingOutput archiveStream = new StreamingOutput() {
+                public void write(OutputStream outputStream) throws IOException {
+                    //the workspace holds large resources read ahead of their turn to be written to the archive
+                    File spillWorkspace = null;
+                    try {
+                        spillWorkspace = WorkspaceManager.allocateWorkspace();
+                        ZipArchiveWriter zipArchiveWriter = new ZipArchiveWriter(outputStream, spillWorkspace);
+                        DeduplicatingArchiveWriter archiveWriter =
+                                APIExportUtil.createBulkArchiveWriter(zipArchiveWriter);
+                        ExportContext exportContext = APIExportUtil.createExportContext(userName, provider,
+                                archiveWriter, new JobProgress(), baseline);
+                        List<APIIdentifier> exportedAPIs = APIExportUtil.retrieveApisToExport(apiIdentifiers,
+                                exportContext);
+                        archiveWriter.writeReferences();
+                        zipArchiveWriter.finish();
+                        log.info(exportedAPIs.size() + " APIs exported successfully");
+                    } catch (WorkspaceQuotaExceededException e) {
+                        throw new WebApplicationException(e, Response.status(Status.SERVICE_UNAVAILABLE)
+                                .entity("Temporary storage is exhausted.\n").build());
+                    } catch (APIExportException e) {
+                        log.error("APIExportException occurred while exporting ", e);
+                        throw new WebApplicationException(e, Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                .entity("Internal Server Error").type(MediaType.APPLICATION_JSON).build());
+                    } finally {
+                        WorkspaceManager.releaseWorkspace(spillWorkspace);
+                    }
+                }
+            };
+
+            Response.ResponseBuilder response = Response.ok(archiveStream);
+            response.header("Content-Disposition", "attachment; filename=\"" +
+                    APIImportExportConstants.BULK_EXPORT_FILE_NAME + "\"");
             return response.build();
 
         } catch (APIExportException e) {
@@ -141,7 +348,98 @@ public class APIService {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
                     .type(MediaType.APPLICATION_JSON).build();
         }
+    }
+
+    /**
+     * Populate the filter of a bulk export with the selection criteria of the request
+     *
+     * @param filter       Filter to be populated
+     * @param userName     User name of the requester
+     * @param providerName Provider name of the APIs that need to be exported
+     * @param namePattern  Name pattern of the APIs that need to be exported
+     * @param tag          Tag of the APIs that need to be exported
+     * @param status       Lifecycle state of the APIs that need to be exported
+     * @param apis         APIs that need to be exported in the form name:version:provider
+     * @return Error response if the criteria are invalid or not authorized, null otherwise
+     */
+    private Response populateExportFilter(APIExportFilter filter, String userName, String providerName,
+            String namePattern, String tag, String status, List<String> apis) {
+        String apiRequesterDomain = MultitenantUtils.getTenantDomain(userName);
 
+        //Allows to export APIs created only in current tenant domain
+        if (providerName != null && !MultitenantUtils.getTenantDomain(providerName).equals(apiRequesterDomain)) {
+            log.error("Not authorized to export APIs of provider :" + providerName);
+            return Response.status(Response.Status.FORBIDDEN).entity("Not authorized to export APIs of " +
+                    "provider :" + providerName).type(MediaType.APPLICATION_JSON).build();
+        }
+
+        if (providerName != null) {
+            filter.setProviderName(APIUtil.replaceEmailDomain(providerName));
+        }
+        if (namePattern != null) {
+            filter.setNamePattern(namePattern);
+        }
+        filter.setTag(tag);
+        filter.setStatus(status);
+        if (apis != null) {
+            for (String api : apis) {
+                String[] apiInformation = api.split(":");
+                if (apiInformation.length != 3) {
+                    log.error("Invalid API Information " + api);
+                    return Response.status(Response.Status.BAD_REQUEST).entity("Invalid API Information : " + api)
+                            .type(MediaType.APPLICATION_JSON).build();
+                }
+                if (!MultitenantUtils.getTenantDomain(apiInformation[2]).equals(apiRequesterDomain)) {
+                    log.error("Not authorized to export API :" + api);
+                    return Response.status(Response.Status.FORBIDDEN).entity("Not authorized to export API :" +
+                            api).type(MediaType.APPLICATION_JSON).build();
+                }
+                filter.addAPI(new APIIdentifier(APIUtil.replaceEmailDomain(apiInformation[2]),
+                        apiInformation[0], apiInformation[1]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Build a response which writes the archive of the given API directly to the response stream
+     *
+     * @param apiIdentifier ID of the exporting API
+     * @param userName      User name of the requester
+     * @param baseline      Baseline of an incremental export, null to export everything
+     * @return Response streaming the zipped API
+     */
+    private Response streamApiArchive(final APIIdentifier apiIdentifier, final String userName,
+            final ExportBaseline baseline) {
+        StreamingOutput archiveStream = new StreamingOutput() {
+            public void write(OutputStream outputStream) throws IOException {
+                ZipArchiveWriter archiveWriter = new ZipArchiveWriter(outputStream);
+                Response apiResourceRetrievalResponse;
+                try {
+                    ExportContext exportContext = APIExportUtil.createExportContext(userName,
+                            APIExportUtil.getProvider(userName), archiveWriter, new JobProgress(), baseline);
+                    apiResourceRetrievalResponse = APIExportUtil.retrieveApiToExport(apiIdentifier, exportContext);
+                } catch (APIExportException e) {
+                    log.error("APIExportException occurred while exporting ", e);
+                    throw new WebApplicationException(e, Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity("Internal Server Error").type(MediaType.APPLICATION_JSON).build());
+                }
+
+                //nothing has been written to the response if the API could not be retrieved
+                if (!(Response.Status.OK.getStatusCode() == apiResourceRetrievalResponse.getStatus())) {
+                    throw new WebApplicationException(apiResourceRetrievalResponse);
+                }
+                archiveWriter.finish();
+
+                log.info("API" + apiIdentifier.getApiName() + "-" + apiIdentifier.getVersion() +
+                        " exported successfully");
+            }
+        };
+
+        Response.ResponseBuilder response = Response.ok(archiveStream);
+        response.header("Content-Disposition", "attachment; filename=\"" + apiIdentifier.getApiName() + "-" +
+                apiIdentifier.getVersion() + ".zip\"");
+        return response.build();
     }
 
     /**
@@ -150,6 +448,9 @@ public class APIService {
      *
      * @param uploadedInputStream uploadedInputStream input stream from the REST request
      * @param defaultProviderStatus     user choice to keep or replace the API provider
+     * @param incrementalStatus   "true" to apply the archive on top of the existing API
+     * @param mode                "create" (default), "skipExisting" or "overwrite" to handle an existing API
+     * @param dryRunStatus        "true" to only validate the archive and return the result the import would have
      * @param httpHeaders         HTTP headers for the authentication mechanism
      * @return response for the API process
      */
@@ -158,7 +459,9 @@ public class APIService {
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.APPLICATION_JSON)
     public Response importAPI(@Multipart("file") InputStream uploadedInputStream, @QueryParam("preserveProvider")
-    String defaultProviderStatus, @Context HttpHeaders httpHeaders) {
+    String defaultProviderStatus, @QueryParam("incremental") String incrementalStatus,
+            @QueryParam("mode") String mode, @QueryParam("dryRun") String dryRunStatus,
+            @Context HttpHeaders httpHeaders) {
 
         boolean isProviderPreserved = true;
 
@@ -167,48 +470,754 @@ public class APIService {
             isProviderPreserved = false;
         }
 
+        File workspace = null;
         try {
             Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
 
             //Process continues only if the user is authorized
             if (Response.Status.OK.getStatusCode() == authorizationResponse.getStatus()) {
 
-                String currentUser = AuthenticatorUtil.getAuthenticatedUserName();
-                APIImportUtil.initializeProvider(currentUser);
+                ImportMode importMode = getImportMode(mode, incrementalStatus, ImportMode.CREATE);
+                if (importMode == null) {
+                    return Response.status(Status.BAD_REQUEST).entity("Invalid import mode.\n").build();
+                }
 
-                //Temporary directory is used to create the required folders
-                String currentDirectory = System.getProperty(APIImportExportConstants.TEMP_DIR);
-                String createdFolders = File.separator +
-                        RandomStringUtils.randomAlphanumeric(APIImportExportConstants.TEMP_FILENAME_LENGTH) +
-                        File.separator;
-                File importFolder = new File(currentDirectory + createdFolders);
-                boolean folderCreateStatus = importFolder.mkdirs();
+                String currentUser = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+                ImportContext importContext = APIImportUtil.createImportContext(currentUser, new JobProgress(),
+                        importMode, APIImportExportConstants.STATUS_TRUE.equalsIgnoreCase(dryRunStatus));
 
-                //API import process starts only if the required folder is created successfully
-                if (folderCreateStatus) {
+                //The upload is read in a single pass, only large entries are spilled to the workspace
+                workspace = WorkspaceManager.allocateWorkspace();
+                MetricsRegistry.PhaseTimer readTimer = MetricsRegistry.startTimer(MetricsRegistry.Phase.READ_ARCHIVE,
+                        importContext.getTenantDomain());
+                StreamedImportArchive archive;
+                try {
+                    archive = APIImportUtil.readArchive(uploadedInputStream, workspace);
+                    readTimer.succeeded();
+                } finally {
+                    readTimer.stop();
+                }
+                APIImportResult importResult;
+                try {
+                    importResult = APIImportUtil.importAPI(archive, importContext, isProviderPreserved);
+                } finally {
+                    archive.close();
+                }
+                if (importContext.isDryRun()) {
+                    return Response.ok(GsonHolder.getGson().toJson(importResult)).type(MediaType.APPLICATION_JSON)
+                            .build();
+                }
+                if (APIImportResult.Status.SKIPPED == importResult.getStatus()) {
+                    return Response.ok().entity("API import skipped.\n").build();
+                }
+                return Response.status(Status.CREATED).entity("API imported successfully.\n").build();
+            } else {
+                return Response.status(Status.UNAUTHORIZED).entity("Not authorized to import API.\n").build();
+            }
+        } catch (WorkspaceQuotaExceededException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity("Temporary storage is exhausted.\n").build();
+        } catch (APIExportException e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Error in initializing API provider.\n").build();
+        } catch (APIImportException e) {
+            String errorDetail = GsonHolder.getGson().toJson(e.getErrorDescription());
+            return Response.serverError().entity(errorDetail).build();
+        } finally {
+            WorkspaceManager.releaseWorkspace(workspace);
+        }
+    }
 
-                    String uploadFileName = APIImportExportConstants.UPLOAD_FILE_NAME;
-                    String absolutePath = currentDirectory + createdFolders;
-                    APIImportUtil.transferFile(uploadedInputStream, uploadFileName, absolutePath);
+    /**
+     * This is the service which is used to import a set of APIs from an archive which contains a folder
+     * per API. APIs are imported in parallel by a bounded pool of workers. Depending on the choice of the
+     * user, provider of the imported APIs will be preserved or modified.
+     *
+     * @param uploadedInputStream   input stream from the REST request
+     * @param defaultProviderStatus user choice to keep or replace the API provider
+     * @param incrementalStatus     "true" to update existing APIs instead of skipping them
+     * @param mode                  "create", "skipExisting" (default) or "overwrite" to handle existing APIs
+     * @param dryRunStatus          "true" to only validate the archive and return the results the import would have
+     * @param httpHeaders           HTTP headers for the authentication mechanism
+     * @return import result of each API of the archive
+     */
+    @POST
+    @Path("/import-apis")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importAPIs(@Multipart("file") InputStream uploadedInputStream, @QueryParam("preserveProvider")
+    String defaultProviderStatus, @QueryParam("incremental") String incrementalStatus,
+            @QueryParam("mode") String mode, @QueryParam("dryRun") String dryRunStatus,
+            @Context HttpHeaders httpHeaders) {
 
-                    String extractedFolderName = APIImportUtil.extractArchive(
-                            new File(absolutePath + uploadFileName), absolutePath);
+        boolean isProviderPreserved = !APIImportExportConstants.STATUS_FALSE.equalsIgnoreCase(defaultProviderStatus);
 
-                    APIImportUtil.importAPI(absolutePath + extractedFolderName, currentUser, isProviderPreserved);
+        File workspace = null;
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return Response.status(Status.UNAUTHORIZED).entity("Not authorized to import APIs.\n").build();
+            }
 
-                    importFolder.deleteOnExit();
-                    return Response.status(Status.CREATED).entity("API imported successfully.\n").build();
-                } else {
-                    return Response.status(Status.BAD_REQUEST).build();
-                }
-            } else {
-                return Response.status(Status.UNAUTHORIZED).entity("Not authorized to import API.\n").build();
+            ImportMode importMode = getImportMode(mode, incrementalStatus, ImportMode.SKIP_EXISTING);
+            if (importMode == null) {
+                return Response.status(Status.BAD_REQUEST).entity("Invalid import mode.\n").build();
             }
+
+            String currentUser = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+            ImportContext importContext = APIImportUtil.createImportContext(currentUser, new JobProgress(),
+                    importMode, APIImportExportConstants.STATUS_TRUE.equalsIgnoreCase(dryRunStatus));
+
+            //A workspace is used to create the required folders
+            workspace = WorkspaceManager.allocateWorkspace();
+
+            String uploadFileName = APIImportExportConstants.UPLOAD_FILE_NAME;
+            String absolutePath = workspace.getPath() + File.separator;
+            File uploadedArchive = new File(absolutePath + uploadFileName);
+            MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.TRANSFER_UPLOAD,
+                    importContext.getTenantDomain());
+            try {
+                APIImportUtil.transferFile(uploadedInputStream, uploadFileName, absolutePath);
+                timer.setBytes(uploadedArchive.length());
+                timer.succeeded();
+            } finally {
+                timer.stop();
+            }
+
+            timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXTRACT_ARCHIVE, importContext.getTenantDomain());
+            try {
+                APIImportUtil.extractArchive(uploadedArchive, absolutePath);
+                timer.setBytes(uploadedArchive.length());
+                timer.succeeded();
+            } finally {
+                timer.stop();
+            }
+
+            List<APIImportResult> importResults = APIImportUtil.importAPIs(absolutePath, importContext,
+                    isProviderPreserved);
+
+            return Response.ok(GsonHolder.getGson().toJson(importResults)).type(MediaType.APPLICATION_JSON).build();
+
+        } catch (WorkspaceQuotaExceededException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity("Temporary storage is exhausted.\n").build();
         } catch (APIExportException e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Error in initializing API provider.\n").build();
         } catch (APIImportException e) {
-            String errorDetail = new Gson().toJson(e.getErrorDescription());
+            String errorDetail = GsonHolder.getGson().toJson(e.getErrorDescription());
             return Response.serverError().entity(errorDetail).build();
+        } finally {
+            WorkspaceManager.releaseWorkspace(workspace);
+        }
+    }
+
+    /**
+     * This service submits an asynchronous job which exports a set of APIs into a single zipped archive.
+     * APIs are selected in the same way as the bulk export service. The progress of the job is polled
+     * through the job status service and the archive is downloaded once the job is completed
+     *
+     * @param providerName Provider name of the APIs that need to be exported
+     * @param namePattern  Name pattern of the APIs that need to be exported, '*' matches any characters
+     * @param tag          Tag of the APIs that need to be exported
+     * @param status       Lifecycle state of the APIs that need to be exported
+     * @param apis         APIs that need to be exported in the form name:version:provider
+     * @param since        Time in milliseconds since the epoch; if given only the resources changed since are exported
+     * @return ID of the submitted job
+     */
+    @POST
+    @Path("/jobs/export")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitExportJob(@QueryParam("provider") String providerName,
+            @QueryParam("name") String namePattern, @QueryParam("tag") String tag,
+            @QueryParam("status") String status, @QueryParam("api") List<String> apis,
+            @QueryParam("since") Long since, @Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            String userName = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+            APIExportFilter filter = new APIExportFilter();
+            Response filterResponse = populateExportFilter(filter, userName, providerName, namePattern, tag, status,
+                    apis);
+            if (filterResponse != null) {
+                return filterResponse;
+            }
+
+            APIJob job = APIJobManager.createJob(APIJob.Type.EXPORT, userName);
+            APIJobManager.submitExportJob(job, APIExportUtil.getProvider(userName), filter,
+                    since != null ? new ExportBaseline(since) : null);
+            log.info("Export job " + job.getJobId() + " submitted");
+            return getJobSubmissionResponse(job);
+
+        } catch (WorkspaceQuotaExceededException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity("Temporary storage is exhausted.\n")
+                    .type(MediaType.APPLICATION_JSON).build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while submitting export job ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        } catch (RejectedExecutionException e) {
+            log.error("Export job rejected since the job queue is full");
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity("Too many pending jobs.\n").build();
+        }
+    }
+
+    /**
+     * This service submits an asynchronous job which imports the APIs of an archive containing a folder
+     * per API. The archive is stored before responding and the APIs are imported by the job
+     *
+     * @param uploadedInputStream   input stream from the REST request
+     * @param defaultProviderStatus user choice to keep or replace the API provider
+     * @param incrementalStatus     "true" to update existing APIs instead of skipping them
+     * @param mode                  "create", "skipExisting" (default) or "overwrite" to handle existing APIs
+     * @param httpHeaders           HTTP headers for the authentication mechanism
+     * @return ID of the submitted job
+     */
+    @POST
+    @Path("/jobs/import")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitImportJob(@Multipart("file") InputStream uploadedInputStream,
+            @QueryParam("preserveProvider") String defaultProviderStatus,
+            @QueryParam("incremental") String incrementalStatus, @QueryParam("mode") String mode,
+            @Context HttpHeaders httpHeaders) {
+
+        boolean isProviderPreserved = !APIImportExportConstants.STATUS_FALSE.equalsIgnoreCase(defaultProviderStatus);
+        APIJob job = null;
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return Response.status(Status.UNAUTHORIZED).entity("Not authorized to import APIs.\n").build();
+            }
+
+            ImportMode importMode = getImportMode(mode, incrementalStatus, ImportMode.SKIP_EXISTING);
+            if (importMode == null) {
+                return Response.status(Status.BAD_REQUEST).entity("Invalid import mode.\n").build();
+            }
+
+            String currentUser = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+            job = APIJobManager.createJob(APIJob.Type.IMPORT, currentUser);
+
+            //the upload belongs to the request, hence it is stored before the job is queued
+            String workspacePath = job.getWorkspace().getPath() + File.separator;
+            File uploadedArchive = new File(workspacePath + APIImportExportConstants.UPLOAD_FILE_NAME);
+            MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.TRANSFER_UPLOAD,
+                    MultitenantUtils.getTenantDomain(currentUser));
+            try {
+                APIImportUtil.transferFile(uploadedInputStream, APIImportExportConstants.UPLOAD_FILE_NAME,
+                        workspacePath);
+                timer.setBytes(uploadedArchive.length());
+                timer.succeeded();
+            } finally {
+                timer.stop();
+            }
+            job.getProgress().addBytes(uploadedArchive.length());
+
+            APIJobManager.submitImportJob(job, uploadedArchive, isProviderPreserved, importMode);
+            log.info("Import job " + job.getJobId() + " submitted");
+            return getJobSubmissionResponse(job);
+
+        } catch (WorkspaceQuotaExceededException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity("Temporary storage is exhausted.\n").build();
+        } catch (APIExportException e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR).entity("Error in initializing API provider.\n").build();
+        } catch (APIImportException e) {
+            APIJobManager.discardJob(job);
+            String errorDetail = GsonHolder.getGson().toJson(e.getErrorDescription());
+            return Response.serverError().entity(errorDetail).build();
+        } catch (RejectedExecutionException e) {
+            log.error("Import job rejected since the job queue is full");
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity("Too many pending jobs.\n").build();
+        }
+    }
+
+    /**
+     * This service reports the state and progress of an asynchronous job. Import results are reported
+     * once an import job is completed
+     *
+     * @param jobId       ID of the job
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return state and progress of the job
+     */
+    @GET
+    @Path("/jobs/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJobStatus(@PathParam("jobId") String jobId, @Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            APIJob job = APIJobManager.getJob(jobId, AuthenticatorUtil.getAuthenticatedUserName(httpHeaders));
+            if (job == null) {
+                return Response.status(Status.NOT_FOUND).entity("Job not found : " + jobId)
+                        .type(MediaType.APPLICATION_JSON).build();
+            }
+            return Response.ok(GsonHolder.getGson().toJson(job.toMap())).type(MediaType.APPLICATION_JSON).build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * This service downloads the archive of a completed export job. A single byte range can be requested
+     * through the Range header to resume an interrupted download
+     *
+     * @param jobId       ID of the export job
+     * @param range       value of the Range header, the whole archive is downloaded if not given
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return Zipped APIs or the requested part of them
+     */
+    @GET
+    @Path("/jobs/{jobId}/download")
+    @Produces("application/zip")
+    public Response downloadJobArchive(@PathParam("jobId") String jobId, @HeaderParam("Range") String range,
+            @Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            APIJob job = APIJobManager.getJob(jobId, AuthenticatorUtil.getAuthenticatedUserName(httpHeaders));
+            if (job == null || job.getType() != APIJob.Type.EXPORT) {
+                return Response.status(Status.NOT_FOUND).entity("Export job not found : " + jobId)
+                        .type(MediaType.APPLICATION_JSON).build();
+            }
+            if (job.getState() != APIJob.State.COMPLETED) {
+                return Response.status(Status.CONFLICT).entity("Export job is " + job.getState())
+                        .type(MediaType.APPLICATION_JSON).build();
+            }
+
+            File archive = job.getArchive();
+            long archiveLength = archive.length();
+            long[] byteRange = parseByteRange(range, archiveLength);
+            Response.ResponseBuilder response;
+            if (byteRange == null) {
+                response = Response.ok(archive);
+            } else if (byteRange.length == 0) {
+                return Response.status(APIImportExportConstants.RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", "bytes */" + archiveLength).build();
+            } else {
+                response = Response.status(APIImportExportConstants.PARTIAL_CONTENT)
+                        .entity(new FileRangeStreamingOutput(archive, byteRange[0], byteRange[1]))
+                        .header("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + archiveLength)
+                        .header(HttpHeaders.CONTENT_LENGTH, byteRange[1] - byteRange[0] + 1);
+            }
+            response.header("Accept-Ranges", "bytes");
+            response.header("Content-Disposition", "attachment; filename=\"" +
+                    APIImportExportConstants.BULK_EXPORT_FILE_NAME + "\"");
+            return response.build();
+
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * Build the response of a job submission
+     *
+     * @param job Submitted job
+     * @return Response carrying the ID of the job
+     */
+    private Response getJobSubmissionResponse(APIJob job) {
+        Map<String, Object> submission = new LinkedHashMap<String, Object>();
+        submission.put("jobId", job.getJobId());
+        submission.put("state", job.getState().name());
+        return Response.status(Status.ACCEPTED).entity(GsonHolder.getGson().toJson(submission))
+                .type(MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Parse a Range header of the form bytes=first-last, bytes=first- or bytes=-suffixLength.
+     * Multiple ranges are not supported, hence the whole content is served for them
+     *
+     * @param range         Value of the Range header
+     * @param contentLength Length of the requested content
+     * @return null to serve the whole content, an empty array if the range cannot be satisfied, otherwise the
+     * first and last byte positions of the range
+     */
+    private static long[] parseByteRange(String range, long contentLength) {
+        if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String rangeSpec = range.substring("bytes=".length()).trim();
+        int separatorIndex = rangeSpec.indexOf('-');
+        if (separatorIndex < 0) {
+            return null;
+        }
+
+        long first;
+        long last;
+        try {
+            String firstPosition = rangeSpec.substring(0, separatorIndex).trim();
+            String lastPosition = rangeSpec.substring(separatorIndex + 1).trim();
+            if (firstPosition.length() == 0) {
+                //suffix range requesting the last bytes of the content
+                long suffixLength = Long.parseLong(lastPosition);
+                first = Math.max(0, contentLength - suffixLength);
+                last = contentLength - 1;
+                if (suffixLength == 0) {
+                    return new long[0];
+                }
+            } else {
+                first = Long.parseLong(firstPosition);
+                last = lastPosition.length() == 0 ? contentLength - 1 :
+                        Math.min(Long.parseLong(lastPosition), contentLength - 1);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (first < 0 || first > last || first >= contentLength) {
+            return new long[0];
+        }
+        return new long[]{first, last};
+    }
+
+    /**
+     * Streams a file of a workspace to the response and releases the workspace once the file is written
+     */
+    private static class WorkspaceFileStreamingOutput implements StreamingOutput {
+
+        private final File file;
+        private final File workspace;
+
+        WorkspaceFileStreamingOutput(File file, File workspace) {
+            this.file = file;
+            this.workspace = workspace;
+        }
+
+        public void write(OutputStream outputStream) throws IOException {
+            try {
+                FileUtils.copyFile(file, outputStream);
+            } finally {
+                WorkspaceManager.releaseWorkspace(workspace);
+            }
+        }
+    }
+
+    /**
+     * Streams a byte range of a file to the response
+     */
+    private static class FileRangeStreamingOutput implements StreamingOutput {
+
+        private final File file;
+        private final long first;
+        private final long last;
+
+        FileRangeStreamingOutput(File file, long first, long last) {
+            this.file = file;
+            this.first = first;
+            this.last = last;
+        }
+
+        public void write(OutputStream outputStream) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                randomAccessFile.seek(first);
+                byte[] buffer = new byte[APIImportExportConstants.BUFFER_SIZE];
+                long remaining = last - first + 1;
+                while (remaining > 0) {
+                    int count = randomAccessFile.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (count < 0) {
+                        break;
+                    }
+                    outputStream.write(buffer, 0, count);
+                    remaining -= count;
+                }
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    /**
+     * This service reports the hit and miss counters of the cache of authorization decisions. The counters
+     * cover all the tenants, hence they are only reported to admins of the super tenant
+     *
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return statistics of the authorization cache
+     */
+    @GET
+    @Path("/authorization-cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getAuthorizationCacheStatistics(@Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+            if (!isTenantAccessible(AuthenticatorUtil.getAuthenticatedUserName(httpHeaders), null)) {
+                return Response.status(Response.Status.FORBIDDEN).entity("Not authorized to view the statistics " +
+                        "of the cache.\n").build();
+            }
+
+            Map<String, Object> statistics = getCacheStatistics(AuthenticatorUtil.getAuthorizationCacheStats());
+            return Response.ok(GsonHolder.getGson().toJson(statistics)).type(MediaType.APPLICATION_JSON).build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * This service discards cached authorization decisions, either of a given user or of all the users of
+     * the requester's tenant. Only admins of the super tenant can discard the decisions of a user of another
+     * tenant
+     *
+     * @param userName    name of the user whose decisions are discarded, the decisions of all the users of the
+     *                    requester's tenant are discarded if not given
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return response indicating whether the cache got cleared
+     */
+    @DELETE
+    @Path("/authorization-cache")
+    public Response invalidateAuthorizationCache(@QueryParam("user") String userName,
+            @Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            String currentUser = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+            if (userName == null) {
+                AuthenticatorUtil.invalidateTenantAuthorizationCache(MultitenantUtils.getTenantDomain(currentUser));
+            } else if (isTenantAccessible(currentUser, MultitenantUtils.getTenantDomain(userName))) {
+                AuthenticatorUtil.invalidateAuthorizationCache(userName);
+            } else {
+                return Response.status(Response.Status.FORBIDDEN).entity("Not authorized to discard the cached " +
+                        "decisions of user " + userName + ".\n").build();
+            }
+            return Response.ok().build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * This service reports the hit and miss counters of the caches of API providers and registries. The counters
+     * cover all the tenants, hence they are only reported to admins of the super tenant
+     *
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return statistics of the provider and registry caches
+     */
+    @GET
+    @Path("/handle-cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getHandleCacheStatistics(@Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            if (!isTenantAccessible(AuthenticatorUtil.getAuthenticatedUserName(httpHeaders), null)) {
+                return Response.status(Response.Status.FORBIDDEN).entity("Not authorized to view the statistics " +
+                        "of the cache.\n").build();
+            }
+
+            Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+            statistics.put("provider", getCacheStatistics(APIExportUtil.getProviderCacheStats()));
+            statistics.put("registry", getCacheStatistics(APIExportUtil.getRegistryCacheStats()));
+            return Response.ok(GsonHolder.getGson().toJson(statistics)).type(MediaType.APPLICATION_JSON).build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * This service discards cached API providers and registries, either the provider of a given user or the
+     * providers and registry of the requester's tenant. Only admins of the super tenant can discard the provider
+     * of a user of another tenant
+     *
+     * @param userName    name of the user whose provider is discarded, the providers and registry of the
+     *                    requester's tenant are discarded if not given
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return response indicating whether the cache got cleared
+     */
+    @DELETE
+    @Path("/handle-cache")
+    public Response invalidateHandleCache(@QueryParam("user") String userName, @Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            String currentUser = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+            if (userName == null) {
+                APIExportUtil.invalidateTenantHandleCache(MultitenantUtils.getTenantDomain(currentUser));
+            } else if (isTenantAccessible(currentUser, MultitenantUtils.getTenantDomain(userName))) {
+                APIExportUtil.invalidateHandleCache(userName);
+            } else {
+                return Response.status(Response.Status.FORBIDDEN).entity("Not authorized to discard the cached " +
+                        "provider of user " + userName + ".\n").build();
+            }
+            return Response.ok().build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * This service reports the hit and miss counters of the cache of tenant tiers used to validate imported APIs.
+     * The counters cover all the tenants, hence they are only reported to admins of the super tenant
+     *
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return statistics of the tier cache
+     */
+    @GET
+    @Path("/tier-cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getTierCacheStatistics(@Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            if (!isTenantAccessible(AuthenticatorUtil.getAuthenticatedUserName(httpHeaders), null)) {
+                return Response.status(Response.Status.FORBIDDEN).entity("Not authorized to view the statistics " +
+                        "of the cache.\n").build();
+            }
+
+            return Response.ok(GsonHolder.getGson().toJson(getCacheStatistics(TierCache.getStats())))
+                    .type(MediaType.APPLICATION_JSON).build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * This service discards the cached tiers of the requester's tenant. Admins of the super tenant can discard
+     * the tiers of a given tenant or of all the tenants
+     *
+     * @param tenantDomain tenant domain whose tiers are discarded, everything is discarded if not given. Only
+     *                     honoured for admins of the super tenant
+     * @param httpHeaders  HTTP headers for the authentication mechanism
+     * @return response indicating whether the cache got cleared
+     */
+    @DELETE
+    @Path("/tier-cache")
+    public Response invalidateTierCache(@QueryParam("tenant") String tenantDomain, @Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            String currentUser = AuthenticatorUtil.getAuthenticatedUserName(httpHeaders);
+            if (!isTenantAccessible(currentUser, null)) {
+                TierCache.invalidate(MultitenantUtils.getTenantDomain(currentUser));
+            } else if (tenantDomain == null) {
+                TierCache.invalidate();
+            } else {
+                TierCache.invalidate(tenantDomain);
+            }
+            return Response.ok().build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * Decide how an import request handles existing APIs. Importing incrementally is the same as the
+     * overwrite mode
+     *
+     * @param mode              import mode given in the request, null if not given
+     * @param incrementalStatus "true" to update existing APIs with the resources of the archive
+     * @param defaultMode       mode used if neither a mode nor an incremental import is requested
+     * @return the import mode, null if the given mode is unknown or contradicts the incremental import
+     */
+    private static ImportMode getImportMode(String mode, String incrementalStatus, ImportMode defaultMode) {
+        boolean isIncremental = APIImportExportConstants.STATUS_TRUE.equalsIgnoreCase(incrementalStatus);
+        if (mode == null) {
+            return isIncremental ? ImportMode.OVERWRITE : defaultMode;
+        }
+        ImportMode importMode = ImportMode.fromString(mode);
+        if (isIncremental && ImportMode.OVERWRITE != importMode) {
+            return null;
+        }
+        return importMode;
+    }
+
+    /**
+     * Decide whether an admin may manage the cached state of a tenant. Admins of the super tenant manage
+     * every tenant, while admins of other tenants only manage their own tenant
+     *
+     * @param userName     name of the requester
+     * @param tenantDomain tenant domain of the cached state, null if the state is shared by all the tenants
+     * @return true if the requester may manage the state
+     */
+    private static boolean isTenantAccessible(String userName, String tenantDomain) {
+        String requesterDomain = MultitenantUtils.getTenantDomain(userName);
+        return MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equals(requesterDomain) ||
+                requesterDomain.equals(tenantDomain);
+    }
+
+    /**
+     * Convert the statistics of a cache to a map
+     *
+     * @param cacheStats Statistics of the cache
+     * @return Hit and miss counters of the cache
+     */
+    private static Map<String, Object> getCacheStatistics(CacheStats cacheStats) {
+        Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+        statistics.put("hitCount", cacheStats.hitCount());
+        statistics.put("missCount", cacheStats.missCount());
+        statistics.put("hitRate", cacheStats.hitRate());
+        statistics.put("evictionCount", cacheStats.evictionCount());
+        return statistics;
+    }
+
+    /**
+     * This service reports the timers, counters and byte histograms of the export and import phases.
+     * Administrators of the super tenant see the metrics of all tenants, other administrators see the
+     * metrics of their own tenant
+     *
+     * @param httpHeaders HTTP headers for the authentication mechanism
+     * @return statistics of every recorded phase, tenant and outcome
+     */
+    @GET
+    @Path("/metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMetrics(@Context HttpHeaders httpHeaders) {
+        try {
+            Response authorizationResponse = AuthenticatorUtil.authorizeUser(httpHeaders);
+            if (!(Response.Status.OK.getStatusCode() == authorizationResponse.getStatus())) {
+                return authorizationResponse;
+            }
+
+            String tenantDomain =
+                    MultitenantUtils.getTenantDomain(AuthenticatorUtil.getAuthenticatedUserName(httpHeaders));
+            List<PhaseStatistics> statistics;
+            if (MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equals(tenantDomain)) {
+                statistics = MetricsRegistry.getPhaseStatistics();
+            } else {
+                statistics = MetricsRegistry.getPhaseStatistics(tenantDomain);
+            }
+            return Response.ok(GsonHolder.getGson().toJson(statistics)).type(MediaType.APPLICATION_JSON).build();
+        } catch (APIExportException e) {
+            log.error("APIExportException occurred while authorizing user ", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
+                    .type(MediaType.APPLICATION_JSON).build();
         }
     }
 }
@@ -0,0 +1,145 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the MANIFEST.json file at the root of an exported archive. It lists every other
+ * entry of the archive with its size and SHA-256 hash, so that an importer can verify the entries while
+ * reading them and skip resources which already exist with the same content. Unlike the export manifest
+ * of incremental exports, it describes the archive itself rather than the registry resources
+ */
+public class ArchiveManifest {
+
+    /**
+     * Roles of the entries of an archive
+     */
+    public enum Role {
+        META, SWAGGER, DOC, ICON, WSDL, SEQUENCE, OTHER
+    }
+
+    private List<Entry> entries = new ArrayList<Entry>();
+    private transient Map<String, Entry> entryIndex;
+
+    /**
+     * Add the entry of a file of the archive
+     *
+     * @param entry Entry of the file
+     */
+    public synchronized void addEntry(Entry entry) {
+        entries.add(entry);
+        entryIndex = null;
+    }
+
+    /**
+     * @return Entries of the archive
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries);
+    }
+
+    /**
+     * Look up the entry of a file of the archive
+     *
+     * @param path Path of the entry in the archive, separated by '/'
+     * @return Entry of the file, null if it is not listed
+     */
+    public synchronized Entry getEntry(String path) {
+        if (entryIndex == null) {
+            entryIndex = new HashMap<String, Entry>();
+            for (Entry entry : entries) {
+                entryIndex.put(entry.getPath(), entry);
+            }
+        }
+        return entryIndex.get(path);
+    }
+
+    /**
+     * Find out the role of an entry from the folder of the API it is in
+     *
+     * @param path Path of the entry in the archive, separated by '/'
+     * @return Role of the entry
+     */
+    public static Role getRole(String path) {
+        String[] segments = path.split(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR);
+        if (segments.length < 3) {
+            return Role.OTHER;
+        }
+        String folder = segments[1];
+        if ("Meta-information".equals(folder)) {
+            return "swagger.json".equals(segments[segments.length - 1]) ? Role.SWAGGER : Role.META;
+        } else if ("Docs".equals(folder)) {
+            return Role.DOC;
+        } else if ("Image".equals(folder)) {
+            return Role.ICON;
+        } else if ("WSDL".equals(folder)) {
+            return Role.WSDL;
+        } else if ("Sequences".equals(folder)) {
+            return Role.SEQUENCE;
+        }
+        return Role.OTHER;
+    }
+
+    /**
+     * This class represents a file of the archive
+     */
+    public static class Entry {
+
+        private String path;
+        private long size;
+        private String sha256;
+        private Role role;
+
+        public Entry() {
+        }
+
+        /**
+         * @param path   Path of the entry in the archive, separated by '/'
+         * @param size   Size of the content in bytes
+         * @param sha256 SHA-256 hash of the content as a hex string
+         */
+        public Entry(String path, long size, String sha256) {
+            this.path = path;
+            this.size = size;
+            this.sha256 = sha256;
+            this.role = ArchiveManifest.getRole(path);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public Role getRole() {
+            return role;
+        }
+    }
+}
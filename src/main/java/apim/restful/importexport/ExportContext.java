@@ -0,0 +1,136 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport;
+
+import apim.restful.importexport.utils.ArchiveWriter;
+import apim.restful.importexport.utils.ExportBaseline;
+import org.wso2.carbon.apimgt.api.APIProvider;
+import org.wso2.carbon.registry.api.Registry;
+import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
+
+/**
+ * This class holds the state of a single export request. It is created per request and passed
+ * through the export utilities, so that concurrent exports do not share any mutable state
+ */
+public class ExportContext {
+
+    private final String userName;
+    private final String tenantDomain;
+    private final APIProvider provider;
+    private final Registry registry;
+    private final int tenantId;
+    private final ArchiveWriter archiveWriter;
+    private final JobProgress progress;
+    private final ExportBaseline baseline;
+    private final ExportManifest manifest;
+
+    /**
+     * @param userName      User name of the requester
+     * @param provider      API provider of the requester
+     * @param registry      Registry of the requester's tenant
+     * @param tenantId      ID of the requester's tenant
+     * @param archiveWriter Destination of the exported resources
+     */
+    public ExportContext(String userName, APIProvider provider, Registry registry, int tenantId,
+            ArchiveWriter archiveWriter) {
+        this(userName, provider, registry, tenantId, archiveWriter, new JobProgress());
+    }
+
+    /**
+     * @param userName      User name of the requester
+     * @param provider      API provider of the requester
+     * @param registry      Registry of the requester's tenant
+     * @param tenantId      ID of the requester's tenant
+     * @param archiveWriter Destination of the exported resources
+     * @param progress      Progress of the export request
+     */
+    public ExportContext(String userName, APIProvider provider, Registry registry, int tenantId,
+            ArchiveWriter archiveWriter, JobProgress progress) {
+        this(userName, provider, registry, tenantId, archiveWriter, progress, null);
+    }
+
+    /**
+     * @param userName      User name of the requester
+     * @param provider      API provider of the requester
+     * @param registry      Registry of the requester's tenant
+     * @param tenantId      ID of the requester's tenant
+     * @param archiveWriter Destination of the exported resources
+     * @param progress      Progress of the export request
+     * @param baseline      Baseline of an incremental export, null to export everything
+     */
+    public ExportContext(String userName, APIProvider provider, Registry registry, int tenantId,
+            ArchiveWriter archiveWriter, JobProgress progress, ExportBaseline baseline) {
+        this.userName = userName;
+        this.tenantDomain = MultitenantUtils.getTenantDomain(userName);
+        this.provider = provider;
+        this.registry = registry;
+        this.tenantId = tenantId;
+        this.archiveWriter = archiveWriter;
+        this.progress = progress;
+        this.baseline = baseline;
+        this.manifest = new ExportManifest(System.currentTimeMillis(), baseline != null ? baseline.getSince() : null,
+                baseline != null);
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getTenantDomain() {
+        return tenantDomain;
+    }
+
+    public APIProvider getProvider() {
+        return provider;
+    }
+
+    public Registry getRegistry() {
+        return registry;
+    }
+
+    public int getTenantId() {
+        return tenantId;
+    }
+
+    public ArchiveWriter getArchiveWriter() {
+        return archiveWriter;
+    }
+
+    public JobProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return Baseline of an incremental export, null if everything is exported
+     */
+    public ExportBaseline getBaseline() {
+        return baseline;
+    }
+
+    public boolean isIncremental() {
+        return baseline != null;
+    }
+
+    /**
+     * @return Manifest recording the APIs and registry resources covered by the export
+     */
+    public ExportManifest getManifest() {
+        return manifest;
+    }
+}
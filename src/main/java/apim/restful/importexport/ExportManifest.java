@@ -0,0 +1,214 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class represents the manifest of an export. It records the last modified time of each
+ * exported API and of its registry resources, so that a later export can include only the
+ * resources which changed since. Resources which were left out of an incremental export are
+ * listed as not included
+ */
+public class ExportManifest {
+
+    private long exportedAt;
+    private Long since;
+    private boolean incremental;
+    private List<APIEntry> apis = new ArrayList<APIEntry>();
+
+    public ExportManifest() {
+    }
+
+    /**
+     * @param exportedAt  Time at which the export started, in milliseconds since the epoch
+     * @param since       Time since which changes are exported, null if not known
+     * @param incremental true if unchanged resources are left out of the export
+     */
+    public ExportManifest(long exportedAt, Long since, boolean incremental) {
+        this.exportedAt = exportedAt;
+        this.since = since;
+        this.incremental = incremental;
+    }
+
+    public long getExportedAt() {
+        return exportedAt;
+    }
+
+    public Long getSince() {
+        return since;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @return Entries of the APIs covered by the export
+     */
+    public synchronized List<APIEntry> getAPIs() {
+        return new ArrayList<APIEntry>(apis);
+    }
+
+    /**
+     * Add the entry of an exported API
+     *
+     * @param apiEntry Entry of the API
+     */
+    public synchronized void addAPI(APIEntry apiEntry) {
+        apis.add(apiEntry);
+    }
+
+    /**
+     * This class represents an API of the manifest together with its registry resources
+     */
+    public static class APIEntry {
+
+        private String providerName;
+        private String apiName;
+        private String version;
+        private Long lastUpdated;
+        private boolean unchanged;
+        private List<ResourceEntry> resources = new ArrayList<ResourceEntry>();
+
+        public APIEntry() {
+        }
+
+        /**
+         * @param providerName Provider name of the API
+         * @param apiName      Name of the API
+         * @param version      Version of the API
+         * @param lastUpdated  Last updated time of the API, null if not known
+         */
+        public APIEntry(String providerName, String apiName, String version, Date lastUpdated) {
+            this.providerName = providerName;
+            this.apiName = apiName;
+            this.version = version;
+            this.lastUpdated = lastUpdated != null ? lastUpdated.getTime() : null;
+        }
+
+        public String getProviderName() {
+            return providerName;
+        }
+
+        public String getApiName() {
+            return apiName;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public Long getLastUpdated() {
+            return lastUpdated;
+        }
+
+        /**
+         * @return true if neither the API nor any of its resources changed, in which case
+         * nothing of the API is part of the export
+         */
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        public void setUnchanged(boolean unchanged) {
+            this.unchanged = unchanged;
+        }
+
+        /**
+         * @return Key identifying the API across manifests
+         */
+        public String getKey() {
+            return getKey(providerName, apiName, version);
+        }
+
+        /**
+         * @return Registry resources of the API
+         */
+        public synchronized List<ResourceEntry> getResources() {
+            return new ArrayList<ResourceEntry>(resources);
+        }
+
+        /**
+         * Record a registry resource of the API, replacing an earlier record of the same resource
+         *
+         * @param resourceEntry Entry of the resource
+         */
+        public synchronized void addResource(ResourceEntry resourceEntry) {
+            for (Iterator<ResourceEntry> iterator = resources.iterator(); iterator.hasNext(); ) {
+                if (iterator.next().getRegistryPath().equals(resourceEntry.getRegistryPath())) {
+                    iterator.remove();
+                }
+            }
+            resources.add(resourceEntry);
+        }
+
+        /**
+         * Build the key identifying an API across manifests
+         *
+         * @param providerName Provider name of the API
+         * @param apiName      Name of the API
+         * @param version      Version of the API
+         * @return Key of the API
+         */
+        public static String getKey(String providerName, String apiName, String version) {
+            return providerName + "-" + apiName + "-" + version;
+        }
+    }
+
+    /**
+     * This class represents a registry resource of an exported API
+     */
+    public static class ResourceEntry {
+
+        private String registryPath;
+        private Long lastModified;
+        private boolean included;
+
+        public ResourceEntry() {
+        }
+
+        /**
+         * @param registryPath Path of the resource in the registry
+         * @param lastModified Last modified time of the resource, null if not known
+         * @param included     true if the resource is part of the export
+         */
+        public ResourceEntry(String registryPath, Date lastModified, boolean included) {
+            this.registryPath = registryPath;
+            this.lastModified = lastModified != null ? lastModified.getTime() : null;
+            this.included = included;
+        }
+
+        public String getRegistryPath() {
+            return registryPath;
+        }
+
+        public Long getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isIncluded() {
+            return included;
+        }
+    }
+}
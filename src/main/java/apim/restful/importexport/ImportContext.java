@@ -0,0 +1,147 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport;
+
+import org.wso2.carbon.apimgt.api.APIProvider;
+import org.wso2.carbon.registry.api.Registry;
+import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds the state of a single import request. It is created per request and passed
+ * through the import utilities, so that concurrent imports do not share any mutable state
+ */
+public class ImportContext {
+
+    private final String currentUser;
+    private final String tenantDomain;
+    private final APIProvider provider;
+    private final Registry registry;
+    private final JobProgress progress;
+    private final ImportMode mode;
+    private final boolean dryRun;
+    private final ConcurrentMap<String, String> resourceHashes = new ConcurrentHashMap<String, String>();
+
+    /**
+     * @param currentUser User name of the requester
+     * @param provider    API provider of the requester
+     * @param registry    Registry of the requester's tenant
+     */
+    public ImportContext(String currentUser, APIProvider provider, Registry registry) {
+        this(currentUser, provider, registry, new JobProgress());
+    }
+
+    /**
+     * @param currentUser User name of the requester
+     * @param provider    API provider of the requester
+     * @param registry    Registry of the requester's tenant
+     * @param progress    Progress of the import request
+     */
+    public ImportContext(String currentUser, APIProvider provider, Registry registry, JobProgress progress) {
+        this(currentUser, provider, registry, progress, ImportMode.CREATE);
+    }
+
+    /**
+     * @param currentUser User name of the requester
+     * @param provider    API provider of the requester
+     * @param registry    Registry of the requester's tenant
+     * @param progress    Progress of the import request
+     * @param mode        Way of handling APIs which already exist
+     */
+    public ImportContext(String currentUser, APIProvider provider, Registry registry, JobProgress progress,
+            ImportMode mode) {
+        this(currentUser, provider, registry, progress, mode, false);
+    }
+
+    /**
+     * @param currentUser User name of the requester
+     * @param provider    API provider of the requester
+     * @param registry    Registry of the requester's tenant
+     * @param progress    Progress of the import request
+     * @param mode        Way of handling APIs which already exist
+     * @param dryRun      True if the archive is only validated, without adding anything to the provider or registry
+     */
+    public ImportContext(String currentUser, APIProvider provider, Registry registry, JobProgress progress,
+            ImportMode mode, boolean dryRun) {
+        this.currentUser = currentUser;
+        this.tenantDomain = MultitenantUtils.getTenantDomain(currentUser);
+        this.provider = provider;
+        this.registry = registry;
+        this.progress = progress;
+        this.mode = mode;
+        this.dryRun = dryRun;
+    }
+
+    public String getCurrentUser() {
+        return currentUser;
+    }
+
+    public String getTenantDomain() {
+        return tenantDomain;
+    }
+
+    public APIProvider getProvider() {
+        return provider;
+    }
+
+    public Registry getRegistry() {
+        return registry;
+    }
+
+    public JobProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return Way of handling APIs which already exist
+     */
+    public ImportMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return True if the archive is only validated, without adding anything to the provider or registry
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * Retrieve the hash of the content a shared registry resource has for the request, either read from the
+     * registry or set by an API imported earlier by the request
+     *
+     * @param resourcePath Registry path of the resource
+     * @return SHA-256 hash of the content, null if the resource is not known to the request yet
+     */
+    public String getResourceHash(String resourcePath) {
+        return resourceHashes.get(resourcePath);
+    }
+
+    /**
+     * Record the hash of the content a shared registry resource has for the request
+     *
+     * @param resourcePath Registry path of the resource
+     * @param hash         SHA-256 hash of the content
+     */
+    public void setResourceHash(String resourcePath, String hash) {
+        resourceHashes.put(resourcePath, hash);
+    }
+}
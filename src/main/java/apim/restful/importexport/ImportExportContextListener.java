@@ -0,0 +1,44 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+package apim.restful.importexport;
+
+import apim.restful.importexport.utils.ExecutorServiceHolder;
+import apim.restful.importexport.utils.MetricsRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * This class stops the worker pools and unregisters the metrics MBean of the web application when it is
+ * stopped, so that a redeployment does not leave threads or classes behind
+ */
+public class ImportExportContextListener implements ServletContextListener {
+
+    private static final Log log = LogFactory.getLog(ImportExportContextListener.class);
+
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+    }
+
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        log.info("Shutting down the worker pools of API import export");
+        ExecutorServiceHolder.shutdown();
+        MetricsRegistry.unregister();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport;
+
+/**
+ * This enum represents the ways an import handles APIs which already exist in the tenant
+ */
+public enum ImportMode {
+
+    //an API which already exists fails the import of the API
+    CREATE,
+    //an API which already exists is left as it is
+    SKIP_EXISTING,
+    //an API which already exists is updated with the definition and resources of the archive which changed
+    OVERWRITE;
+
+    /**
+     * Parse the import mode of a request. Modes are matched ignoring case and underscores, so that both
+     * "skip_existing" and "skipExisting" are accepted
+     *
+     * @param mode Import mode given in the request
+     * @return The matching import mode, null if there is none
+     */
+    public static ImportMode fromString(String mode) {
+        String modeName = mode.replace("_", "");
+        for (ImportMode importMode : values()) {
+            if (importMode.name().replace("_", "").equalsIgnoreCase(modeName)) {
+                return importMode;
+            }
+        }
+        return null;
+    }
+}
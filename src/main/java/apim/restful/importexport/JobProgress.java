@@ -0,0 +1,98 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class tracks the progress of an export or import request. It is updated concurrently by the
+ * workers of the request and read by the job status service
+ */
+public class JobProgress {
+
+    /**
+     * Phases of the export and import processes
+     */
+    public enum Phase {
+        QUEUED, SELECTING_APIS, RETRIEVING_API, RETRIEVING_RESOURCES, WRITING_META_INFORMATION,
+        EXTRACTING_ARCHIVE, READING_META_INFORMATION, ADDING_API, ADDING_RESOURCES, COMPLETED
+    }
+
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile String currentAPI;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger totalAPIs = new AtomicInteger();
+    private final AtomicInteger completedAPIs = new AtomicInteger();
+    private final AtomicInteger failedAPIs = new AtomicInteger();
+
+    /**
+     * Record the phase an API has reached
+     *
+     * @param phase   Phase reached
+     * @param apiName Name and version of the API being processed, null if the phase is not specific to an API
+     */
+    public void setPhase(Phase phase, String apiName) {
+        this.phase = phase;
+        this.currentAPI = apiName;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void addBytes(long count) {
+        bytes.addAndGet(count);
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public void addTotalAPIs(int count) {
+        totalAPIs.addAndGet(count);
+    }
+
+    public void apiCompleted() {
+        completedAPIs.incrementAndGet();
+    }
+
+    public void apiFailed() {
+        failedAPIs.incrementAndGet();
+    }
+
+    /**
+     * Take a snapshot of the progress to be reported to the client
+     *
+     * @return Progress attributes in reporting order
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> progress = new LinkedHashMap<String, Object>();
+        progress.put("phase", phase.name());
+        progress.put("currentAPI", currentAPI);
+        progress.put("bytes", bytes.get());
+        progress.put("totalAPIs", totalAPIs.get());
+        progress.put("completedAPIs", completedAPIs.get());
+        progress.put("failedAPIs", failedAPIs.get());
+        return progress;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport;
+
+/**
+ * This class is used to indicate that a workspace cannot be allocated since the workspaces of the
+ * requests in progress already use the configured disk quota
+ */
+public class WorkspaceQuotaExceededException extends APIExportException {
+
+    public WorkspaceQuotaExceededException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport.utils;
+
+import org.wso2.carbon.apimgt.api.APIManagementException;
+import org.wso2.carbon.apimgt.api.APIProvider;
+import org.wso2.carbon.apimgt.api.model.API;
+import org.wso2.carbon.apimgt.api.model.APIIdentifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class selects the APIs to be included in a bulk export. APIs can either be listed explicitly or be
+ * selected from the APIs of the current tenant by provider, name pattern, tag and lifecycle state
+ */
+public class APIExportFilter {
+
+    private String providerName;
+    private Pattern namePattern;
+    private String tag;
+    private String status;
+    private final List<APIIdentifier> apiIdentifiers = new ArrayList<APIIdentifier>();
+
+    /**
+     * Select only the APIs created by the given provider
+     *
+     * @param providerName Provider name of the APIs
+     */
+    public void setProviderName(String providerName) {
+        this.providerName = providerName;
+    }
+
+    /**
+     * Select only the APIs whose name matches the given pattern. '*' matches any sequence of characters
+     *
+     * @param namePattern Name pattern of the APIs
+     */
+    public void setNamePattern(String namePattern) {
+        String[] literalParts = namePattern.split("\\*", -1);
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < literalParts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(literalParts[i]));
+        }
+        this.namePattern = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Select only the APIs having the given tag
+     *
+     * @param tag Tag of the APIs
+     */
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Select only the APIs in the given lifecycle state
+     *
+     * @param status Lifecycle state of the APIs
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    /**
+     * Add an API to the explicit list of exporting APIs. If the list is not empty, the other criteria are ignored
+     *
+     * @param apiIdentifier ID of the exporting API
+     */
+    public void addAPI(APIIdentifier apiIdentifier) {
+        apiIdentifiers.add(apiIdentifier);
+    }
+
+    /**
+     * Select the APIs matching this filter
+     *
+     * @param provider API provider of the requester
+     * @return IDs of the selected APIs
+     * @throws APIManagementException If an error occurs while retrieving APIs of the provider
+     */
+    public List<APIIdentifier> selectAPIs(APIProvider provider) throws APIManagementException {
+        if (!apiIdentifiers.isEmpty()) {
+            return new ArrayList<APIIdentifier>(apiIdentifiers);
+        }
+
+        List<API> apis;
+        if (providerName != null) {
+            apis = provider.getAPIsByProvider(providerName);
+        } else {
+            apis = provider.getAllAPIs();
+        }
+
+        List<APIIdentifier> selectedAPIs = new ArrayList<APIIdentifier>();
+        for (API api : apis) {
+            if (matches(api)) {
+                selectedAPIs.add(api.getId());
+            }
+        }
+        return selectedAPIs;
+    }
+
+    /**
+     * Check whether an API satisfies the name, tag and status criteria of the filter
+     *
+     * @param api API to be checked
+     * @return true if the API matches the filter
+     */
+    private boolean matches(API api) {
+        if (namePattern != null && !namePattern.matcher(api.getId().getApiName()).matches()) {
+            return false;
+        }
+        if (tag != null && (api.getTags() == null || !api.getTags().contains(tag))) {
+            return false;
+        }
+        return status == null || (api.getStatus() != null && status.equalsIgnoreCase(api.getStatus().getStatus()));
+    }
+}
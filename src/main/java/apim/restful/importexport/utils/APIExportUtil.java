@@ -19,14 +19,21 @@
 package apim.restful.importexport.utils;
 
 import apim.restful.importexport.APIExportException;
-
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.ExportContext;
+import apim.restful.importexport.ExportManifest;
+import apim.restful.importexport.JobProgress;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.apache.axiom.om.OMElement;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.apimgt.api.APIDefinition;
@@ -54,48 +61,122 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.xml.stream.XMLStreamException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
-import java.io.InputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.StringReader;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This is the util class which consists of all the functions for exporting API
+ * This is the util class which consists of all the functions for exporting API.
+ * API providers are cached per user and registries per tenant domain in bounded caches whose entries
+ * expire after a configurable period, since looking them up is a large fixed cost of every request
  */
 public class APIExportUtil {
 
     private static final Log log = LogFactory.getLog(APIExportUtil.class);
-    private static String archiveBasePath = null;
+    private static final Cache<String, APIProvider> providerCache = createHandleCache();
+    private static final Cache<String, Registry> registryCache = createHandleCache();
 
     private APIExportUtil() {
     }
 
     /**
-     * Set base path where exporting archive should be generated
+     * Create the context of an export request by retrieving the provider and registry of the requester
+     *
+     * @param userName      User name of the requester
+     * @param archiveWriter Destination of the exported resources
+     * @return Context of the export request
+     * @throws APIExportException If an error occurs while retrieving the provider
+     */
+    public static ExportContext createExportContext(String userName, ArchiveWriter archiveWriter)
+            throws APIExportException {
+        return createExportContext(userName, getProvider(userName), archiveWriter);
+    }
+
+    /**
+     * Create the context of an export request with an already retrieved provider
+     *
+     * @param userName      User name of the requester
+     * @param provider      Provider of the requester
+     * @param archiveWriter Destination of the exported resources
+     * @return Context of the export request
+     */
+    public static ExportContext createExportContext(String userName, APIProvider provider,
+            ArchiveWriter archiveWriter) {
+        return createExportContext(userName, provider, archiveWriter, new JobProgress());
+    }
+
+    /**
+     * Create the context of an export request which reports its progress to the given tracker
+     *
+     * @param userName      User name of the requester
+     * @param provider      Provider of the requester
+     * @param archiveWriter Destination of the exported resources
+     * @param progress      Progress tracker of the export request
+     * @return Context of the export request
+     */
+    public static ExportContext createExportContext(String userName, APIProvider provider,
+            ArchiveWriter archiveWriter, JobProgress progress) {
+        return createExportContext(userName, provider, archiveWriter, progress, null);
+    }
+
+    /**
+     * Create the context of an export request which leaves out the resources unchanged since the given baseline
      *
-     * @param path Temporary directory location
+     * @param userName      User name of the requester
+     * @param provider      Provider of the requester
+     * @param archiveWriter Destination of the exported resources
+     * @param progress      Progress tracker of the export request
+     * @param baseline      Baseline of an incremental export, null to export everything
+     * @return Context of the export request
      */
-    public static void setArchiveBasePath(String path) {
-        archiveBasePath = path;
+    public static ExportContext createExportContext(String userName, APIProvider provider,
+            ArchiveWriter archiveWriter, JobProgress progress, ExportBaseline baseline) {
+        return new ExportContext(userName, provider, getRegistry(userName), APIUtil.getTenantId(userName),
+                archiveWriter, progress, baseline);
     }
 
     /**
-     * Retrieve API provider
+     * Create the writer of a bulk export, which stores the resources shared by several APIs only once
+     *
+     * @param archiveWriter Destination of the exported resources
+     * @return Writer of the bulk export
+     */
+    public static DeduplicatingArchiveWriter createBulkArchiveWriter(ArchiveWriter archiveWriter) {
+        return new DeduplicatingArchiveWriter(archiveWriter, Integer.getInteger(
+                APIImportExportConstants.EXPORT_BLOB_THRESHOLD_PROPERTY,
+                APIImportExportConstants.DEFAULT_EXPORT_BLOB_THRESHOLD));
+    }
+
+    /**
+     * Retrieve API provider. A provider acts with the permissions of its user, hence providers are cached
+     * per user name
      *
      * @param userName User name
      * @return APIProvider Provider of the supplied user name
      * @throws APIExportException If an error occurs while retrieving the provider
      */
     public static APIProvider getProvider(String userName) throws APIExportException {
-        APIProvider provider;
+        APIProvider provider = providerCache.getIfPresent(userName);
+        if (provider != null) {
+            return provider;
+        }
+
         try {
             provider = APIManagerFactory.getInstance().getAPIProvider(userName);
 
@@ -103,6 +184,9 @@ public class APIExportUtil {
                 log.debug("Current provider retrieved successfully");
             }
 
+            if (provider != null) {
+                providerCache.put(userName, provider);
+            }
             return provider;
 
         } catch (APIManagementException e) {
@@ -113,26 +197,33 @@ public class APIExportUtil {
     }
 
     /**
-     * Retrieve registry for the current tenant
+     * Retrieve registry for the current tenant. The governance system registry is bound to its tenant when
+     * it is looked up in the tenant flow, hence registries are cached per tenant domain and can be used
+     * outside of the tenant flow afterwards
      *
      * @param userName user name of the tenant
      * @return Registry registry of the current tenant
      */
     public static Registry getRegistry(String userName) {
-        boolean isTenantFlowStarted = false;
         String tenantDomain = MultitenantUtils.getTenantDomain(userName);
+        Registry registry = registryCache.getIfPresent(tenantDomain);
+        if (registry != null) {
+            return registry;
+        }
+
+        boolean isTenantFlowStarted = false;
         try {
-            if (tenantDomain != null && !MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equals(tenantDomain)) {
-                isTenantFlowStarted = true;
-                PrivilegedCarbonContext.startTenantFlow();
-                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
-            }
-            Registry registry = CarbonContext.getThreadLocalCarbonContext().
+            isTenantFlowStarted = startTenantFlow(userName);
+            registry = CarbonContext.getThreadLocalCarbonContext().
                     getRegistry(RegistryType.SYSTEM_GOVERNANCE);
 
             if (log.isDebugEnabled()) {
                 log.debug("Registry of logged in user retrieved successfully");
             }
+
+            if (registry != null) {
+                registryCache.put(tenantDomain, registry);
+            }
             return registry;
 
         } finally {
@@ -142,30 +233,179 @@ public class APIExportUtil {
         }
     }
 
+    /**
+     * Discard the cached providers of the users of a tenant and the cached registry of the tenant
+     *
+     * @param tenantDomain Tenant domain
+     */
+    public static void invalidateTenantHandleCache(String tenantDomain) {
+        Iterator<String> userNames = providerCache.asMap().keySet().iterator();
+        while (userNames.hasNext()) {
+            if (MultitenantUtils.getTenantDomain(userNames.next()).equals(tenantDomain)) {
+                userNames.remove();
+            }
+        }
+        registryCache.invalidate(tenantDomain);
+    }
+
+    /**
+     * Discard the cached provider of a user, e.g. after the roles of the user changed
+     *
+     * @param userName User name
+     */
+    public static void invalidateHandleCache(String userName) {
+        providerCache.invalidate(userName);
+    }
+
+    /**
+     * Retrieve hit and miss counters of the provider cache
+     *
+     * @return Statistics of the provider cache
+     */
+    public static CacheStats getProviderCacheStats() {
+        return providerCache.stats();
+    }
+
+    /**
+     * Retrieve hit and miss counters of the registry cache
+     *
+     * @return Statistics of the registry cache
+     */
+    public static CacheStats getRegistryCacheStats() {
+        return registryCache.stats();
+    }
+
+    /**
+     * Create a bounded cache of providers or registries, evicting the least recently used entries
+     *
+     * @return Cache of the configured size and expiry
+     */
+    private static <T> Cache<String, T> createHandleCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(Long.getLong(APIImportExportConstants.HANDLE_CACHE_SIZE_PROPERTY,
+                        APIImportExportConstants.DEFAULT_HANDLE_CACHE_SIZE))
+                .expireAfterWrite(Long.getLong(APIImportExportConstants.HANDLE_CACHE_EXPIRY_PROPERTY,
+                        APIImportExportConstants.DEFAULT_HANDLE_CACHE_EXPIRY), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Start a tenant flow for the tenant of the given user, unless the user belongs to the super tenant
+     *
+     * @param userName user name of the tenant
+     * @return true if a tenant flow was started and has to be ended by the caller
+     */
+    private static boolean startTenantFlow(String userName) {
+        String tenantDomain = MultitenantUtils.getTenantDomain(userName);
+        if (tenantDomain != null && !MultitenantConstants.SUPER_TENANT_DOMAIN_NAME.equals(tenantDomain)) {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method retrieves all meta information and registry resources required for a set of APIs
+     * and writes them to a single archive, each API in its own folder. Provider, registry and tenant
+     * flow are shared across all the APIs. The manifest of the export is written to the root of the
+     * archive, so that it can be used as the baseline of a later incremental export
+     *
+     * @param apiIDs        Identifiers of the exporting APIs
+     * @param exportContext Context of the export request
+     * @return Identifiers of the APIs which were exported
+     * @throws APIExportException If an error occurs while retrieving API related resources
+     */
+    public static List<APIIdentifier> retrieveApisToExport(List<APIIdentifier> apiIDs, ExportContext exportContext)
+            throws APIExportException {
+
+        List<APIIdentifier> exportedAPIs = new ArrayList<APIIdentifier>();
+        Set<String> apiFolders = new HashSet<String>();
+        JobProgress progress = exportContext.getProgress();
+        progress.addTotalAPIs(apiIDs.size());
+        boolean isTenantFlowStarted = false;
+        try {
+            isTenantFlowStarted = startTenantFlow(exportContext.getUserName());
+
+            for (APIIdentifier apiID : apiIDs) {
+                //each API is stored in a folder named after its name and version
+                if (!apiFolders.add(getArchiveEntryName(apiID))) {
+                    log.warn("Skipping API " + apiID.getProviderName() + "-" + apiID.getApiName() + "-" +
+                            apiID.getVersion() + " since an API with the same name and version is already exported");
+                    progress.apiFailed();
+                    continue;
+                }
+
+                Response apiResourceRetrievalResponse = retrieveApiToExport(apiID, exportContext);
+                if (Response.Status.OK.getStatusCode() == apiResourceRetrievalResponse.getStatus()) {
+                    exportedAPIs.add(apiID);
+                    progress.apiCompleted();
+                } else {
+                    progress.apiFailed();
+                    log.error("Skipping API " + apiID.getApiName() + "-" + apiID.getVersion() +
+                            " since it cannot be retrieved");
+                }
+            }
+        } finally {
+            if (isTenantFlowStarted) {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+
+        //the manifest is written last since its entries are completed while the APIs are exported
+        writeFile(exportContext.getArchiveWriter(), APIImportExportConstants.EXPORT_MANIFEST_FILE_NAME,
+                GsonHolder.getExportGson().toJson(exportContext.getManifest()));
+
+        if (log.isDebugEnabled()) {
+            log.debug(exportedAPIs.size() + " APIs retrieved successfully");
+        }
+        return exportedAPIs;
+    }
+
     /**
      * This method retrieves all meta information and registry resources required for an API to
-     * recreate
+     * recreate and writes them to the archive of the export request
      *
-     * @param apiID    Identifier of the exporting API
-     * @param userName User name of the requester
+     * @param apiID         Identifier of the exporting API
+     * @param exportContext Context of the export request
      * @return HttpResponse indicating whether resource retrieval got succeed or not
      * @throws APIExportException If an error occurs while retrieving API related resources
      */
-    public static Response retrieveApiToExport(APIIdentifier apiID, String userName) throws APIExportException {
-
-        API apiToReturn;
-        String archivePath = archiveBasePath.concat(File.separator + apiID.getApiName() + "-" +
-                apiID.getVersion());
-        //initializing provider
-        APIProvider provider = getProvider(userName);
-        //registry for the current user
-        Registry registry = APIExportUtil.getRegistry(userName);
+    public static Response retrieveApiToExport(APIIdentifier apiID, ExportContext exportContext)
+            throws APIExportException {
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXPORT_API,
+                exportContext.getTenantDomain());
+        try {
+            Response apiResourceRetrievalResponse = exportAPI(apiID, exportContext);
+            if (Response.Status.OK.getStatusCode() == apiResourceRetrievalResponse.getStatus()) {
+                timer.succeeded();
+            }
+            return apiResourceRetrievalResponse;
+        } finally {
+            timer.stop();
+        }
+    }
 
-        int tenantId = APIUtil.getTenantId(userName);
+    /**
+     * Retrieve the meta information and registry resources of an API and write them to the archive.
+     * In an incremental export nothing but the manifest is written for an API which did not change
+     * since the baseline, and registry resources which did not change are left out
+     *
+     * @param apiID         Identifier of the exporting API
+     * @param exportContext Context of the export request
+     * @return HttpResponse indicating whether resource retrieval got succeed or not
+     * @throws APIExportException If an error occurs while retrieving API related resources
+     */
+    private static Response exportAPI(final APIIdentifier apiID, final ExportContext exportContext)
+            throws APIExportException {
 
-        //directory creation
-        APIExportUtil.createDirectory(archivePath);
+        API apiToReturn;
+        APIProvider provider = exportContext.getProvider();
+        JobProgress progress = exportContext.getProgress();
+        String apiName = apiID.getApiName() + "-" + apiID.getVersion();
 
+        progress.setPhase(JobProgress.Phase.RETRIEVING_API, apiName);
         try {
             apiToReturn = provider.getAPI(apiID);
         } catch (APIManagementException e) {
@@ -175,83 +415,313 @@ public class APIExportUtil {
                             build();
         }
 
-        //export thumbnail
-        exportAPIThumbnail(apiID, registry);
+        final ExportManifest.APIEntry manifestEntry = new ExportManifest.APIEntry(apiID.getProviderName(),
+                apiID.getApiName(), apiID.getVersion(), apiToReturn.getLastUpdated());
+        exportContext.getManifest().addAPI(manifestEntry);
+        //documents and registry resources retrieved while comparing the API against the baseline are
+        //reused by the export tasks, hence a changed API is not looked up twice
+        final List<Documentation> docList;
+        final Map<String, Resource> retrievedResources = new HashMap<String, Resource>();
+        ExportBaseline baseline = exportContext.getBaseline();
+        if (baseline != null) {
+            docList = getAllDocumentation(apiID, provider);
+            if (!baseline.isModified(manifestEntry.getKey(), apiToReturn.getLastUpdated()) &&
+                    !hasModifiedResources(apiToReturn, docList, retrievedResources, manifestEntry, exportContext)) {
+                manifestEntry.setUnchanged(true);
+                exportManifest(manifestEntry, exportContext);
 
-        //export documents
-        List<Documentation> docList;
-        try {
-            docList = provider.getAllDocumentation(apiID);
-        } catch (APIManagementException e) {
-            log.error("Unable to retrieve API Documentation", e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error")
-                    .type(MediaType.APPLICATION_JSON).build();
+                if (log.isDebugEnabled()) {
+                    log.debug("API " + apiName + " is unchanged since the baseline");
+                }
+                return Response.ok().build();
+            }
+        } else {
+            docList = null;
         }
 
-        if (!docList.isEmpty()) {
-            exportAPIDocumentation(docList, apiID, registry);
-        }
+        //registry resources are independent of each other, hence they are retrieved concurrently
+        List<Callable<Void>> exportTasks = new ArrayList<Callable<Void>>();
+        String userName = exportContext.getUserName();
+
+        //export thumbnail
+        exportTasks.add(new TenantAwareCallable<Void>(userName) {
+            protected Void callInTenantFlow() {
+                exportAPIThumbnail(apiID, retrievedResources, manifestEntry, exportContext);
+                return null;
+            }
+        });
+
+        //export documents
+        exportTasks.add(new TenantAwareCallable<Void>(userName) {
+            protected Void callInTenantFlow() throws APIExportException {
+                List<Documentation> documents = docList != null ? docList :
+                        getAllDocumentation(apiID, exportContext.getProvider());
+                if (!documents.isEmpty()) {
+                    exportAPIDocumentation(documents, apiID, retrievedResources, manifestEntry, exportContext);
+                }
+                return null;
+            }
+        });
 
         //export wsdl
         String wsdlUrl = apiToReturn.getWsdlUrl();
         if (wsdlUrl != null) {
-            exportWSDL(apiID, registry);
+            exportTasks.add(new TenantAwareCallable<Void>(userName) {
+                protected Void callInTenantFlow() throws APIExportException {
+                    exportWSDL(apiID, retrievedResources, manifestEntry, exportContext);
+                    return null;
+                }
+            });
         }
 
         //export sequences
-        exportSequences(apiToReturn, apiID, tenantId);
+        for (final Map.Entry<String, String> sequence : getSequences(apiToReturn).entrySet()) {
+            exportTasks.add(new TenantAwareCallable<Void>(userName) {
+                protected Void callInTenantFlow() throws APIExportException {
+                    exportSequence(sequence.getValue(), sequence.getKey(), apiID, exportContext);
+                    return null;
+                }
+            });
+        }
+
+        //export swagger definition
+        final APIIdentifier exportedApiId = apiToReturn.getId();
+        exportTasks.add(new TenantAwareCallable<Void>(userName) {
+            protected Void callInTenantFlow() throws APIExportException {
+                exportSwaggerDefinition(exportedApiId, exportContext);
+                return null;
+            }
+        });
+
+        progress.setPhase(JobProgress.Phase.RETRIEVING_RESOURCES, apiName);
+        runExportTasks(ExecutorServiceHolder.getExportExecutor(), exportTasks);
 
         //set API status to created
         apiToReturn.setStatus(APIStatus.CREATED);
 
         //export meta information
-        exportMetaInformation(apiToReturn, registry);
+        progress.setPhase(JobProgress.Phase.WRITING_META_INFORMATION, apiName);
+        exportMetaInformation(apiToReturn, exportContext);
+        if (baseline != null) {
+            exportManifest(manifestEntry, exportContext);
+        }
 
         return Response.ok().build();
 
     }
 
     /**
-     * Retrieve thumbnail image for the exporting API and store it in the archive directory
+     * Retrieve the documents of an API
      *
-     * @param apiIdentifier ID of the requesting API
-     * @param registry      Current tenant registry
-     * @throws APIExportException If an error occurs while retrieving image from the registry or
-     *                            storing in the archive directory
+     * @param apiIdentifier ID of the API
+     * @param provider      API provider of the exporting user
+     * @return Documents of the API
+     * @throws APIExportException If an error occurs while retrieving the documents
      */
-    private static void exportAPIThumbnail(APIIdentifier apiIdentifier, Registry registry) throws APIExportException {
-        String thumbnailUrl = APIConstants.API_IMAGE_LOCATION + RegistryConstants.PATH_SEPARATOR +
+    private static List<Documentation> getAllDocumentation(APIIdentifier apiIdentifier, APIProvider provider)
+            throws APIExportException {
+        try {
+            return provider.getAllDocumentation(apiIdentifier);
+        } catch (APIManagementException e) {
+            log.error("Unable to retrieve API Documentation", e);
+            throw new APIExportException("Unable to retrieve API Documentation", e);
+        }
+    }
+
+    /**
+     * Check whether any of the registry resources of an API changed since the baseline of the export.
+     * The resources which are checked are recorded in the manifest entry of the API as not included,
+     * and are kept in the given map so that the export of a changed API can reuse them
+     *
+     * @param api                API to be exported
+     * @param docList            Documents of the API
+     * @param retrievedResources Map which receives the checked resources keyed by their registry path,
+     *                           with a null value for a resource which does not exist
+     * @param manifestEntry      Manifest entry of the API
+     * @param exportContext      Context of the export request
+     * @return true if at least one of the resources changed
+     * @throws APIExportException If an error occurs while retrieving the resources
+     */
+    private static boolean hasModifiedResources(API api, List<Documentation> docList,
+            Map<String, Resource> retrievedResources, ExportManifest.APIEntry manifestEntry,
+            ExportContext exportContext) throws APIExportException {
+        APIIdentifier apiIdentifier = api.getId();
+        Map<String, Date> lastModifiedTimes = new HashMap<String, Date>();
+        List<String> resourcePaths = new ArrayList<String>();
+        resourcePaths.add(getThumbnailPath(apiIdentifier));
+        if (api.getWsdlUrl() != null) {
+            resourcePaths.add(getWSDLPath(apiIdentifier));
+        }
+
+        for (Documentation doc : docList) {
+            lastModifiedTimes.put(APIUtil.getAPIDocPath(apiIdentifier) + doc.getName(), doc.getLastUpdated());
+            if (Documentation.DocumentSourceType.FILE == doc.getSourceType()) {
+                resourcePaths.add(APIUtil.getDocumentationFilePath(apiIdentifier, getDocumentFileName(doc)));
+            }
+        }
+
+        try {
+            Registry registry = exportContext.getRegistry();
+            for (String resourcePath : resourcePaths) {
+                Resource resource = getResource(resourcePath, retrievedResources, registry);
+                retrievedResources.put(resourcePath, resource);
+                if (resource != null) {
+                    lastModifiedTimes.put(resourcePath, resource.getLastModified());
+                }
+            }
+        } catch (RegistryException e) {
+            log.error("Error while retrieving API resources " + e.getMessage());
+            throw new APIExportException("Error while retrieving API resources", e);
+        }
+
+        boolean modified = false;
+        for (Map.Entry<String, Date> lastModifiedTime : lastModifiedTimes.entrySet()) {
+            manifestEntry.addResource(new ExportManifest.ResourceEntry(lastModifiedTime.getKey(),
+                    lastModifiedTime.getValue(), false));
+            modified |= exportContext.getBaseline().isModified(lastModifiedTime.getKey(), lastModifiedTime.getValue());
+        }
+        return modified;
+    }
+
+    /**
+     * Retrieve a registry resource of an API. A resource which was already retrieved while comparing the
+     * API against the baseline of an incremental export is not looked up again
+     *
+     * @param resourcePath       Path of the resource in the registry
+     * @param retrievedResources Resources which were already retrieved, keyed by their registry path
+     * @param registry           Registry of the exporting user
+     * @return The resource, or null if it does not exist
+     * @throws RegistryException If an error occurs while retrieving the resource
+     */
+    private static Resource getResource(String resourcePath, Map<String, Resource> retrievedResources,
+            Registry registry) throws RegistryException {
+        if (retrievedResources.containsKey(resourcePath)) {
+            return retrievedResources.get(resourcePath);
+        }
+        return registry.resourceExists(resourcePath) ? registry.get(resourcePath) : null;
+    }
+
+    /**
+     * Record a registry resource of an API in the manifest and decide whether it is part of the export
+     *
+     * @param registryPath  Path of the resource in the registry
+     * @param lastModified  Last modified time of the resource
+     * @param manifestEntry Manifest entry of the API
+     * @param exportContext Context of the export request
+     * @return true if the resource has to be written to the archive
+     */
+    private static boolean includeResource(String registryPath, Date lastModified,
+            ExportManifest.APIEntry manifestEntry, ExportContext exportContext) {
+        ExportBaseline baseline = exportContext.getBaseline();
+        boolean included = baseline == null || baseline.isModified(registryPath, lastModified);
+        manifestEntry.addResource(new ExportManifest.ResourceEntry(registryPath, lastModified, included));
+        if (!included && log.isDebugEnabled()) {
+            log.debug(registryPath + " is unchanged since the baseline");
+        }
+        return included;
+    }
+
+    /**
+     * Write the manifest entry of an API of an incremental export to the folder of the API, so that the
+     * API can be imported on top of the existing API
+     *
+     * @param manifestEntry Manifest entry of the API
+     * @param exportContext Context of the export request
+     * @throws APIExportException If an error occurs while writing the manifest
+     */
+    private static void exportManifest(ExportManifest.APIEntry manifestEntry, ExportContext exportContext)
+            throws APIExportException {
+        ExportManifest exportManifest = exportContext.getManifest();
+        ExportManifest apiManifest = new ExportManifest(exportManifest.getExportedAt(), exportManifest.getSince(),
+                exportManifest.isIncremental());
+        apiManifest.addAPI(manifestEntry);
+        writeFile(exportContext.getArchiveWriter(), getArchiveEntryName(new APIIdentifier(
+                manifestEntry.getProviderName(), manifestEntry.getApiName(), manifestEntry.getVersion()),
+                "Meta-information", "manifest.json"), GsonHolder.getExportGson().toJson(apiManifest));
+    }
+
+    /**
+     * Run the given export tasks on a worker pool and wait for all of them to complete
+     *
+     * @param executor    Worker pool running the tasks
+     * @param exportTasks Tasks retrieving the resources of an API
+     * @throws APIExportException If any of the tasks failed or waiting for the tasks got interrupted
+     */
+    private static void runExportTasks(ExecutorService executor, List<Callable<Void>> exportTasks)
+            throws APIExportException {
+        try {
+            List<Future<Void>> results = executor.invokeAll(exportTasks);
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof APIExportException) {
+                        throw (APIExportException) e.getCause();
+                    }
+                    log.error("Error while retrieving API resources" + e.getCause().getMessage());
+                    throw new APIExportException("Error while retrieving API resources", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new APIExportException("Retrieval of API resources got interrupted", e);
+        }
+    }
+
+    /**
+     * Build the registry path of the thumbnail image of an API
+     *
+     * @param apiIdentifier ID of the API
+     * @return Registry path of the thumbnail
+     */
+    private static String getThumbnailPath(APIIdentifier apiIdentifier) {
+        return APIConstants.API_IMAGE_LOCATION + RegistryConstants.PATH_SEPARATOR +
                 apiIdentifier.getProviderName() + RegistryConstants.PATH_SEPARATOR +
                 apiIdentifier.getApiName() + RegistryConstants.PATH_SEPARATOR +
                 apiIdentifier.getVersion() + RegistryConstants.PATH_SEPARATOR +
                 APIConstants.API_ICON_IMAGE;
+    }
 
-        InputStream imageDataStream = null;
-        OutputStream outputStream = null;
-        String archivePath = archiveBasePath.concat(File.separator + apiIdentifier.getApiName() +
-                "-" + apiIdentifier.getVersion());
+    /**
+     * Retrieve thumbnail image for the exporting API and store it in the archive
+     *
+     * @param apiIdentifier      ID of the requesting API
+     * @param retrievedResources Registry resources of the API which were already retrieved
+     * @param manifestEntry      Manifest entry of the API
+     * @param exportContext      Context of the export request
+     */
+    private static void exportAPIThumbnail(APIIdentifier apiIdentifier, Map<String, Resource> retrievedResources,
+            ExportManifest.APIEntry manifestEntry, ExportContext exportContext) {
+        String thumbnailUrl = getThumbnailPath(apiIdentifier);
+
+        Registry registry = exportContext.getRegistry();
+        CountingInputStream imageDataStream = null;
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXPORT_THUMBNAIL,
+                exportContext.getTenantDomain());
         try {
-            if (registry.resourceExists(thumbnailUrl)) {
-                Resource icon = registry.get(thumbnailUrl);
+            Resource icon = getResource(thumbnailUrl, retrievedResources, registry);
+            if (icon != null) {
+                if (!includeResource(thumbnailUrl, icon.getLastModified(), manifestEntry, exportContext)) {
+                    timer.succeeded();
+                    return;
+                }
 
-                imageDataStream = icon.getContentStream();
+                imageDataStream = new CountingInputStream(icon.getContentStream());
 
                 String mediaType = icon.getMediaType();
                 String extension = getThumbnailFileType(mediaType);
 
                 if (extension != null) {
-                    createDirectory(archivePath + File.separator + "Image");
-
-                    outputStream = new FileOutputStream(archivePath + File.separator + "Image" + File.separator +
-                            "icon." + extension);
-
-                    IOUtils.copy(imageDataStream, outputStream);
+                    exportContext.getArchiveWriter().writeEntry(getArchiveEntryName(apiIdentifier, "Image",
+                            "icon." + extension), imageDataStream);
+                    timer.setBytes(imageDataStream.getByteCount());
 
                     if (log.isDebugEnabled()) {
                         log.debug("Thumbnail image retrieved successfully");
                     }
                 }
             }
+            timer.succeeded();
         } catch (IOException e) {
             //Exception is ignored by logging due to the reason that Thumbnail is not essential for
             // an API to be recreated
@@ -260,7 +730,7 @@ public class APIExportUtil {
             log.error("Error while retrieving API Thumbnail " + e.getMessage());
         } finally {
             IOUtils.closeQuietly(imageDataStream);
-            IOUtils.closeQuietly(outputStream);
+            timer.stop();
         }
     }
 
@@ -290,54 +760,114 @@ public class APIExportUtil {
     }
 
     /**
-     * Retrieve documentation for the exporting API and store it in the archive directory
-     * FILE, INLINE and URL documentations are handled
+     * Retrieve documentation for the exporting API and store it in the archive
+     * FILE, INLINE and URL documentations are handled. Files of FILE documents are retrieved
+     * concurrently and docs.json is written once all of them are stored
      *
-     * @param apiIdentifier ID of the requesting API
-     * @param registry      Current tenant registry
-     * @param docList       documentation list of the exporting API
+     * @param apiIdentifier      ID of the requesting API
+     * @param docList            documentation list of the exporting API
+     * @param retrievedResources Registry resources of the API which were already retrieved
+     * @param manifestEntry      Manifest entry of the API
+     * @param exportContext      Context of the export request
      * @throws APIExportException If an error occurs while retrieving documents from the
-     *                            registry or storing in the archive directory
-     */
-    public static void exportAPIDocumentation(List<Documentation> docList, APIIdentifier apiIdentifier,
-            Registry registry) throws APIExportException {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String archivePath = archiveBasePath.concat(File.separator + apiIdentifier.getApiName() + "-" +
-                apiIdentifier.getVersion());
-        createDirectory(archivePath + File.separator + "Docs");
-        InputStream fileInputStream = null;
-        OutputStream outputStream = null;
+     *                            registry or storing in the archive
+     */
+    public static void exportAPIDocumentation(List<Documentation> docList, final APIIdentifier apiIdentifier,
+            final Map<String, Resource> retrievedResources, final ExportManifest.APIEntry manifestEntry,
+            final ExportContext exportContext) throws APIExportException {
+        Gson gson = GsonHolder.getExportGson();
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXPORT_DOCUMENTATION,
+                exportContext.getTenantDomain());
+        final AtomicLong documentBytes = new AtomicLong();
+
         try {
-            for (Documentation doc : docList) {
+            List<Callable<Void>> documentTasks = new ArrayList<Callable<Void>>();
+            for (final Documentation doc : docList) {
+                manifestEntry.addResource(new ExportManifest.ResourceEntry(APIUtil.getAPIDocPath(apiIdentifier) +
+                        doc.getName(), doc.getLastUpdated(), true));
                 String sourceType = doc.getSourceType().name();
                 if (Documentation.DocumentSourceType.FILE.toString().equalsIgnoreCase(sourceType)) {
-                    String fileName = doc.getFilePath().substring(doc.getFilePath().
-                            lastIndexOf(RegistryConstants.PATH_SEPARATOR) + 1);
-                    String filePath = APIUtil.getDocumentationFilePath(apiIdentifier, fileName);
-
-                    //check whether resource exists in the registry
-                    Resource docFile = registry.get(filePath);
-                    String localFilePath = File.separator + "Docs" + File.separator + fileName;
-                    outputStream = new FileOutputStream(archivePath + localFilePath);
-                    fileInputStream = docFile.getContentStream();
-
-                    IOUtils.copy(fileInputStream, outputStream);
-
-                    doc.setFilePath(localFilePath);
-
-                    if (log.isDebugEnabled()) {
-                        log.debug(fileName + " retrieved successfully");
-                    }
+                    documentTasks.add(new TenantAwareCallable<Void>(exportContext.getUserName()) {
+                        protected Void callInTenantFlow() throws APIExportException {
+                            documentBytes.addAndGet(exportDocumentFile(doc, apiIdentifier, retrievedResources,
+                                    manifestEntry, exportContext));
+                            return null;
+                        }
+                    });
                 }
             }
+            runExportTasks(ExecutorServiceHolder.getDocumentExportExecutor(), documentTasks);
 
             String json = gson.toJson(docList);
-            writeFile(archivePath + File.separator + "Docs" + File.separator + "docs.json", json);
+            exportContext.getArchiveWriter().writeEntry(getArchiveEntryName(apiIdentifier, "Docs", "docs.json"),
+                    json);
+            timer.setBytes(documentBytes.get() + json.length());
+            timer.succeeded();
 
             if (log.isDebugEnabled()) {
                 log.debug("API Documentation retrieved successfully");
             }
 
+        } catch (IOException e) {
+            log.error("I/O error while writing API documentation to file" + e.getMessage());
+            throw new APIExportException("I/O error while writing API documentation to file", e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Retrieve the name of the file of a FILE type document
+     *
+     * @param doc FILE type document
+     * @return Name of the file
+     */
+    private static String getDocumentFileName(Documentation doc) {
+        return doc.getFilePath().substring(doc.getFilePath().lastIndexOf(RegistryConstants.PATH_SEPARATOR) + 1);
+    }
+
+    /**
+     * Retrieve the file of a FILE type document and stream it from the registry into the archive.
+     * A file which is unchanged since the baseline of an incremental export is only referenced
+     *
+     * @param doc                FILE type document of the exporting API
+     * @param apiIdentifier      ID of the requesting API
+     * @param retrievedResources Registry resources of the API which were already retrieved
+     * @param manifestEntry      Manifest entry of the API
+     * @param exportContext      Context of the export request
+     * @return Number of bytes of the file
+     * @throws APIExportException If an error occurs while retrieving the document from the
+     *                            registry or storing in the archive
+     */
+    private static long exportDocumentFile(Documentation doc, APIIdentifier apiIdentifier,
+            Map<String, Resource> retrievedResources, ExportManifest.APIEntry manifestEntry,
+            ExportContext exportContext) throws APIExportException {
+        CountingInputStream fileInputStream = null;
+        try {
+            String fileName = getDocumentFileName(doc);
+            String filePath = APIUtil.getDocumentationFilePath(apiIdentifier, fileName);
+
+            //check whether resource exists in the registry
+            Resource docFile = retrievedResources.get(filePath);
+            if (docFile == null) {
+                docFile = exportContext.getRegistry().get(filePath);
+            }
+            String localFilePath = File.separator + "Docs" + File.separator + fileName;
+            if (!includeResource(filePath, docFile.getLastModified(), manifestEntry, exportContext)) {
+                doc.setFilePath(localFilePath);
+                return 0;
+            }
+            fileInputStream = new CountingInputStream(docFile.getContentStream());
+
+            exportContext.getArchiveWriter().writeEntry(getArchiveEntryName(apiIdentifier, "Docs", fileName),
+                    fileInputStream);
+
+            doc.setFilePath(localFilePath);
+
+            if (log.isDebugEnabled()) {
+                log.debug(fileName + " retrieved successfully");
+            }
+            return fileInputStream.getByteCount();
         } catch (IOException e) {
             log.error("I/O error while writing API documentation to file" + e.getMessage());
             throw new APIExportException("I/O error while writing API documentation to file", e);
@@ -346,45 +876,47 @@ public class APIExportUtil {
             throw new APIExportException("Error while retrieving documentation", e);
         } finally {
             IOUtils.closeQuietly(fileInputStream);
-            IOUtils.closeQuietly(outputStream);
         }
     }
 
     /**
-     * Retrieve WSDL for the exporting API and store it in the archive directory
+     * Retrieve WSDL for the exporting API and store it in the archive
      *
-     * @param apiIdentifier ID of the requesting API
-     * @param registry      Current tenant registry
+     * @param apiIdentifier      ID of the requesting API
+     * @param retrievedResources Registry resources of the API which were already retrieved
+     * @param manifestEntry      Manifest entry of the API
+     * @param exportContext      Context of the export request
      * @throws APIExportException If an error occurs while retrieving WSDL from the registry or
-     *                            storing in the archive directory
+     *                            storing in the archive
      */
-    public static void exportWSDL(APIIdentifier apiIdentifier, Registry registry) throws APIExportException {
+    public static void exportWSDL(APIIdentifier apiIdentifier, Map<String, Resource> retrievedResources,
+            ExportManifest.APIEntry manifestEntry, ExportContext exportContext) throws APIExportException {
 
-        InputStream wsdlStream = null;
-        OutputStream outputStream = null;
-        String archivePath = archiveBasePath.concat("/" + apiIdentifier.getApiName() + "-" +
-                apiIdentifier.getVersion());
+        Registry registry = exportContext.getRegistry();
+        CountingInputStream wsdlStream = null;
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXPORT_WSDL,
+                exportContext.getTenantDomain());
 
         try {
-            String wsdlPath = APIConstants.API_WSDL_RESOURCE_LOCATION +
-                    apiIdentifier.getProviderName() + "--" + apiIdentifier.getApiName() +
-                    apiIdentifier.getVersion() + ".wsdl";
-            if (registry.resourceExists(wsdlPath)) {
-                createDirectory(archivePath + File.separator + "WSDL");
-
-                Resource wsdl = registry.get(wsdlPath);
-
-                wsdlStream = wsdl.getContentStream();
+            String wsdlPath = getWSDLPath(apiIdentifier);
+            Resource wsdl = getResource(wsdlPath, retrievedResources, registry);
+            if (wsdl != null) {
+                if (!includeResource(wsdlPath, wsdl.getLastModified(), manifestEntry, exportContext)) {
+                    timer.succeeded();
+                    return;
+                }
 
-                outputStream = new FileOutputStream(archivePath + File.separator + "WSDL" + File.separator +
-                        apiIdentifier.getApiName() + "-" + apiIdentifier.getVersion() + ".wsdl");
+                wsdlStream = new CountingInputStream(wsdl.getContentStream());
 
-                IOUtils.copy(wsdlStream, outputStream);
+                exportContext.getArchiveWriter().writeEntry(getArchiveEntryName(apiIdentifier, "WSDL",
+                        apiIdentifier.getApiName() + "-" + apiIdentifier.getVersion() + ".wsdl"), wsdlStream);
+                timer.setBytes(wsdlStream.getByteCount());
 
                 if (log.isDebugEnabled()) {
                     log.debug("WSDL file retrieved successfully");
                 }
             }
+            timer.succeeded();
         } catch (IOException e) {
             log.error("I/O error while writing WSDL to file" + e.getMessage());
             throw new APIExportException("I/O error while writing WSDL to file", e);
@@ -393,18 +925,28 @@ public class APIExportUtil {
             throw new APIExportException("Error while retrieving WSDL", e);
         } finally {
             IOUtils.closeQuietly(wsdlStream);
-            IOUtils.closeQuietly(outputStream);
+            timer.stop();
         }
     }
 
     /**
-     * Retrieve available custom sequences for the exporting API
+     * Build the registry path of the WSDL of an API
      *
-     * @param api           exporting API
-     * @param apiIdentifier ID of the requesting API
-     * @throws APIExportException If an error occurs while retrieving sequences from registry
+     * @param apiIdentifier ID of the API
+     * @return Registry path of the WSDL
      */
-    public static void exportSequences(API api, APIIdentifier apiIdentifier, int tenantId) throws APIExportException {
+    static String getWSDLPath(APIIdentifier apiIdentifier) {
+        return APIConstants.API_WSDL_RESOURCE_LOCATION + apiIdentifier.getProviderName() + "--" +
+                apiIdentifier.getApiName() + apiIdentifier.getVersion() + ".wsdl";
+    }
+
+    /**
+     * Retrieve the custom sequences of the exporting API
+     *
+     * @param api exporting API
+     * @return Sequence names of the API keyed by the direction of the sequence
+     */
+    private static Map<String, String> getSequences(API api) {
 
         Map<String, String> sequences = new HashMap<String, String>();
 
@@ -416,85 +958,70 @@ public class APIExportUtil {
             sequences.put(APIConstants.API_CUSTOM_SEQUENCE_TYPE_OUT, api.getOutSequence());
         }
 
-        if (api.getOutSequence() != null) {
+        if (api.getFaultSequence() != null) {
             sequences.put(APIConstants.API_CUSTOM_SEQUENCE_TYPE_FAULT, api.getFaultSequence());
         }
 
-        if (!sequences.isEmpty()) {
-            String archivePath = archiveBasePath.concat(File.separator + apiIdentifier.getApiName() + "-" +
-                    apiIdentifier.getVersion());
-            createDirectory(archivePath + File.separator + "Sequences");
-
-            try {
-                String sequenceName;
-                String direction;
-                OMElement sequenceConfig;
-                for (Map.Entry<String, String> sequence : sequences.entrySet()) {
-                    sequenceName = sequence.getValue();
-                    direction = sequence.getKey();
-                    if (sequenceName != null) {
-                        if (APIConstants.API_CUSTOM_SEQUENCE_TYPE_IN.equalsIgnoreCase(direction)) {
-                            sequenceConfig = APIUtil.getCustomSequence(sequenceName, tenantId,
-                                    APIConstants.API_CUSTOM_SEQUENCE_TYPE_IN);
-                            writeSequenceToFile(sequenceConfig, sequenceName, APIConstants.API_CUSTOM_SEQUENCE_TYPE_IN,
-                                    apiIdentifier);
-                        } else if (APIConstants.API_CUSTOM_SEQUENCE_TYPE_OUT.equalsIgnoreCase(direction)) {
-                            sequenceConfig = APIUtil.getCustomSequence(sequenceName, tenantId,
-                                    APIConstants.API_CUSTOM_SEQUENCE_TYPE_OUT);
-                            writeSequenceToFile(sequenceConfig, sequenceName, APIConstants.API_CUSTOM_SEQUENCE_TYPE_OUT,
-                                    apiIdentifier);
-                        } else {
-                            sequenceConfig = APIUtil.getCustomSequence(sequenceName, tenantId,
-                                    APIConstants.API_CUSTOM_SEQUENCE_TYPE_FAULT);
-                            writeSequenceToFile(sequenceConfig, sequenceName,
-                                    APIConstants.API_CUSTOM_SEQUENCE_TYPE_FAULT, apiIdentifier);
-                        }
-                    }
-                }
-            } catch (APIManagementException e) {
-                log.error("Error while retrieving custom sequence" + e.getMessage());
-                throw new APIExportException("Error while retrieving custom sequence", e);
+        return sequences;
+    }
 
-            }
+    /**
+     * Retrieve a custom sequence of the exporting API and store it in the archive
+     *
+     * @param sequenceName  Sequence name
+     * @param direction     Direction of the sequence "in", "out" or "fault"
+     * @param apiIdentifier ID of the requesting API
+     * @param exportContext Context of the export request
+     * @throws APIExportException If an error occurs while retrieving the sequence from registry
+     */
+    public static void exportSequence(String sequenceName, String direction, APIIdentifier apiIdentifier,
+            ExportContext exportContext) throws APIExportException {
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXPORT_SEQUENCE,
+                exportContext.getTenantDomain());
+        try {
+            OMElement sequenceConfig = APIUtil.getCustomSequence(sequenceName, exportContext.getTenantId(),
+                    direction);
+            writeSequenceToFile(sequenceConfig, sequenceName, direction, apiIdentifier,
+                    exportContext.getArchiveWriter());
+            timer.succeeded();
+        } catch (APIManagementException e) {
+            log.error("Error while retrieving custom sequence" + e.getMessage());
+            throw new APIExportException("Error while retrieving custom sequence", e);
+        } finally {
+            timer.stop();
         }
     }
 
     /**
-     * Store custom sequences in the archive directory
+     * Store custom sequences in the archive
      *
      * @param sequenceConfig Sequence configuration
      * @param sequenceName   Sequence name
      * @param direction      Direction of the sequence "in", "out" or "fault"
      * @param apiIdentifier  ID of the requesting API
+     * @param archiveWriter  Destination of the exported resources
      * @throws APIExportException If an error occurs while serializing XML stream or storing in
-     *                            archive directory
+     *                            archive
      */
     public static void writeSequenceToFile(OMElement sequenceConfig, String sequenceName, String direction,
-            APIIdentifier apiIdentifier) throws APIExportException {
-        OutputStream outputStream = null;
-        String archivePath = archiveBasePath.concat(File.separator + apiIdentifier.getApiName() + "-" +
-                apiIdentifier.getVersion()) + File.separator + "Sequences" + File.separator;
-
-        String pathToExportedSequence = archivePath + direction + "-sequence" + File.separator;
-
-        String exportedSequenceFile = pathToExportedSequence + sequenceName + ".xml";
+            APIIdentifier apiIdentifier, ArchiveWriter archiveWriter) throws APIExportException {
+        String exportedSequenceFile = getArchiveEntryName(apiIdentifier, "Sequences", direction + "-sequence",
+                sequenceName + ".xml");
         try {
-            createDirectory(pathToExportedSequence);
-            outputStream = new FileOutputStream(exportedSequenceFile);
-            sequenceConfig.serialize(outputStream);
+            ByteArrayOutputStream sequenceStream = new ByteArrayOutputStream();
+            sequenceConfig.serialize(sequenceStream);
+            archiveWriter.writeEntry(exportedSequenceFile, new ByteArrayInputStream(sequenceStream.toByteArray()));
 
             if (log.isDebugEnabled()) {
                 log.debug(sequenceName + " retrieved successfully");
             }
 
-        } catch (FileNotFoundException e) {
-            log.error("Unable to find file" + e.getMessage());
-            throw new APIExportException("Unable to find file: " + exportedSequenceFile, e);
+        } catch (IOException e) {
+            log.error("I/O error while writing sequence to archive" + e.getMessage());
+            throw new APIExportException("I/O error while writing sequence: " + exportedSequenceFile, e);
         } catch (XMLStreamException e) {
             log.error("Error while processing XML stream" + e.getMessage());
             throw new APIExportException("Error while processing XML stream", e);
-        } finally {
-            IOUtils.closeQuietly(outputStream);
         }
     }
 
@@ -516,62 +1043,100 @@ public class APIExportUtil {
 
     /**
      * Retrieve meta information of the API to export
-     * URL template information are stored in swagger.json definition while rest of the required
-     * data are in api.json
+     * URL template information are stored in swagger.json definition, which is exported by
+     * {@link #exportSwaggerDefinition}, while rest of the required data are in api.json
      *
-     * @param apiToReturn API to be exported
-     * @param registry    Current tenant registry
+     * @param apiToReturn   API to be exported
+     * @param exportContext Context of the export request
      * @throws APIExportException If an error occurs while exporting meta information
      */
-    private static void exportMetaInformation(API apiToReturn, Registry registry) throws APIExportException {
-        APIDefinition definitionFromSwagger20 = new APIDefinitionFromSwagger20();
-        String archivePath = archiveBasePath.concat(File.separator + apiToReturn.getId().getApiName() + "-" +
-                apiToReturn.getId().getVersion());
+    private static void exportMetaInformation(API apiToReturn, ExportContext exportContext)
+            throws APIExportException {
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXPORT_META_INFORMATION,
+                exportContext.getTenantDomain());
+        try {
+            String apiInJson = GsonHolder.getExportGson().toJson(apiToReturn);
+            writeFile(exportContext.getArchiveWriter(), getArchiveEntryName(apiToReturn.getId(), "Meta-information",
+                    "api.json"), apiInJson);
+            timer.setBytes(apiInJson.length());
+            timer.succeeded();
+        } finally {
+            timer.stop();
+        }
 
-        createDirectory(archivePath + File.separator + "Meta-information");
+        if (log.isDebugEnabled()) {
+            log.debug("Meta information retrieved successfully");
+        }
+    }
 
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String apiInJson = gson.toJson(apiToReturn);
-        writeFile(archivePath + File.separator + "Meta-information" + File.separator + "api.json", apiInJson);
+    /**
+     * Retrieve swagger definition of the API to export and store it in the archive
+     *
+     * @param apiIdentifier ID of the requesting API
+     * @param exportContext Context of the export request
+     * @throws APIExportException If an error occurs while exporting swagger definition
+     */
+    private static void exportSwaggerDefinition(APIIdentifier apiIdentifier, ExportContext exportContext)
+            throws APIExportException {
+        APIDefinition definitionFromSwagger20 = new APIDefinitionFromSwagger20();
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(
+                MetricsRegistry.Phase.EXPORT_SWAGGER_DEFINITION, exportContext.getTenantDomain());
 
         try {
-            String swaggerDefinition = definitionFromSwagger20.getAPIDefinition(apiToReturn.getId(), registry);
+            String swaggerDefinition = definitionFromSwagger20.getAPIDefinition(apiIdentifier,
+                    exportContext.getRegistry());
             JsonParser parser = new JsonParser();
             JsonObject json = parser.parse(swaggerDefinition).getAsJsonObject();
-            String formattedSwaggerJson = gson.toJson(json);
-            writeFile(archivePath + File.separator + "Meta-information" + File.separator + "swagger.json",
-                    formattedSwaggerJson);
+            String formattedSwaggerJson = GsonHolder.getExportGson().toJson(json);
+            writeFile(exportContext.getArchiveWriter(), getArchiveEntryName(apiIdentifier, "Meta-information",
+                    "swagger.json"), formattedSwaggerJson);
+            timer.setBytes(formattedSwaggerJson.length());
+            timer.succeeded();
 
             if (log.isDebugEnabled()) {
-                log.debug("Meta information retrieved successfully");
+                log.debug("Swagger definition retrieved successfully");
             }
 
         } catch (APIManagementException e) {
             log.error("Error while retrieving Swagger definition" + e.getMessage());
             throw new APIExportException("Error while retrieving Swagger definition", e);
+        } finally {
+            timer.stop();
         }
     }
 
     /**
-     * Write content to file
+     * Write content to an archive entry
      *
-     * @param path    Location of the file
-     * @param content Content to be written
-     * @throws APIExportException If an error occurs while writing to file
+     * @param archiveWriter Destination of the exported resources
+     * @param entryName     Name of the archive entry
+     * @param content       Content to be written
+     * @throws APIExportException If an error occurs while writing to the archive
      */
-    private static void writeFile(String path, String content) throws APIExportException {
-        FileWriter writer = null;
-
+    private static void writeFile(ArchiveWriter archiveWriter, String entryName, String content)
+            throws APIExportException {
         try {
-            writer = new FileWriter(path);
-            IOUtils.copy(new StringReader(content), writer);
+            archiveWriter.writeEntry(entryName, content);
         } catch (IOException e) {
             log.error("I/O error while writing to file" + e.getMessage());
             throw new APIExportException("I/O error while writing to file", e);
-        } finally {
-            IOUtils.closeQuietly(writer);
         }
+    }
 
+    /**
+     * Build the name of an archive entry which belongs to the folder of the given API
+     *
+     * @param apiIdentifier ID of the exporting API
+     * @param pathElements  Path of the entry relative to the API folder
+     * @return Name of the archive entry
+     */
+    private static String getArchiveEntryName(APIIdentifier apiIdentifier, String... pathElements) {
+        StringBuilder entryName = new StringBuilder(apiIdentifier.getApiName()).append('-')
+                .append(apiIdentifier.getVersion());
+        for (String pathElement : pathElements) {
+            entryName.append(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR).append(pathElement);
+        }
+        return entryName.toString();
     }
 
 }
@@ -21,17 +21,25 @@ package apim.restful.importexport.utils;
 import apim.restful.importexport.APIExportException;
 import apim.restful.importexport.APIImportExportConstants;
 import apim.restful.importexport.APIImportException;
+import apim.restful.importexport.APIImportResult;
 import apim.restful.importexport.APIService;
+import apim.restful.importexport.ArchiveManifest;
+import apim.restful.importexport.ExportManifest;
+import apim.restful.importexport.ImportContext;
+import apim.restful.importexport.ImportMode;
+import apim.restful.importexport.JobProgress;
 
 import com.google.common.collect.Sets;
-import com.google.gson.Gson;
-
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
-import org.apache.commons.io.FileUtils;
+import com.google.gson.stream.JsonReader;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -48,25 +56,29 @@ import org.wso2.carbon.apimgt.impl.utils.APIUtil;
 
 import org.wso2.carbon.registry.api.Registry;
 import org.wso2.carbon.registry.core.Resource;
+import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.InputStream;
 import java.io.IOException;
 
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
-
-import java.util.Enumeration;
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -75,16 +87,70 @@ import java.util.zip.ZipInputStream;
 public final class APIImportUtil {
 
     private static final Log log = LogFactory.getLog(APIService.class);
-    static APIProvider provider;
+    //fields of an API which are set by the provider, hence not compared when an existing API is updated
+    private static final Set<String> IGNORED_API_FIELDS = new HashSet<String>(Arrays.asList("status",
+            "lastUpdated", "createdTime"));
+    //fields of a document which are set by the provider, hence not compared when a document is updated
+    private static final Set<String> IGNORED_DOCUMENT_FIELDS = new HashSet<String>(Arrays.asList("id",
+            "lastUpdated"));
+
+    private APIImportUtil() {
+    }
+
+    /**
+     * This method creates the context of an import request by initializing the provider and registry of the
+     * current user
+     *
+     * @param currentUserName the current logged in user
+     * @return context of the import request
+     * @throws APIExportException if provider cannot be initialized
+     */
+    public static ImportContext createImportContext(String currentUserName) throws APIExportException {
+        return createImportContext(currentUserName, new JobProgress());
+    }
 
     /**
-     * This method initializes the Provider when there is a direct request to import an API
+     * This method creates the context of an import request which reports its progress to the given tracker
      *
      * @param currentUserName the current logged in user
+     * @param progress        progress tracker of the import request
+     * @return context of the import request
      * @throws APIExportException if provider cannot be initialized
      */
-    public static void initializeProvider(String currentUserName) throws APIExportException {
-        provider = APIExportUtil.getProvider(currentUserName);
+    public static ImportContext createImportContext(String currentUserName, JobProgress progress)
+            throws APIExportException {
+        return createImportContext(currentUserName, progress, ImportMode.CREATE);
+    }
+
+    /**
+     * This method creates the context of an import request which handles existing APIs in the given mode
+     *
+     * @param currentUserName the current logged in user
+     * @param progress        progress tracker of the import request
+     * @param importMode      way of handling APIs which already exist
+     * @return context of the import request
+     * @throws APIExportException if provider cannot be initialized
+     */
+    public static ImportContext createImportContext(String currentUserName, JobProgress progress,
+                                                    ImportMode importMode) throws APIExportException {
+        return createImportContext(currentUserName, progress, importMode, false);
+    }
+
+    /**
+     * This method creates the context of an import request, which only validates the archive if it is a dry run
+     *
+     * @param currentUserName the current logged in user
+     * @param progress        progress tracker of the import request
+     * @param importMode      way of handling APIs which already exist
+     * @param dryRun          decision to validate the archive without adding anything to the provider or registry
+     * @return context of the import request
+     * @throws APIExportException if provider cannot be initialized
+     */
+    public static ImportContext createImportContext(String currentUserName, JobProgress progress,
+                                                    ImportMode importMode, boolean dryRun)
+            throws APIExportException {
+        return new ImportContext(currentUserName, APIExportUtil.getProvider(currentUserName),
+                APIExportUtil.getRegistry(currentUserName), progress, importMode, dryRun);
     }
 
     /**
@@ -97,12 +163,26 @@ public final class APIImportUtil {
      */
     public static void transferFile(InputStream uploadedInputStream, String newFileName, String storageLocation)
             throws APIImportException {
+        transferFile(uploadedInputStream, newFileName, storageLocation, APIImportExportConstants.BUFFER_SIZE);
+    }
+
+    /**
+     * This method uploads a given file to specified location using a copy buffer of the given size
+     *
+     * @param uploadedInputStream input stream of the file
+     * @param newFileName         name of the file to be created
+     * @param storageLocation     destination of the new file
+     * @param bufferSize          size of the copy buffer in bytes
+     * @throws APIImportException if the file transfer fails
+     */
+    public static void transferFile(InputStream uploadedInputStream, String newFileName, String storageLocation,
+                                    int bufferSize) throws APIImportException {
         FileOutputStream outFileStream = null;
 
         try {
             outFileStream = new FileOutputStream(new File(storageLocation, newFileName));
             int read = 0;
-            byte[] bytes = new byte[1024];
+            byte[] bytes = new byte[bufferSize];
             while ((read = uploadedInputStream.read(bytes)) != -1) {
                 outFileStream.write(bytes, 0, read);
             }
@@ -115,7 +195,31 @@ public final class APIImportUtil {
     }
 
     /**
-     * This method decompresses API the archive
+     * This method reads an uploaded API archive in a single pass without storing the archive. Entries
+     * larger than the spill threshold are stored in the given spill directory
+     *
+     * @param uploadedInputStream input stream of the archive
+     * @param spillDirectory      directory for the large entries of the archive, deleted when the archive is closed
+     * @return the archive to import the API from
+     * @throws APIImportException if the archive cannot be read
+     */
+    public static StreamedImportArchive readArchive(InputStream uploadedInputStream, File spillDirectory)
+            throws APIImportException {
+        long spillThreshold = Long.getLong(APIImportExportConstants.IMPORT_SPILL_THRESHOLD_PROPERTY,
+                APIImportExportConstants.DEFAULT_IMPORT_SPILL_THRESHOLD);
+        long memoryLimit = Long.getLong(APIImportExportConstants.IMPORT_MEMORY_LIMIT_PROPERTY,
+                APIImportExportConstants.DEFAULT_IMPORT_MEMORY_LIMIT);
+        try {
+            return new StreamedImportArchive(uploadedInputStream, spillDirectory, spillThreshold, memoryLimit);
+        } catch (IOException e) {
+            log.error("Failed to read archive file ", e);
+            throw new APIImportException("Failed to read archive file. " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method decompresses API the archive. Entries are written concurrently on the archive worker pool
+     * and entries resolving outside of the destination are rejected
      *
      * @param sourceFile  The archive containing the API
      * @param destination location of the archive to be extracted
@@ -123,121 +227,397 @@ public final class APIImportUtil {
      * @throws APIImportException If the decompressing fails
      */
     public static String extractArchive(File sourceFile, String destination) throws APIImportException {
-
-        BufferedInputStream inputStream = null;
-        InputStream zipInputStream = null;
-        FileOutputStream outputStream = null;
-        ZipFile zip = null;
-        String archiveName = null;
-
         try {
-            zip = new ZipFile(sourceFile);
-            Enumeration zipFileEntries = zip.entries();
-            int index = 0;
-
-            // Process each entry
-            while (zipFileEntries.hasMoreElements()) {
+            return new ParallelZipExtractor(ExecutorServiceHolder.getArchiveExecutor())
+                    .extract(sourceFile, new File(destination));
+        } catch (IOException e) {
+            log.error("Failed to extract archive file ", e);
+            throw new APIImportException("Failed to extract archive file. " + e.getMessage());
+        }
+    }
 
-                // grab a zip file entry
-                ZipEntry entry = (ZipEntry) zipFileEntries.nextElement();
-                String currentEntry = entry.getName();
+    /**
+     * This method imports all the APIs of an extracted bulk archive. Each folder of the archive
+     * which holds an API is imported by a worker of the bounded bulk import pool. APIs which
+     * already exist are handled as decided by the import mode of the request. Folders of an incremental
+     * export which only hold the manifest of an unchanged API are reported as skipped. If the archive has
+     * a manifest, the files of each API have been verified against it while the archive was extracted
+     *
+     * @param pathToArchive            location of the extracted bulk archive
+     * @param importContext            context of the import request
+     * @param isDefaultProviderAllowed decision to keep or replace the provider
+     * @return import result of each API of the archive
+     * @throws APIImportException if the manifest of the archive cannot be read or the bulk import is interrupted
+     */
+    public static List<APIImportResult> importAPIs(String pathToArchive, final ImportContext importContext,
+                                                   final boolean isDefaultProviderAllowed)
+            throws APIImportException {
 
-                //This index variable is used to get the extracted folder name; that is root directory
-                if (index == 0) {
-                    archiveName = currentEntry.substring(0, currentEntry.indexOf(File.separatorChar));
-                    --index;
+        final ArchiveManifest archiveManifest = readArchiveManifest(new File(pathToArchive,
+                APIImportExportConstants.ARCHIVE_MANIFEST_FILE_NAME));
+        File[] archiveFolders = new File(pathToArchive).listFiles();
+        List<APIImportResult> importResults = new ArrayList<APIImportResult>();
+        List<Future<APIImportResult>> pendingImports = new ArrayList<Future<APIImportResult>>();
+
+        if (archiveFolders != null) {
+            for (final File apiFolder : archiveFolders) {
+                if (!checkFileExistence(apiFolder.getPath() + APIImportExportConstants.JSON_FILE_LOCATION) &&
+                        !checkFileExistence(apiFolder.getPath() + APIImportExportConstants.MANIFEST_FILE_LOCATION)) {
+                    continue;
                 }
 
-                File destinationFile = new File(destination, currentEntry);
-                File destinationParent = destinationFile.getParentFile();
+                final APIImportResult importResult = new APIImportResult(apiFolder.getName());
+                importResults.add(importResult);
+                pendingImports.add(ExecutorServiceHolder.getBulkImportExecutor().submit(
+                        new TenantAwareCallable<APIImportResult>(importContext.getCurrentUser()) {
+                            protected APIImportResult callInTenantFlow() {
+                                importAPI(apiFolder.getPath(), importContext, isDefaultProviderAllowed,
+                                        archiveManifest, importResult);
+                                if (APIImportResult.Status.FAILED == importResult.getStatus()) {
+                                    importContext.getProgress().apiFailed();
+                                } else {
+                                    importContext.getProgress().apiCompleted();
+                                }
+                                return importResult;
+                            }
+                        }));
+            }
+        }
+        importContext.getProgress().addTotalAPIs(pendingImports.size());
 
-                // create the parent directory structure
-                if (destinationParent.mkdirs()) {
-                    log.info("Creation of folder is successful. Directory Name : " + destinationParent.getName());
+        try {
+            for (int i = 0; i < pendingImports.size(); i++) {
+                try {
+                    pendingImports.get(i).get();
+                } catch (ExecutionException e) {
+                    log.error("Unexpected error in importing API of folder " +
+                            importResults.get(i).getArchiveFolder(), e.getCause());
+                    importResults.get(i).setFailed("Unexpected error in importing API. " +
+                            e.getCause().getMessage());
                 }
+            }
+        } catch (InterruptedException e) {
+            for (Future<APIImportResult> pendingImport : pendingImports) {
+                pendingImport.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new APIImportException("Bulk import of APIs was interrupted.");
+        }
+        return importResults;
+    }
 
-                if (!entry.isDirectory()) {
-                    zipInputStream = zip.getInputStream(entry);
-                    inputStream = new BufferedInputStream(zipInputStream);
+    /**
+     * This method imports a single API of a bulk archive and records the outcome in the given result
+     *
+     * @param pathToArchive            location of the extracted folder of the API
+     * @param importContext            context of the import request
+     * @param isDefaultProviderAllowed decision to keep or replace the provider
+     * @param archiveManifest          manifest of the bulk archive, null if it has none
+     * @param importResult             result to which the outcome is recorded
+     */
+    private static void importAPI(String pathToArchive, ImportContext importContext,
+                                  boolean isDefaultProviderAllowed, ArchiveManifest archiveManifest,
+                                  APIImportResult importResult) {
+        try {
+            ImportArchive archive = new DirectoryImportArchive(pathToArchive, archiveManifest);
+            importContext.getProgress().setPhase(JobProgress.Phase.READING_META_INFORMATION,
+                    new File(pathToArchive).getName());
+            ExportManifest manifest = readManifest(archive, importContext);
+            if (isUnchanged(manifest)) {
+                log.info("API " + manifest.getAPIs().get(0).getKey() + " is unchanged. Skipping import.");
+                importResult.setStatus(APIImportResult.Status.SKIPPED);
+                return;
+            }
+            API importedApi = readAPI(archive, importContext.getCurrentUser(), isDefaultProviderAllowed);
+            importAPI(importedApi, archive, importContext, manifest, importResult);
+        } catch (APIImportException e) {
+            importResult.setFailed(e.getErrorDescription());
+        }
+    }
 
-                    // write the current file to the destination
-                    outputStream = new FileOutputStream(destinationFile);
-                    IOUtils.copy(inputStream, outputStream);
-                }
+    /**
+     * This method imports an API
+     *
+     * @param pathToArchive            location of the extracted folder of the API
+     * @param importContext            context of the import request
+     * @param isDefaultProviderAllowed decision to keep or replace the provider
+     * @return result of the import, whose status tells whether the API was created, updated or skipped
+     * @throws APIImportException     if there is an error in importing an API
+     */
+    public static APIImportResult importAPI(String pathToArchive, ImportContext importContext,
+                                            boolean isDefaultProviderAllowed) throws APIImportException {
+
+        return importAPI(new DirectoryImportArchive(pathToArchive), importContext, isDefaultProviderAllowed);
+    }
+
+    /**
+     * This method imports an API from the given archive, which may be an extracted folder or
+     * an archive streamed from the request. An API of an incremental export which is unchanged
+     * since the baseline of the export is not imported. In a dry run the failure of the import is
+     * recorded in the result instead of being thrown
+     *
+     * @param archive                  archive of the API
+     * @param importContext            context of the import request
+     * @param isDefaultProviderAllowed decision to keep or replace the provider
+     * @return result of the import, whose status tells whether the API was created, updated or skipped
+     * @throws APIImportException     if there is an error in importing an API
+     */
+    public static APIImportResult importAPI(ImportArchive archive, ImportContext importContext,
+                                            boolean isDefaultProviderAllowed) throws APIImportException {
+
+        APIImportResult importResult = new APIImportResult(null);
+        try {
+            ExportManifest manifest = readManifest(archive, importContext);
+            if (isUnchanged(manifest)) {
+                log.info("API " + manifest.getAPIs().get(0).getKey() + " is unchanged. Skipping import.");
+                importResult.setStatus(APIImportResult.Status.SKIPPED);
+                return importResult;
+            }
+
+            API importedApi = readAPI(archive, importContext.getCurrentUser(), isDefaultProviderAllowed);
+            importAPI(importedApi, archive, importContext, manifest, importResult);
+        } catch (APIImportException e) {
+            if (!importContext.isDryRun()) {
+                throw e;
             }
-            return archiveName;
+            importResult.setFailed(e.getErrorDescription());
+        }
+        return importResult;
+    }
+
+    /**
+     * This method reads the manifest at the root of an extracted archive
+     *
+     * @param manifestFile location of the manifest
+     * @return the manifest of the archive, null if the archive has none
+     * @throws APIImportException if the manifest cannot be read
+     */
+    private static ArchiveManifest readArchiveManifest(File manifestFile) throws APIImportException {
+
+        if (!manifestFile.exists()) {
+            return null;
+        }
+
+        InputStream inputStream = null;
+        ArchiveManifest archiveManifest;
+        try {
+            inputStream = new FileInputStream(manifestFile);
+            archiveManifest = GsonHolder.getGson().fromJson(new InputStreamReader(inputStream,
+                    APIImportExportConstants.CHARSET), ArchiveManifest.class);
         } catch (IOException e) {
-            log.error("Failed to extract archive file ", e);
-            throw new APIImportException("Failed to extract archive file. " + e.getMessage());
+            log.error("Error in reading MANIFEST.json file. ", e);
+            throw new APIImportException("Error in reading MANIFEST.json file. " + e.getMessage());
+        } catch (JsonParseException e) {
+            log.error("Error in parsing MANIFEST.json file. ", e);
+            throw new APIImportException("Error in parsing MANIFEST.json file. " + e.getMessage());
         } finally {
-            IOUtils.closeQuietly(zipInputStream);
             IOUtils.closeQuietly(inputStream);
-            IOUtils.closeQuietly(outputStream);
         }
+
+        if (archiveManifest == null) {
+            throw new APIImportException("MANIFEST.json file is empty.");
+        }
+        return archiveManifest;
     }
 
     /**
-     * This method imports an API
+     * This method reads the manifest of an API of an incremental export
      *
-     * @param pathToArchive            location of the extracted folder of the API
+     * @param archive       archive of the API
+     * @param importContext context of the import request
+     * @return the manifest of the API, null if the archive is not an incremental export
+     * @throws APIImportException if the manifest cannot be read or the import is not incremental
+     */
+    private static ExportManifest readManifest(ImportArchive archive, ImportContext importContext)
+            throws APIImportException {
+
+        if (!archive.hasEntry(APIImportExportConstants.MANIFEST_FILE_LOCATION)) {
+            return null;
+        }
+
+        InputStream inputStream = null;
+        ExportManifest manifest;
+        try {
+            inputStream = archive.getEntryStream(APIImportExportConstants.MANIFEST_FILE_LOCATION);
+            manifest = GsonHolder.getGson().fromJson(new InputStreamReader(inputStream,
+                    APIImportExportConstants.CHARSET), ExportManifest.class);
+        } catch (IOException e) {
+            log.error("Error in reading manifest.json file. ", e);
+            throw new APIImportException("Error in reading manifest.json file. " + e.getMessage());
+        } catch (JsonParseException e) {
+            log.error("Error in parsing manifest.json file. ", e);
+            throw new APIImportException("Error in parsing manifest.json file. " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+
+        if (manifest == null) {
+            throw new APIImportException("Invalid manifest.json");
+        }
+
+        //resources left out of an incremental export would be missing from a newly created API
+        if (manifest.isIncremental() && ImportMode.OVERWRITE != importContext.getMode()) {
+            throw new APIImportException("The archive is an incremental export, which can only be imported " +
+                    "incrementally.");
+        }
+        return manifest;
+    }
+
+    /**
+     * This method decides whether the manifest of an API marks it as unchanged since the baseline of an
+     * incremental export
+     *
+     * @param manifest manifest of the API, null if the archive is not an incremental export
+     * @return true if the API is not to be imported
+     */
+    private static boolean isUnchanged(ExportManifest manifest) {
+        return manifest != null && !manifest.getAPIs().isEmpty() && manifest.getAPIs().get(0).isUnchanged();
+    }
+
+    /**
+     * This method reads the API definition of an API archive
+     *
+     * @param archive                  archive of the API
      * @param currentUser              the current logged in user
      * @param isDefaultProviderAllowed decision to keep or replace the provider
-     * @throws APIImportException     if there is an error in importing an API
+     * @return the API to be imported
+     * @throws APIImportException if the API definition cannot be read
      */
-    public static void importAPI(String pathToArchive, String currentUser, boolean isDefaultProviderAllowed)
+    private static API readAPI(ImportArchive archive, String currentUser, boolean isDefaultProviderAllowed)
             throws APIImportException {
 
         API importedApi;
+        InputStream inputStream = null;
 
-        // If the original provider is preserved,
-        if (isDefaultProviderAllowed) {
+        try {
+            inputStream = archive.getEntryStream(APIImportExportConstants.JSON_FILE_LOCATION);
+            JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream,
+                    APIImportExportConstants.CHARSET));
 
-            FileInputStream inputStream = null;
-            BufferedReader bufferedReader = null;
+            // If the original provider is preserved, the API is bound straight from the stream
+            if (isDefaultProviderAllowed) {
+                importedApi = GsonHolder.getGson().fromJson(jsonReader, API.class);
+            } else {
+                //the tree is parsed from the stream, since the content is not needed as a string
+                JsonObject configObject = new JsonParser().parse(jsonReader).getAsJsonObject();
 
-            try {
-                inputStream = new FileInputStream(pathToArchive + APIImportExportConstants.JSON_FILE_LOCATION);
-                bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-                importedApi = new Gson().fromJson(bufferedReader, API.class);
-            } catch (FileNotFoundException e) {
-                log.error("Error in locating api.json file. ", e);
-                throw new APIImportException("Error in locating api.json file. " + e.getMessage());
-            } finally {
-                IOUtils.closeQuietly(inputStream);
-                IOUtils.closeQuietly(bufferedReader);
+                //locate the "providerName" within the "id" and set it as the current user
+                JsonObject apiId = configObject.getAsJsonObject(APIImportExportConstants.ID_ELEMENT);
+                apiId.addProperty(APIImportExportConstants.PROVIDER_ELEMENT, APIUtil.replaceEmailDomain(currentUser));
+                importedApi = GsonHolder.getGson().fromJson(configObject, API.class);
             }
-        } else {
+        } catch (IOException e) {
+            log.error("Error in locating api.json file. ", e);
+            throw new APIImportException("Error in locating api.json file. " + e.getMessage());
+        } catch (JsonParseException e) {
+            log.error("Error in parsing api.json file. ", e);
+            throw new APIImportException("Error in parsing api.json file. " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+        return importedApi;
+    }
 
-            String pathToJSONFile = pathToArchive + APIImportExportConstants.JSON_FILE_LOCATION;
+    /**
+     * This method adds an API and its resources to the provider, or handles an API which already exists
+     * as decided by the import mode. The resources are read through a {@link ResourceReader}, whose heap
+     * allocation is recorded as the byte count of the import. A preserved provider must belong to the
+     * tenant of the requester
+     *
+     * @param importedApi   the API to be imported
+     * @param archive       archive of the API
+     * @param importContext context of the import request
+     * @param manifest      manifest of the API if the archive is an incremental export, null otherwise
+     * @param importResult  result to which the outcome is recorded
+     * @throws APIImportException if there is an error in importing an API
+     */
+    private static void importAPI(API importedApi, ImportArchive archive, ImportContext importContext,
+                                  ExportManifest manifest, APIImportResult importResult) throws APIImportException {
+        APIIdentifier apiIdentifier = importedApi.getId();
+        String apiName = apiIdentifier.getApiName() + "-" + apiIdentifier.getVersion();
+        importResult.setAPI(apiIdentifier.getProviderName(), apiIdentifier.getApiName(), apiIdentifier.getVersion());
+
+        String providerDomain = MultitenantUtils.getTenantDomain(APIUtil.replaceEmailDomainBack(
+                apiIdentifier.getProviderName()));
+        if (!providerDomain.equals(importContext.getTenantDomain())) {
+            throw new APIImportException("Provider " + apiIdentifier.getProviderName() + " of API " + apiName +
+                    " does not belong to tenant " + importContext.getTenantDomain() + ". Import the API with " +
+                    "preserveProvider=false to make the current user its provider.");
+        }
 
-            try {
-                String jsonContent = FileUtils.readFileToString(new File(pathToJSONFile));
-                JsonElement configElement = new JsonParser().parse(jsonContent);
-                JsonObject configObject = configElement.getAsJsonObject();
+        boolean isAPIAvailable;
+        try {
+            isAPIAvailable = importContext.getProvider().isAPIAvailable(apiIdentifier);
+        } catch (APIManagementException e) {
+            log.error("Error in checking the existence of the API. ", e);
+            throw new APIImportException("Error in checking the existence of the API. " + e.getMessage());
+        }
 
-                //locate the "providerName" within the "id" and set it as the current user
-                JsonObject apiId = configObject.getAsJsonObject(APIImportExportConstants.ID_ELEMENT);
-                apiId.addProperty(APIImportExportConstants.PROVIDER_ELEMENT, APIUtil.replaceEmailDomain(currentUser));
-                importedApi = new Gson().fromJson(configElement, API.class);
+        if (isAPIAvailable && ImportMode.SKIP_EXISTING == importContext.getMode()) {
+            log.info("API " + apiName + " already exists. Skipping import.");
+            importResult.setStatus(APIImportResult.Status.SKIPPED);
+            return;
+        }
+        if (isAPIAvailable && ImportMode.CREATE == importContext.getMode()) {
+            throw new APIImportException("API " + apiName + " already exists.");
+        }
+        if (!isAPIAvailable && manifest != null) {
+            throw new APIImportException("API " + apiName + " does not exist. An incremental export can only be " +
+                    "imported on top of an existing API.");
+        }
 
-            } catch (IOException e) {
-                log.error("Error in setting API provider to logged in user. ", e);
-                throw new APIImportException("Error in setting API provider to logged in user. " + e.getMessage());
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(importContext.isDryRun() ?
+                MetricsRegistry.Phase.VALIDATE_API : MetricsRegistry.Phase.IMPORT_API, importContext.getTenantDomain());
+        ResourceReader resourceReader = new ResourceReader(archive);
+        try {
+            addAPIAndResources(importedApi, resourceReader, importContext, isAPIAvailable, importResult);
+            importResult.setStatus(isAPIAvailable ? APIImportResult.Status.UPDATED : APIImportResult.Status.CREATED);
+            timer.setBytes(resourceReader.getHeapBytes());
+            timer.succeeded();
+        } finally {
+            timer.stop();
+            if (log.isDebugEnabled()) {
+                log.debug("Resources of the API read into the heap : " + resourceReader.getHeapBytes() +
+                        " bytes, memory mapped : " + resourceReader.getMappedBytes() + " bytes");
             }
         }
+    }
 
+    /**
+     * This method adds the API definition, the swagger definition and the optional resources of an API.
+     * An existing API is updated instead, only with the fields and resources which differ from the
+     * existing ones, and the resources which are left out of the archive are kept as they are. Tiers of
+     * the API which are not available in the tenant are dropped before the API is added. In a dry run the
+     * same checks are made, but nothing is added to the provider or registry
+     *
+     * @param importedApi   the API to be imported
+     * @param archive       archive of the API
+     * @param importContext context of the import request
+     * @param isUpdate      true if an existing API is updated
+     * @param importResult  result to which the dropped tiers, the changed fields and the warnings are recorded
+     * @throws APIImportException if there is an error in adding the API or its swagger definition
+     */
+    private static void addAPIAndResources(API importedApi, ResourceReader archive, ImportContext importContext,
+                                           boolean isUpdate, APIImportResult importResult)
+            throws APIImportException {
+
+        APIProvider provider = importContext.getProvider();
+        JobProgress progress = importContext.getProgress();
+        String apiName = importedApi.getId().getApiName() + "-" + importedApi.getId().getVersion();
         Set<Tier> allowedTiers;
         Set<Tier> unsupportedTiersList;
+        List<String> droppedTiers = new ArrayList<String>();
 
         try{
-            allowedTiers = provider.getTiers();
+            allowedTiers = TierCache.getTiers(importContext);
         } catch (APIManagementException e) {
             log.error("Error in retrieving tiers of the provider. ", e);
             throw new APIImportException("Error in retrieving tiers of the provider. " + e.getMessage());
         }
 
         if (!(allowedTiers.isEmpty())){
-            unsupportedTiersList = Sets.difference(importedApi.getAvailableTiers(), allowedTiers);
+            //The difference is copied, as it is a view of the tiers of the API which are removed below
+            unsupportedTiersList = new HashSet<Tier>(Sets.difference(importedApi.getAvailableTiers(), allowedTiers));
 
             //If at least one unsupported tier is found, it should be removed before adding API
             if (!(unsupportedTiersList.isEmpty())) {
@@ -245,277 +625,707 @@ public final class APIImportUtil {
 
                     //Process is continued with a warning and only supported tiers are added to the importer API
                     log.warn("Tier name : " + unsupportedTier.getName() + " is not supported.");
+                    droppedTiers.add(unsupportedTier.getName());
                 }
+                Collections.sort(droppedTiers);
 
                 //Remove the unsupported tiers before adding the API
                 importedApi.removeAvailableTiers(unsupportedTiersList);
             }
         }
+        importResult.setDroppedTiers(droppedTiers);
 
+        progress.setPhase(JobProgress.Phase.ADDING_API, apiName);
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.ADD_API,
+                importContext.getTenantDomain());
         try{
-            provider.addAPI(importedApi);
-            addSwaggerDefinition(importedApi.getId(), pathToArchive);
+            if (isUpdate) {
+                API existingApi = provider.getAPI(importedApi.getId());
+                //state managed by the provider is kept: an exported API is always in the CREATED state while
+                //the provider rejects a change of the lifecycle state on update, and the icon is compared on
+                //its own, hence the thumbnail of the existing API is kept until then
+                importedApi.setStatus(existingApi.getStatus());
+                importedApi.setLastUpdated(existingApi.getLastUpdated());
+                importedApi.setThumbnailUrl(existingApi.getThumbnailUrl());
+                List<String> changedFields = getChangedFields(existingApi, importedApi, IGNORED_API_FIELDS);
+                importResult.setChangedFields(changedFields);
+                if (changedFields.isEmpty()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Definition of API " + apiName + " is unchanged.");
+                    }
+                } else if (!importContext.isDryRun()) {
+                    provider.updateAPI(importedApi);
+                }
+            } else if (!importContext.isDryRun()) {
+                provider.addAPI(importedApi);
+            }
+            timer.succeeded();
         } catch (APIManagementException e){
             //Error is logged and APIImportException is thrown because adding API and swagger are mandatory steps
             log.error("Error in adding API to the provider. ", e);
             throw new APIImportException("Error in adding API to the provider. " + e.getMessage());
+        } catch (FaultGatewaysException e) {
+            log.error("Error in updating API in the gateways. ", e);
+            throw new APIImportException("Error in updating API in the gateways. " + e.getMessage());
+        } finally {
+            timer.stop();
         }
+        addSwaggerDefinition(importedApi.getId(), archive, importContext, isUpdate);
 
         //Since Image, documents, sequences and WSDL are optional, exceptions are logged and ignored in implementation
-        addAPIImage(pathToArchive, importedApi);
-        addAPIDocuments(pathToArchive, importedApi);
-        addAPISequences(pathToArchive, importedApi, currentUser);
-        addAPIWsdl(pathToArchive, importedApi, currentUser);
-
+        progress.setPhase(JobProgress.Phase.ADDING_RESOURCES, apiName);
+        addAPIImage(archive, importedApi, importContext, isUpdate, importResult);
+        addAPIDocuments(archive, importedApi, importContext, isUpdate, importResult);
+        addAPISequences(archive, importedApi, importContext, importResult);
+        addAPIWsdl(archive, importedApi, importContext, isUpdate, importResult);
     }
 
     /**
-     * This method adds the icon to the API which is to be displayed at the API store.
+     * This method compares two objects field by field, by their JSON form as written to the archive.
+     * Elements of arrays are compared regardless of their order, since most of them are sets
      *
-     * @param pathToArchive location of the extracted folder of the API
-     * @param importedApi   the imported API object
+     * @param existing      the existing object
+     * @param imported      the imported object
+     * @param ignoredFields fields which are not compared
+     * @return names of the fields whose values differ, in alphabetical order
      */
-    private static void addAPIImage(String pathToArchive, API importedApi) {
+    private static List<String> getChangedFields(Object existing, Object imported, Set<String> ignoredFields) {
+        JsonObject existingTree = GsonHolder.getGson().toJsonTree(existing).getAsJsonObject();
+        JsonObject importedTree = GsonHolder.getGson().toJsonTree(imported).getAsJsonObject();
 
-        //Adding image icon to the API if there is any
-        File imageFolder = new File(pathToArchive + APIImportExportConstants.IMAGE_FILE_LOCATION);
-        File[] fileArray = imageFolder.listFiles();
-        FileInputStream inputStream = null;
+        Set<String> fieldNames = new HashSet<String>();
+        for (Map.Entry<String, JsonElement> field : existingTree.entrySet()) {
+            fieldNames.add(field.getKey());
+        }
+        for (Map.Entry<String, JsonElement> field : importedTree.entrySet()) {
+            fieldNames.add(field.getKey());
+        }
 
-        try {
-            if (imageFolder.isDirectory() && fileArray != null) {
+        List<String> changedFields = new ArrayList<String>();
+        for (String fieldName : fieldNames) {
+            if (!ignoredFields.contains(fieldName) &&
+                    !isSameValue(existingTree.get(fieldName), importedTree.get(fieldName))) {
+                changedFields.add(fieldName);
+            }
+        }
+        Collections.sort(changedFields);
+        return changedFields;
+    }
 
-                //This loop locates the icon of the API
-                for (File imageFile : fileArray) {
-                    if (imageFile != null && imageFile.getName().contains(APIImportExportConstants.IMAGE_FILE_NAME)) {
+    /**
+     * This method compares two values of a JSON tree, treating arrays as unordered
+     *
+     * @param existing the existing value, null if the field is not set
+     * @param imported the imported value, null if the field is not set
+     * @return true if the values are the same
+     */
+    private static boolean isSameValue(JsonElement existing, JsonElement imported) {
+        if (existing == null || imported == null) {
+            return existing == imported;
+        }
+        if (existing.isJsonArray() && imported.isJsonArray()) {
+            return getElementStrings(existing.getAsJsonArray()).equals(getElementStrings(imported.getAsJsonArray()));
+        }
+        return existing.toString().equals(imported.toString());
+    }
+
+    /**
+     * @param array array of a JSON tree
+     * @return JSON form of the elements of the array, in order
+     */
+    private static List<String> getElementStrings(JsonArray array) {
+        List<String> elements = new ArrayList<String>();
+        for (JsonElement element : array) {
+            elements.add(element.toString());
+        }
+        Collections.sort(elements);
+        return elements;
+    }
 
-                        String mimeType = URLConnection.guessContentTypeFromName(imageFile.getName());
-                        inputStream = new FileInputStream(imageFile.getAbsolutePath());
-                        Icon apiImage = new Icon(inputStream, mimeType);
-                        String thumbPath = APIUtil.getIconPath(importedApi.getId());
-                        String thumbnailUrl = provider.addIcon(thumbPath, apiImage);
+    /**
+     * This method adds the icon to the API which is to be displayed at the API store. When an existing API
+     * is updated, an icon with the same hash as the icon in the registry is not written again. In a dry run
+     * the icon is only read
+     *
+     * @param archive       archive of the API
+     * @param importedApi   the imported API object
+     * @param importContext context of the import request
+     * @param isUpdate      true if an existing API is updated
+     * @param importResult  result to which a failure to add the icon is recorded
+     */
+    private static void addAPIImage(ImportArchive archive, API importedApi, ImportContext importContext,
+                                    boolean isUpdate, APIImportResult importResult) {
 
-                        importedApi.setThumbnailUrl(APIUtil.prependTenantPrefix(thumbnailUrl,
-                                importedApi.getId().getProviderName()));
-                        APIUtil.setResourcePermissions(importedApi.getId().getProviderName(), null, null, thumbPath);
-                        provider.updateAPI(importedApi);
+        //Adding image icon to the API if there is any
+        CountingInputStream inputStream = null;
+        APIProvider provider = importContext.getProvider();
+        MetricsRegistry.PhaseTimer timer = null;
 
-                        //the loop is terminated after successfully locating the icon
+        try {
+            //This loop locates the icon of the API
+            for (String imageFileName : archive.listEntries(APIImportExportConstants.IMAGE_FILE_LOCATION)) {
+                if (imageFileName.contains(APIImportExportConstants.IMAGE_FILE_NAME)) {
+
+                    timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.ADD_IMAGE,
+                            importContext.getTenantDomain());
+                    String thumbPath = APIUtil.getIconPath(importedApi.getId());
+                    if (isUpdate && isResourceUnchanged(archive, APIImportExportConstants.IMAGE_FILE_LOCATION +
+                            imageFileName, importContext.getRegistry(), thumbPath)) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Icon of the API is unchanged.");
+                        }
+                        timer.succeeded();
+                        break;
+                    }
+                    if (importContext.isDryRun()) {
+                        getEntryChecksum(archive, APIImportExportConstants.IMAGE_FILE_LOCATION + imageFileName);
+                        timer.succeeded();
                         break;
                     }
+                    String mimeType = URLConnection.guessContentTypeFromName(imageFileName);
+                    inputStream = new CountingInputStream(archive.getEntryStream(
+                            APIImportExportConstants.IMAGE_FILE_LOCATION + imageFileName));
+                    Icon apiImage = new Icon(inputStream, mimeType);
+                    String thumbnailUrl = provider.addIcon(thumbPath, apiImage);
+
+                    importedApi.setThumbnailUrl(APIUtil.prependTenantPrefix(thumbnailUrl,
+                            importedApi.getId().getProviderName()));
+                    APIUtil.setResourcePermissions(importedApi.getId().getProviderName(), null, null, thumbPath);
+                    //an existing API already carries its own status, taken over by addAPIAndResources
+                    provider.updateAPI(importedApi);
+                    timer.setBytes(inputStream.getByteCount());
+                    timer.succeeded();
+
+                    //the loop is terminated after successfully locating the icon
+                    break;
                 }
             }
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             //This is logged and process is continued because icon is optional for an API
             log.error("Icon for API is not found. ", e);
+            importResult.addWarning("Icon for API is not found. " + e.getMessage());
         } catch (APIManagementException e){
             //This is logged and process is continued because icon is optional for an API
             log.error("Failed to add icon to the API. ", e);
+            importResult.addWarning("Failed to add icon to the API. " + e.getMessage());
         } catch (FaultGatewaysException e) {
             //This is logged and process is continued because icon is optional for an API
             log.error("Failed to update API after adding icon. ", e);
+            importResult.addWarning("Failed to update API after adding icon. " + e.getMessage());
+        } catch (org.wso2.carbon.registry.api.RegistryException e) {
+            //This is logged and process is continued because icon is optional for an API
+            log.error("Failed to compare the icon with the registry. ", e);
+            importResult.addWarning("Failed to compare the icon with the registry. " + e.getMessage());
         } finally {
             IOUtils.closeQuietly(inputStream);
+            if (timer != null) {
+                timer.stop();
+            }
         }
     }
 
     /**
-     * This method adds the documents to the imported API
+     * This method adds the documents to the imported API. When an existing API is updated, only the
+     * existing documents which differ are updated, and FILE documents whose file is left out of the
+     * archive, or has the same hash as the file in the registry, are kept. In a dry run the documents are
+     * only read
      *
-     * @param pathToArchive location of the extracted folder of the API
+     * @param archive       archive of the API
      * @param importedApi   the imported API object
+     * @param importContext context of the import request
+     * @param isUpdate      true if an existing API is updated
+     * @param importResult  result to which a failure to add the documents is recorded
      */
-    private static void addAPIDocuments(String pathToArchive, API importedApi) {
+    private static void addAPIDocuments(ImportArchive archive, API importedApi, ImportContext importContext,
+                                        boolean isUpdate, APIImportResult importResult) {
 
-        String docFileLocation = pathToArchive + APIImportExportConstants.DOCUMENT_FILE_LOCATION;
-        FileInputStream inputStream = null;
-        BufferedReader bufferedReader = null;
+        InputStream inputStream = null;
         APIIdentifier apiIdentifier = importedApi.getId();
+        APIProvider provider = importContext.getProvider();
+        MetricsRegistry.PhaseTimer timer = null;
+        long documentBytes = 0;
 
         try {
-            if (checkFileExistence(docFileLocation)) {
+            if (archive.hasEntry(APIImportExportConstants.DOCUMENT_FILE_LOCATION)) {
+                timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.ADD_DOCUMENTS,
+                        importContext.getTenantDomain());
+
+                inputStream = archive.getEntryStream(APIImportExportConstants.DOCUMENT_FILE_LOCATION);
+                Map<String, Documentation> existingDocuments = new HashMap<String, Documentation>();
+                if (isUpdate) {
+                    for (Documentation existingDocument : provider.getAllDocumentation(apiIdentifier)) {
+                        existingDocuments.put(existingDocument.getName(), existingDocument);
+                    }
+                }
 
-                inputStream = new FileInputStream(docFileLocation);
-                bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-                Documentation[] documentations = new Gson().fromJson(bufferedReader, Documentation[].class);
+                //documents are bound one at a time while docs.json is streamed
+                JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream,
+                        APIImportExportConstants.CHARSET));
+                jsonReader.beginArray();
 
                 //For each type of document separate action is performed
-                for (Documentation doc : documentations) {
+                while (jsonReader.hasNext()) {
+                    Documentation doc = GsonHolder.getGson().fromJson(jsonReader, Documentation.class);
+
+                    if (importContext.isDryRun()) {
+                        validateDocument(archive, doc, isUpdate, importResult);
+                        continue;
+                    }
 
                     if (APIImportExportConstants.INLINE_DOC_TYPE.equalsIgnoreCase(doc.getSourceType().toString())) {
-                        provider.addDocumentation(apiIdentifier, doc);
-                        provider.addDocumentationContent(importedApi, doc.getName(), doc.getSummary());
+                        addDocumentation(provider, apiIdentifier, doc, existingDocuments);
+                        if (!existingDocuments.containsKey(doc.getName()) || doc.getSummary() == null ||
+                                !doc.getSummary().equals(provider.getDocumentationContent(apiIdentifier,
+                                        doc.getName()))) {
+                            provider.addDocumentationContent(importedApi, doc.getName(), doc.getSummary());
+                        }
 
                     } else if (APIImportExportConstants.URL_DOC_TYPE.equalsIgnoreCase(doc.getSourceType().toString())) {
-                        provider.addDocumentation(apiIdentifier, doc);
+                        addDocumentation(provider, apiIdentifier, doc, existingDocuments);
 
                     } else if (APIImportExportConstants.FILE_DOC_TYPE.
                             equalsIgnoreCase(doc.getSourceType().toString())) {
-                        inputStream = new FileInputStream(pathToArchive + doc.getFilePath());
-                        String docExtension = FilenameUtils.getExtension(pathToArchive + doc.getFilePath());
-                        Icon apiDocument = new Icon(inputStream, docExtension);
-                        String visibleRolesList = importedApi.getVisibleRoles();
-                        String[] visibleRoles = new String[0];
-
-                        if (visibleRolesList != null) {
-                            visibleRoles = visibleRolesList.split(",");
+                        //the file of an unchanged document is left out of an incremental export
+                        if (isUpdate && !archive.hasEntry(doc.getFilePath())) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("Document " + doc.getName() + " is unchanged.");
+                            }
+                            continue;
                         }
 
                         String filePathDoc = APIUtil.getDocumentationFilePath(apiIdentifier, doc.getName());
-                        APIUtil.setResourcePermissions(importedApi.getId().getProviderName(),
-                                importedApi.getVisibility(), visibleRoles, filePathDoc);
-                        doc.setFilePath(provider.addIcon(filePathDoc, apiDocument));
-                        provider.addDocumentation(apiIdentifier, doc);
+                        Documentation existingDocument = existingDocuments.get(doc.getName());
+                        if (existingDocument != null && existingDocument.getFilePath() != null &&
+                                isResourceUnchanged(archive, doc.getFilePath(), importContext.getRegistry(),
+                                        filePathDoc)) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("File of document " + doc.getName() + " is unchanged.");
+                            }
+                            doc.setFilePath(existingDocument.getFilePath());
+                            addDocumentation(provider, apiIdentifier, doc, existingDocuments);
+                            continue;
+                        }
+
+                        CountingInputStream documentStream = new CountingInputStream(
+                                archive.getEntryStream(doc.getFilePath()));
+                        try {
+                            String docExtension = FilenameUtils.getExtension(doc.getFilePath());
+                            Icon apiDocument = new Icon(documentStream, docExtension);
+                            String visibleRolesList = importedApi.getVisibleRoles();
+                            String[] visibleRoles = new String[0];
+
+                            if (visibleRolesList != null) {
+                                visibleRoles = visibleRolesList.split(",");
+                            }
+
+                            APIUtil.setResourcePermissions(importedApi.getId().getProviderName(),
+                                    importedApi.getVisibility(), visibleRoles, filePathDoc);
+                            doc.setFilePath(provider.addIcon(filePathDoc, apiDocument));
+                            addDocumentation(provider, apiIdentifier, doc, existingDocuments);
+                            documentBytes += documentStream.getByteCount();
+                        } finally {
+                            IOUtils.closeQuietly(documentStream);
+                        }
                     }
                 }
+                jsonReader.endArray();
+                timer.setBytes(documentBytes);
+                timer.succeeded();
             }
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             //this error is logged and ignored because documents are optional in an API
             log.error("Failed to locate the document files of the API.", e);
+            importResult.addWarning("Failed to locate the document files of the API. " + e.getMessage());
+        } catch (JsonParseException e) {
+            //this error is logged and ignored because documents are optional in an API
+            log.error("Failed to parse the docs.json file of the API.", e);
+            importResult.addWarning("Failed to parse the docs.json file of the API. " + e.getMessage());
         } catch (APIManagementException e){
             //this error is logged and ignored because documents are optional in an API
             log.error("Failed to add Documentations to API.", e);
+            importResult.addWarning("Failed to add Documentations to API. " + e.getMessage());
+        } catch (org.wso2.carbon.registry.api.RegistryException e) {
+            //this error is logged and ignored because documents are optional in an API
+            log.error("Failed to compare document files with the registry.", e);
+            importResult.addWarning("Failed to compare document files with the registry. " + e.getMessage());
         } finally {
             IOUtils.closeQuietly(inputStream);
-            IOUtils.closeQuietly(bufferedReader);
+            if (timer != null) {
+                timer.stop();
+            }
+        }
+
+    }
+
+    /**
+     * This method checks that the file of a FILE document can be read from the archive, without adding
+     * the document. Problems are recorded as warnings, so that every document of the API is checked
+     *
+     * @param archive      archive of the API
+     * @param doc          document to be checked
+     * @param isUpdate     true if an existing API is updated, whose unchanged document files may be left out
+     * @param importResult result to which the problems are recorded
+     */
+    private static void validateDocument(ImportArchive archive, Documentation doc, boolean isUpdate,
+                                         APIImportResult importResult) {
+        if (!APIImportExportConstants.FILE_DOC_TYPE.equalsIgnoreCase(doc.getSourceType().toString())) {
+            return;
         }
 
+        if (doc.getFilePath() == null || !archive.hasEntry(doc.getFilePath())) {
+            if (!isUpdate) {
+                importResult.addWarning("File of document " + doc.getName() + " is not found in the archive.");
+            }
+            return;
+        }
+        try {
+            getEntryChecksum(archive, doc.getFilePath());
+        } catch (IOException e) {
+            log.error("Failed to read the file of document " + doc.getName() + ".", e);
+            importResult.addWarning("Failed to read the file of document " + doc.getName() + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method adds a document to an API, or updates it if the API already has a different document of the
+     * same name
+     *
+     * @param provider          API provider of the requester
+     * @param apiIdentifier     identifier of the imported API
+     * @param doc               document to be added
+     * @param existingDocuments documents the API already has, keyed by their names
+     * @throws APIManagementException if the document cannot be added
+     */
+    private static void addDocumentation(APIProvider provider, APIIdentifier apiIdentifier, Documentation doc,
+                                         Map<String, Documentation> existingDocuments)
+            throws APIManagementException {
+        Documentation existingDocument = existingDocuments.get(doc.getName());
+        if (existingDocument != null) {
+            if (getChangedFields(existingDocument, doc, IGNORED_DOCUMENT_FIELDS).isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Document " + doc.getName() + " is unchanged.");
+                }
+                return;
+            }
+            provider.updateDocumentation(apiIdentifier, doc);
+        } else {
+            provider.addDocumentation(apiIdentifier, doc);
+        }
     }
 
     /**
      * This method adds API sequences to the imported API. If the sequence is a newly defined one, it is added.
+     * Existing sequences are shared by the APIs of the tenant and are never replaced, even when an existing
+     * API is updated
      *
-     * @param pathToArchive location of the extracted folder of the API
+     * @param archive       archive of the API
      * @param importedApi   the imported API object
-     * @param currentUser   current logged in username
+     * @param importContext context of the import request
+     * @param importResult  result to which a failure to add a sequence is recorded
      */
-    private static void addAPISequences(String pathToArchive, API importedApi, String currentUser) {
+    private static void addAPISequences(ResourceReader archive, API importedApi, ImportContext importContext,
+                                        APIImportResult importResult) {
 
-        Registry registry = APIExportUtil.getRegistry(currentUser);
         String inSequenceFileName = importedApi.getInSequence() + APIImportExportConstants.XML_EXTENSION;
-        String inSequenceFileLocation = pathToArchive + APIImportExportConstants.IN_SEQUENCE_LOCATION
-                + inSequenceFileName;
+        String inSequenceFileLocation = APIImportExportConstants.IN_SEQUENCE_LOCATION + inSequenceFileName;
 
         //Adding in-sequence, if any
-        if (checkFileExistence(inSequenceFileLocation)) {
-            addSequenceToRegistry(registry, APIConstants.API_CUSTOM_SEQUENCE_TYPE_IN,
-                    inSequenceFileName, inSequenceFileLocation);
+        if (archive.hasEntry(inSequenceFileLocation)) {
+            addSequenceToRegistry(importContext, APIConstants.API_CUSTOM_SEQUENCE_TYPE_IN,
+                    inSequenceFileName, archive, inSequenceFileLocation, importResult);
         }
 
         String outSequenceFileName = importedApi.getOutSequence() + APIImportExportConstants.XML_EXTENSION;
-        String outSequenceFileLocation = pathToArchive + APIImportExportConstants.OUT_SEQUENCE_LOCATION
-                + outSequenceFileName;
+        String outSequenceFileLocation = APIImportExportConstants.OUT_SEQUENCE_LOCATION + outSequenceFileName;
 
         //Adding out-sequence, if any
-        if (checkFileExistence(outSequenceFileLocation)) {
-            addSequenceToRegistry(registry, APIConstants.API_CUSTOM_SEQUENCE_TYPE_OUT,
-                    outSequenceFileName, outSequenceFileLocation);
+        if (archive.hasEntry(outSequenceFileLocation)) {
+            addSequenceToRegistry(importContext, APIConstants.API_CUSTOM_SEQUENCE_TYPE_OUT,
+                    outSequenceFileName, archive, outSequenceFileLocation, importResult);
         }
 
         String faultSequenceFileName = importedApi.getFaultSequence() + APIImportExportConstants.XML_EXTENSION;
-        String faultSequenceFileLocation = pathToArchive + APIImportExportConstants.FAULT_SEQUENCE_LOCATION
-                + faultSequenceFileName;
+        String faultSequenceFileLocation = APIImportExportConstants.FAULT_SEQUENCE_LOCATION + faultSequenceFileName;
 
         //Adding fault-sequence, if any
-        if (checkFileExistence(faultSequenceFileLocation)) {
-            addSequenceToRegistry(registry, APIConstants.API_CUSTOM_SEQUENCE_TYPE_FAULT,
-                    faultSequenceFileName, faultSequenceFileLocation);
+        if (archive.hasEntry(faultSequenceFileLocation)) {
+            addSequenceToRegistry(importContext, APIConstants.API_CUSTOM_SEQUENCE_TYPE_FAULT,
+                    faultSequenceFileName, archive, faultSequenceFileLocation, importResult);
         }
     }
 
     /**
-     * This method adds the sequence files to the registry.
+     * This method adds the sequence files to the registry. Sequences are commonly shared by APIs, hence
+     * a sequence which already exists in the registry is not replaced, and a warning is recorded if its
+     * content differs from the imported one. The hash of the sequence is taken from the manifest of the
+     * archive if it has one, so that the sequence is only read when it is written. The hash of an existing
+     * sequence is read from the registry once per request
      *
-     * @param registry             the registry instance
+     * @param importContext        context of the import request
      * @param customSequenceType   type of the sequence
      * @param sequenceFileName     name of the sequence
-     * @param sequenceFileLocation location of the sequence file
+     * @param archive              archive of the API
+     * @param sequenceFileLocation location of the sequence file in the archive
+     * @param importResult         result to which a failure to add the sequence is recorded
      */
-    private static void addSequenceToRegistry(Registry registry, String customSequenceType, String sequenceFileName,
-                                              String sequenceFileLocation) {
+    private static void addSequenceToRegistry(ImportContext importContext, String customSequenceType,
+                                              String sequenceFileName, ResourceReader archive,
+                                              String sequenceFileLocation, APIImportResult importResult) {
 
         String regResourcePath = APIConstants.API_CUSTOM_SEQUENCE_LOCATION + File.separator + customSequenceType
                 + File.separator + sequenceFileName;
-        InputStream inSeqStream = null;
+        Registry registry = importContext.getRegistry();
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.ADD_SEQUENCES,
+                importContext.getTenantDomain());
         try {
-            if (registry.resourceExists(regResourcePath)) {
+            ByteBuffer inSeqData = null;
+            String hash = archive.getEntryChecksum(sequenceFileLocation);
+            if (hash == null) {
+                inSeqData = archive.getEntryBuffer(sequenceFileLocation);
+                hash = ResourceReader.sha256Hex(inSeqData);
+            }
+
+            String existingHash = importContext.getResourceHash(regResourcePath);
+            if (existingHash == null && registry.resourceExists(regResourcePath)) {
+                existingHash = getContentHash(registry, regResourcePath);
+                importContext.setResourceHash(regResourcePath, existingHash);
+            }
+
+            if (hash.equals(existingHash)) {
                 if (log.isDebugEnabled()) {
                     log.debug("Defined sequences have already been added to the registry");
                 }
+            } else if (existingHash != null) {
+                //shared sequences are kept as they are, since other APIs of the tenant may use them
+                log.warn("Sequence " + sequenceFileName + " already exists in the registry with a different " +
+                        "content and is not replaced: " + customSequenceType);
+                importResult.addWarning("Sequence " + sequenceFileName + " already exists in the registry " +
+                        "with a different content and is not replaced.");
+            } else if (importContext.isDryRun()) {
+                //nothing is written, but later APIs of the request see the sequence as added by this import
+                importContext.setResourceHash(regResourcePath, hash);
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("Adding defined sequences to the registry.");
                 }
-                File sequenceFile = new File(sequenceFileLocation);
-                inSeqStream = new FileInputStream(sequenceFile);
-                byte[] inSeqData = IOUtils.toByteArray(inSeqStream);
+                if (inSeqData == null) {
+                    inSeqData = archive.getEntryBuffer(sequenceFileLocation);
+                }
                 Resource inSeqResource = (Resource) registry.newResource();
-                inSeqResource.setContent(inSeqData);
+                inSeqResource.setContentStream(new ResourceReader.ByteBufferInputStream(inSeqData));
                 registry.put(regResourcePath, inSeqResource);
+                importContext.setResourceHash(regResourcePath, hash);
+                timer.setBytes(inSeqData.remaining());
             }
+            timer.succeeded();
         } catch (org.wso2.carbon.registry.api.RegistryException e) {
             //this is logged and ignored because sequences are optional
             log.error("Failed to add sequences into the registry: " + customSequenceType, e);
+            importResult.addWarning("Failed to add sequences into the registry: " + customSequenceType + ". " +
+                    e.getMessage());
         } catch (IOException e) {
             //this is logged and ignored because sequences are optional
             log.error("I/O error while writing sequence data to the registry, Sequence type: " + customSequenceType, e);
+            importResult.addWarning("I/O error while writing sequence data to the registry, Sequence type: " +
+                    customSequenceType + ". " + e.getMessage());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * This method computes the hash of the content of a registry resource
+     *
+     * @param registry     registry of the requester's tenant
+     * @param resourcePath registry path of the resource
+     * @return SHA-256 hash of the content
+     * @throws org.wso2.carbon.registry.api.RegistryException if the resource cannot be retrieved
+     * @throws IOException if the content cannot be read
+     */
+    private static String getContentHash(Registry registry, String resourcePath)
+            throws org.wso2.carbon.registry.api.RegistryException, IOException {
+        InputStream contentStream = null;
+        try {
+            contentStream = registry.get(resourcePath).getContentStream();
+            return DigestUtils.sha256Hex(contentStream);
+        } finally {
+            IOUtils.closeQuietly(contentStream);
+        }
+    }
+
+    /**
+     * This method checks whether a registry resource has the same content as an entry of the archive. The
+     * hash of the entry is taken from the manifest of the archive, or computed if the archive has none
+     *
+     * @param archive      archive of the API
+     * @param entryPath    location of the entry in the archive
+     * @param registry     registry of the requester's tenant
+     * @param resourcePath registry path of the resource
+     * @return true if the resource exists with the same hash, false otherwise
+     * @throws org.wso2.carbon.registry.api.RegistryException if the resource cannot be retrieved
+     * @throws IOException if the content cannot be read
+     */
+    private static boolean isResourceUnchanged(ImportArchive archive, String entryPath, Registry registry,
+                                               String resourcePath)
+            throws org.wso2.carbon.registry.api.RegistryException, IOException {
+        if (!registry.resourceExists(resourcePath)) {
+            return false;
+        }
+        return getEntryChecksum(archive, entryPath).equals(getContentHash(registry, resourcePath));
+    }
+
+    /**
+     * This method retrieves the hash of an entry of the archive, from the manifest of the archive or by
+     * reading the entry if the archive has none
+     *
+     * @param archive   archive of the API
+     * @param entryPath location of the entry in the archive
+     * @return SHA-256 hash of the entry
+     * @throws IOException if the entry cannot be read
+     */
+    private static String getEntryChecksum(ImportArchive archive, String entryPath) throws IOException {
+        String checksum = archive.getEntryChecksum(entryPath);
+        if (checksum != null) {
+            return checksum;
+        }
+        InputStream entryStream = null;
+        try {
+            entryStream = archive.getEntryStream(entryPath);
+            return DigestUtils.sha256Hex(entryStream);
         } finally {
-            IOUtils.closeQuietly(inSeqStream);
+            IOUtils.closeQuietly(entryStream);
         }
     }
 
     /**
-     * This method adds the WSDL to the registry, if there is a WSDL associated with the API
+     * This method adds the WSDL to the registry, if there is a WSDL associated with the API. When an existing
+     * API is updated, a WSDL with the same hash as the WSDL in the registry is not written again. In a dry
+     * run the WSDL is only read
      *
-     * @param pathToArchive location of the extracted folder of the API
+     * @param archive       archive of the API
      * @param importedApi   the imported API object
-     * @param currentUser   current logged in username
+     * @param importContext context of the import request
+     * @param isUpdate      true if an existing API is updated
+     * @param importResult  result to which a failure to add the WSDL is recorded
      */
-    private static void addAPIWsdl(String pathToArchive, API importedApi, String currentUser) {
+    private static void addAPIWsdl(ImportArchive archive, API importedApi, ImportContext importContext,
+                                   boolean isUpdate, APIImportResult importResult) {
 
         String wsdlFileName = importedApi.getId().getApiName() + "-" + importedApi.getId().getVersion() +
                 APIImportExportConstants.WSDL_EXTENSION;
-        String wsdlPath = pathToArchive + APIImportExportConstants.WSDL_LOCATION + wsdlFileName;
+        String wsdlPath = APIImportExportConstants.WSDL_LOCATION + wsdlFileName;
 
-        if (checkFileExistence(wsdlPath)) {
+        if (archive.hasEntry(wsdlPath)) {
+            MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.ADD_WSDL,
+                    importContext.getTenantDomain());
             try {
-                URL wsdlFileUrl = new File(wsdlPath).toURI().toURL();
+                if (isUpdate && isResourceUnchanged(archive, wsdlPath, importContext.getRegistry(),
+                        APIExportUtil.getWSDLPath(importedApi.getId()))) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("WSDL of the API is unchanged.");
+                    }
+                    timer.succeeded();
+                    return;
+                }
+                if (importContext.isDryRun()) {
+                    getEntryChecksum(archive, wsdlPath);
+                    timer.succeeded();
+                    return;
+                }
+                File wsdlFile = archive.getEntryFile(wsdlPath);
+                URL wsdlFileUrl = wsdlFile.toURI().toURL();
                 importedApi.setWsdlUrl(wsdlFileUrl.toString());
-                Registry registry = APIExportUtil.getRegistry(currentUser);
-                APIUtil.createWSDL((org.wso2.carbon.registry.core.Registry) registry, importedApi);
-            } catch (MalformedURLException e) {
+                APIUtil.createWSDL((org.wso2.carbon.registry.core.Registry) importContext.getRegistry(), importedApi);
+                timer.setBytes(wsdlFile.length());
+                timer.succeeded();
+            } catch (IOException e) {
                 //this exception is logged and ignored since WSDL is optional for an API
                 log.error("Error in getting WSDL URL. ", e);
-            } catch (org.wso2.carbon.registry.core.exceptions.RegistryException e) {
+                importResult.addWarning("Error in getting WSDL URL. " + e.getMessage());
+            } catch (org.wso2.carbon.registry.api.RegistryException e) {
                 //this exception is logged and ignored since WSDL is optional for an API
                 log.error("Error in putting the WSDL resource to registry. ", e);
+                importResult.addWarning("Error in putting the WSDL resource to registry. " + e.getMessage());
             } catch (APIManagementException e) {
                 //this exception is logged and ignored since WSDL is optional for an API
                 log.error("Error in creating the WSDL resource in the registry. ", e);
+                importResult.addWarning("Error in creating the WSDL resource in the registry. " + e.getMessage());
+            } finally {
+                timer.stop();
             }
         }
     }
 
     /**
-     * This method adds Swagger API definition to registry
+     * This method adds Swagger API definition to registry. When an existing API is updated, a definition with
+     * the same hash as the saved definition is not saved again. In a dry run the definition is only parsed
      *
-     * @param apiId       Identifier of the imported API
-     * @param archivePath File path where API archive stored
+     * @param apiId         Identifier of the imported API
+     * @param archive       archive of the API
+     * @param importContext context of the import request
+     * @param isUpdate      true if an existing API is updated
      * @throws APIImportException if there is an error occurs when adding Swagger definition
      */
-    private static void addSwaggerDefinition(APIIdentifier apiId, String archivePath)
+    private static void addSwaggerDefinition(APIIdentifier apiId, ResourceReader archive,
+                                             ImportContext importContext, boolean isUpdate)
             throws APIImportException {
 
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.ADD_SWAGGER_DEFINITION,
+                importContext.getTenantDomain());
         try {
-            String swaggerContent = FileUtils.readFileToString(
-                    new File(archivePath + APIImportExportConstants.SWAGGER_DEFINITION_LOCATION));
-            provider.saveSwagger20Definition(apiId, swaggerContent);
+            if (isUpdate) {
+                String existingDefinition = importContext.getProvider().getSwagger20Definition(apiId);
+                if (existingDefinition != null && getEntryChecksum(archive,
+                        APIImportExportConstants.SWAGGER_DEFINITION_LOCATION).equals(
+                        DigestUtils.sha256Hex(existingDefinition))) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Swagger definition of the API is unchanged.");
+                    }
+                    timer.succeeded();
+                    return;
+                }
+            }
+            if (importContext.isDryRun()) {
+                validateSwaggerDefinition(archive);
+                timer.succeeded();
+                return;
+            }
+            String swaggerContent = archive.getEntryString(APIImportExportConstants.SWAGGER_DEFINITION_LOCATION);
+            importContext.getProvider().saveSwagger20Definition(apiId, swaggerContent);
+            timer.setBytes(swaggerContent.length());
+            timer.succeeded();
         } catch (APIManagementException e) {
             log.error("Error in adding Swagger definition for the API. ", e);
             throw new APIImportException("Error in adding Swagger definition for the API. " + e.getMessage());
         } catch (IOException e) {
             log.error("Error in importing Swagger definition for the API. ", e);
             throw new APIImportException("Error in importing Swagger definition for the API. " + e.getMessage());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * This method checks that the Swagger definition of an archive is a JSON object
+     *
+     * @param archive archive of the API
+     * @throws APIImportException if the definition is malformed
+     * @throws IOException if the definition cannot be read
+     */
+    private static void validateSwaggerDefinition(ImportArchive archive) throws APIImportException, IOException {
+        InputStream inputStream = null;
+        try {
+            inputStream = archive.getEntryStream(APIImportExportConstants.SWAGGER_DEFINITION_LOCATION);
+            JsonElement definition = new JsonParser().parse(new InputStreamReader(inputStream,
+                    APIImportExportConstants.CHARSET));
+            if (!definition.isJsonObject()) {
+                throw new APIImportException("Swagger definition of the API is not a JSON object.");
+            }
+        } catch (JsonParseException e) {
+            log.error("Error in parsing Swagger definition of the API. ", e);
+            throw new APIImportException("Error in parsing Swagger definition of the API. " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(inputStream);
         }
     }
 
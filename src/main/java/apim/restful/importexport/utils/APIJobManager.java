@@ -0,0 +1,277 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIExportException;
+import apim.restful.importexport.APIImportException;
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.APIImportResult;
+import apim.restful.importexport.APIJob;
+import apim.restful.importexport.ExportContext;
+import apim.restful.importexport.ImportContext;
+import apim.restful.importexport.ImportMode;
+import apim.restful.importexport.JobProgress;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.apimgt.api.APIManagementException;
+import org.wso2.carbon.apimgt.api.APIProvider;
+import org.wso2.carbon.apimgt.api.model.APIIdentifier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs export and import requests as asynchronous jobs on the bounded job worker pool and
+ * keeps track of them until they expire
+ */
+public final class APIJobManager {
+
+    private static final Log log = LogFactory.getLog(APIJobManager.class);
+
+    private static final ConcurrentMap<String, APIJob> jobs = new ConcurrentHashMap<String, APIJob>();
+
+    private static final long jobRetention = TimeUnit.SECONDS.toMillis(Long.getLong(
+            APIImportExportConstants.JOB_RETENTION_PROPERTY, APIImportExportConstants.DEFAULT_JOB_RETENTION));
+
+    static {
+        //expired jobs are purged along with the sweeps of workspaces, so that their archives do not count
+        //against the workspace quota until another job is created
+        long sweepInterval = Long.getLong(APIImportExportConstants.WORKSPACE_SWEEP_INTERVAL_PROPERTY,
+                APIImportExportConstants.DEFAULT_WORKSPACE_SWEEP_INTERVAL);
+        ExecutorServiceHolder.getMaintenanceExecutor().scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                purgeExpiredJobs();
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+    }
+
+    private APIJobManager() {
+    }
+
+    /**
+     * Create a job and allocate its workspace. The workspace is kept until the job expires
+     *
+     * @param type  Type of the job
+     * @param owner User name of the requester
+     * @return Created job
+     * @throws APIExportException If the workspace cannot be created or the workspaces exceed the disk quota
+     */
+    public static APIJob createJob(APIJob.Type type, String owner) throws APIExportException {
+        purgeExpiredJobs();
+
+        return new APIJob(UUID.randomUUID().toString(), type, owner, WorkspaceManager.allocateWorkspace());
+    }
+
+    /**
+     * Discard a job which could not be submitted and release its workspace
+     *
+     * @param job Job to be discarded
+     */
+    public static void discardJob(APIJob job) {
+        jobs.remove(job.getJobId());
+        WorkspaceManager.releaseWorkspace(job.getWorkspace());
+    }
+
+    /**
+     * Submit a job which exports the APIs selected by the given filter into a single archive
+     *
+     * @param job      Job created for the export
+     * @param provider Provider of the requester
+     * @param filter   Filter selecting the APIs to export
+     * @param baseline Baseline of an incremental export, null to export everything
+     * @throws RejectedExecutionException If the job queue is full
+     */
+    public static void submitExportJob(final APIJob job, final APIProvider provider, final APIExportFilter filter,
+            final ExportBaseline baseline) {
+        submitJob(job, new TenantAwareCallable<Void>(job.getOwner()) {
+            protected Void callInTenantFlow() throws APIExportException {
+                JobProgress progress = job.getProgress();
+                progress.setPhase(JobProgress.Phase.SELECTING_APIS, null);
+                List<APIIdentifier> apiIdentifiers;
+                try {
+                    apiIdentifiers = filter.selectAPIs(provider);
+                } catch (APIManagementException e) {
+                    throw new APIExportException("Unable to retrieve APIs to export", e);
+                }
+                if (apiIdentifiers.isEmpty()) {
+                    job.setFailed("No APIs found to export");
+                    return null;
+                }
+
+                File archive = new File(job.getWorkspace(), APIImportExportConstants.BULK_EXPORT_FILE_NAME);
+                OutputStream archiveStream = null;
+                try {
+                    archiveStream = new ProgressOutputStream(new FileOutputStream(archive), progress);
+                    ZipArchiveWriter zipArchiveWriter = new ZipArchiveWriter(archiveStream, job.getWorkspace());
+                    DeduplicatingArchiveWriter archiveWriter = APIExportUtil.createBulkArchiveWriter(zipArchiveWriter);
+                    ExportContext exportContext = APIExportUtil.createExportContext(job.getOwner(), provider,
+                            archiveWriter, progress, baseline);
+                    List<APIIdentifier> exportedAPIs = APIExportUtil.retrieveApisToExport(apiIdentifiers,
+                            exportContext);
+                    archiveWriter.writeReferences();
+                    zipArchiveWriter.finish();
+                    log.info("Export job " + job.getJobId() + " exported " + exportedAPIs.size() + " APIs");
+                } catch (IOException e) {
+                    throw new APIExportException("I/O error while writing the archive of export job", e);
+                } finally {
+                    IOUtils.closeQuietly(archiveStream);
+                }
+                job.setCompleted(archive, null);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Submit a job which imports the APIs of an uploaded archive
+     *
+     * @param job                      Job created for the import
+     * @param uploadedArchive          Uploaded archive stored in the workspace of the job
+     * @param isDefaultProviderAllowed Decision to keep or replace the provider
+     * @param importMode               Way of handling APIs which already exist
+     * @throws RejectedExecutionException If the job queue is full
+     */
+    public static void submitImportJob(final APIJob job, final File uploadedArchive,
+            final boolean isDefaultProviderAllowed, final ImportMode importMode) {
+        submitJob(job, new TenantAwareCallable<Void>(job.getOwner()) {
+            protected Void callInTenantFlow() throws APIExportException, APIImportException {
+                JobProgress progress = job.getProgress();
+                ImportContext importContext = APIImportUtil.createImportContext(job.getOwner(), progress,
+                        importMode);
+
+                progress.setPhase(JobProgress.Phase.EXTRACTING_ARCHIVE, null);
+                String extractionPath = job.getWorkspace().getPath() + File.separator;
+                MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.EXTRACT_ARCHIVE,
+                        importContext.getTenantDomain());
+                try {
+                    APIImportUtil.extractArchive(uploadedArchive, extractionPath);
+                    timer.setBytes(uploadedArchive.length());
+                    timer.succeeded();
+                } finally {
+                    timer.stop();
+                }
+                FileUtils.deleteQuietly(uploadedArchive);
+
+                List<APIImportResult> importResults = APIImportUtil.importAPIs(extractionPath, importContext,
+                        isDefaultProviderAllowed);
+                log.info("Import job " + job.getJobId() + " processed " + importResults.size() + " APIs");
+                job.setCompleted(null, importResults);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Retrieve a job of the given user
+     *
+     * @param jobId ID of the job
+     * @param owner User name of the requester
+     * @return The job, null if there is no such job or it is not owned by the requester
+     */
+    public static APIJob getJob(String jobId, String owner) {
+        APIJob job = jobs.get(jobId);
+        if (job == null || !job.getOwner().equals(owner)) {
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Register a job and queue it on the job worker pool. Failures of the job are recorded in the job
+     *
+     * @param job  Job to be run
+     * @param task Task performing the job
+     * @throws RejectedExecutionException If the job queue is full
+     */
+    private static void submitJob(final APIJob job, final TenantAwareCallable<Void> task) {
+        jobs.put(job.getJobId(), job);
+        try {
+            ExecutorServiceHolder.getJobExecutor().execute(new Runnable() {
+                public void run() {
+                    job.setRunning();
+                    try {
+                        task.call();
+                    } catch (APIImportException e) {
+                        log.error("Job " + job.getJobId() + " failed. " + e.getErrorDescription());
+                        job.setFailed(e.getErrorDescription());
+                    } catch (Exception e) {
+                        log.error("Job " + job.getJobId() + " failed. ", e);
+                        job.setFailed(e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            discardJob(job);
+            throw e;
+        }
+    }
+
+    /**
+     * Remove the jobs which finished before the retention period and delete their workspaces
+     */
+    private static void purgeExpiredJobs() {
+        long expiryTime = System.currentTimeMillis() - jobRetention;
+        for (Iterator<APIJob> iterator = jobs.values().iterator(); iterator.hasNext(); ) {
+            APIJob job = iterator.next();
+            if (job.isFinishedBefore(expiryTime)) {
+                iterator.remove();
+                WorkspaceManager.releaseWorkspace(job.getWorkspace());
+                if (log.isDebugEnabled()) {
+                    log.debug("Job " + job.getJobId() + " expired");
+                }
+            }
+        }
+    }
+
+    /**
+     * Output stream which reports the number of bytes written to the progress of a job
+     */
+    private static class ProgressOutputStream extends FilterOutputStream {
+
+        private final JobProgress progress;
+
+        ProgressOutputStream(OutputStream outputStream, JobProgress progress) {
+            super(outputStream);
+            this.progress = progress;
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            progress.addBytes(1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            progress.addBytes(len);
+        }
+    }
+}
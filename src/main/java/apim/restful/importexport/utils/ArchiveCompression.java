@@ -0,0 +1,114 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This class decides how the entries of an exported archive are compressed. Entries of media types which
+ * are already compressed, e.g. PNG and JPEG icons or PDF documents, are not compressed again, while the
+ * remaining entries are deflated with the configured compression level
+ */
+public final class ArchiveCompression {
+
+    private static final Log log = LogFactory.getLog(ArchiveCompression.class);
+
+    private static final int compressionLevel = getConfiguredLevel();
+
+    private static final Set<String> compressedExtensions = getConfiguredExtensions();
+
+    private ArchiveCompression() {
+    }
+
+    /**
+     * Check whether the content of an entry is already compressed, judging by the extension of its name
+     *
+     * @param entryName Name of the entry
+     * @return true if the entry is not worth compressing
+     */
+    public static boolean isCompressed(String entryName) {
+        return compressedExtensions.contains(FilenameUtils.getExtension(entryName).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * @return Compression level used to deflate entries which are not already compressed
+     */
+    public static int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Begin writing an entry of unknown size to a zipped stream. Since the size and CRC of a STORED entry
+     * are required before its content, an already compressed entry is deflated without compression
+     * instead, which only copies the content
+     *
+     * @param zipOutputStream Zipped stream
+     * @param entryName       Name of the entry
+     * @throws IOException If an error occurs while writing the entry header
+     */
+    public static void putNextEntry(ZipOutputStream zipOutputStream, String entryName) throws IOException {
+        zipOutputStream.setLevel(isCompressed(entryName) ? Deflater.NO_COMPRESSION : compressionLevel);
+        zipOutputStream.putNextEntry(new ZipEntry(entryName));
+    }
+
+    /**
+     * Read the configured compression level, falling back to the default if it is not a valid level
+     *
+     * @return Compression level
+     */
+    private static int getConfiguredLevel() {
+        int level = Integer.getInteger(APIImportExportConstants.ARCHIVE_COMPRESSION_LEVEL_PROPERTY,
+                APIImportExportConstants.DEFAULT_ARCHIVE_COMPRESSION_LEVEL);
+        if (level != Deflater.DEFAULT_COMPRESSION &&
+                (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            log.warn("Invalid archive compression level " + level + ". Default level is used.");
+            return APIImportExportConstants.DEFAULT_ARCHIVE_COMPRESSION_LEVEL;
+        }
+        return level;
+    }
+
+    /**
+     * Read the configured extensions of the files which are already compressed
+     *
+     * @return Extensions in lower case
+     */
+    private static Set<String> getConfiguredExtensions() {
+        Set<String> extensions = new HashSet<String>();
+        String configuredExtensions = System.getProperty(APIImportExportConstants.ARCHIVE_COMPRESSED_TYPES_PROPERTY,
+                APIImportExportConstants.DEFAULT_ARCHIVE_COMPRESSED_TYPES);
+        for (String extension : configuredExtensions.split(",")) {
+            if (extension.trim().length() > 0) {
+                extensions.add(extension.trim().toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return extensions;
+    }
+}
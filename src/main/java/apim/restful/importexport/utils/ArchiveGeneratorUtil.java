@@ -19,21 +19,32 @@
 package apim.restful.importexport.utils;
 
 import apim.restful.importexport.APIExportException;
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.ArchiveManifest;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 /**
- * This class is used to generate zipped archive files
+ * This class is used to generate zipped archive files. Entries are compressed as decided by
+ * {@link ArchiveCompression}, on the archive worker pool. The first entry of an archive is its
+ * {@link ArchiveManifest}, listing the size and hash of every other entry
  */
 public class ArchiveGeneratorUtil {
     private static final Log log = LogFactory.getLog(ArchiveGeneratorUtil.class);
@@ -80,7 +91,8 @@ public class ArchiveGeneratorUtil {
     }
 
     /**
-     * Generate archive file
+     * Generate archive file. Entries are deflated in parallel by {@link ParallelZipWriter}, after the
+     * manifest of the archive
      *
      * @param directoryToZip Location of the archive
      * @param fileList       List of files to be included in the archive
@@ -89,56 +101,127 @@ public class ArchiveGeneratorUtil {
     private static void writeArchiveFile(File directoryToZip, List<File> fileList) throws APIExportException {
 
         FileOutputStream fileOutputStream = null;
-        ZipOutputStream zipOutputStream = null;
+        ExecutorService executor = ExecutorServiceHolder.getArchiveExecutor();
+        int maxPendingTasks = 4 * Integer.getInteger(APIImportExportConstants.ARCHIVE_WORKERS_PROPERTY,
+                Runtime.getRuntime().availableProcessors());
+        ParallelZipWriter zipWriter = new ParallelZipWriter(executor,
+                Integer.getInteger(APIImportExportConstants.ARCHIVE_CHUNK_SIZE_PROPERTY,
+                        APIImportExportConstants.DEFAULT_ARCHIVE_CHUNK_SIZE), maxPendingTasks);
 
         try {
-            fileOutputStream = new FileOutputStream(directoryToZip.getPath() + ".zip");
-            zipOutputStream = new ZipOutputStream(fileOutputStream);
+            String directoryPath = directoryToZip.getCanonicalPath();
+            List<String> entryNames = new ArrayList<String>();
+            List<File> entryFiles = new ArrayList<File>();
             for (File file : fileList) {
                 if (!file.isDirectory()) {
-                    addToArchive(directoryToZip, file, zipOutputStream);
+                    // Get relative path from archive directory to the specific file
+                    String zipFilePath = file.getCanonicalPath().substring(directoryPath.length() + 1);
+                    entryNames.add(zipFilePath.replace(File.separatorChar, '/'));
+                    entryFiles.add(file);
                 }
             }
 
+            //the manifest is the first entry, its file is read only once the archive is written
+            File manifestFile = new File(directoryToZip, APIImportExportConstants.ARCHIVE_MANIFEST_FILE_NAME);
+            zipWriter.addEntry(APIImportExportConstants.ARCHIVE_MANIFEST_FILE_NAME, manifestFile);
+            FileUtils.writeStringToFile(manifestFile, GsonHolder.getExportGson().toJson(
+                    createManifest(entryNames, entryFiles, zipWriter, executor, maxPendingTasks)),
+                    APIImportExportConstants.CHARSET);
+
+            fileOutputStream = new FileOutputStream(directoryToZip.getPath() + ".zip");
+            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream,
+                    APIImportExportConstants.BUFFER_SIZE);
+            zipWriter.writeTo(bufferedOutputStream);
+            bufferedOutputStream.flush();
         } catch (IOException e) {
             log.error("I/O error while adding files to archive" + e.getMessage());
             throw new APIExportException("I/O error while adding files to archive", e);
         } finally {
-            IOUtils.closeQuietly(zipOutputStream);
             IOUtils.closeQuietly(fileOutputStream);
         }
     }
 
     /**
-     * Add files of the directory to the archive
+     * Create the manifest of an archive and add the entries it lists to the archive. Each file is read once on
+     * the archive worker pool for both its SHA-256 hash and the CRC-32 checksum of its zip entry. Files are
+     * hashed at most the given number ahead of the entry being added to the manifest
      *
-     * @param directoryToZip  Location of the archive
-     * @param file            File to be included in the archive
-     * @param zipOutputStream Output stream
-     * @throws APIExportException If an error occurs while writing files to the archive
+     * @param entryNames      Names of the entries of the archive
+     * @param entryFiles      Files holding the content of the entries, in the order of their names
+     * @param zipWriter       Archive the entries are added to
+     * @param executor        Worker pool hashing the files
+     * @param maxPendingTasks Number of files hashed ahead of the entry being added
+     * @return Manifest listing the entries
+     * @throws IOException If a file cannot be read
      */
-    private static void addToArchive(File directoryToZip, File file, ZipOutputStream zipOutputStream)
-            throws APIExportException {
+    private static ArchiveManifest createManifest(List<String> entryNames, List<File> entryFiles,
+                                                  ParallelZipWriter zipWriter, ExecutorService executor,
+                                                  int maxPendingTasks) throws IOException {
+        List<Future<FileChecksum>> hashTasks = new ArrayList<Future<FileChecksum>>();
+        try {
+            ArchiveManifest manifest = new ArchiveManifest();
+            for (int i = 0; i < entryNames.size(); i++) {
+                while (hashTasks.size() < entryFiles.size() &&
+                        (hashTasks.size() <= i || hashTasks.size() - i < maxPendingTasks)) {
+                    final File file = entryFiles.get(hashTasks.size());
+                    hashTasks.add(executor.submit(new Callable<FileChecksum>() {
+                        public FileChecksum call() throws IOException {
+                            return getChecksum(file);
+                        }
+                    }));
+                }
+
+                FileChecksum checksum = hashTasks.get(i).get();
+                manifest.addEntry(new ArchiveManifest.Entry(entryNames.get(i), entryFiles.get(i).length(),
+                        checksum.sha256));
+                zipWriter.addEntry(entryNames.get(i), entryFiles.get(i), checksum.crc);
+            }
+            return manifest;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            log.error("Error while hashing archive entry", e.getCause());
+            throw new IOException("Error while hashing archive entry " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Hashing of archive entries got interrupted", e);
+        } finally {
+            for (Future<FileChecksum> hashTask : hashTasks) {
+                hashTask.cancel(false);
+            }
+        }
+    }
 
-        FileInputStream fileInputStream = null;
+    /**
+     * Read a file once for its SHA-256 hash and CRC-32 checksum
+     *
+     * @param file File to be checked
+     * @return Hash and checksum of the file content
+     * @throws IOException If the file cannot be read
+     */
+    private static FileChecksum getChecksum(File file) throws IOException {
+        CheckedInputStream checkedInputStream = null;
         try {
-            fileInputStream = new FileInputStream(file);
+            checkedInputStream = new CheckedInputStream(new FileInputStream(file), new CRC32());
+            String sha256 = DigestUtils.sha256Hex(checkedInputStream);
+            return new FileChecksum(sha256, checkedInputStream.getChecksum().getValue());
+        } finally {
+            IOUtils.closeQuietly(checkedInputStream);
+        }
+    }
 
-            // Get relative path from archive directory to the specific file
-            String zipFilePath = file.getCanonicalPath()
-                    .substring(directoryToZip.getCanonicalPath().length() + 1, file.getCanonicalPath().length());
-            ZipEntry zipEntry = new ZipEntry(zipFilePath);
-            zipOutputStream.putNextEntry(zipEntry);
+    /**
+     * This class holds the SHA-256 hash of a file for the manifest and the CRC-32 checksum for its zip entry
+     */
+    private static class FileChecksum {
 
-            IOUtils.copy(fileInputStream, zipOutputStream);
+        private final String sha256;
+        private final long crc;
 
-            zipOutputStream.closeEntry();
-        } catch (IOException e) {
-            log.error("I/O error while writing files to archive" + e.getMessage());
-            throw new APIExportException("I/O error while writing files to archive", e);
-        } finally {
-            IOUtils.closeQuietly(fileInputStream);
+        FileChecksum(String sha256, long crc) {
+            this.sha256 = sha256;
+            this.crc = crc;
         }
     }
 }
-
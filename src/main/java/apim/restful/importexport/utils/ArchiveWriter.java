@@ -0,0 +1,48 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface represents the destination of the entries of an exported API archive.
+ * Entry names are relative to the root of the archive and use '/' as the path separator.
+ * Implementations must be thread safe, since resources of an API are exported concurrently
+ */
+public interface ArchiveWriter {
+
+    /**
+     * Write the content of the given stream as an entry of the archive. The stream is not closed
+     *
+     * @param entryName Relative path of the entry
+     * @param content   Content of the entry
+     * @throws IOException If an error occurs while writing the entry
+     */
+    void writeEntry(String entryName, InputStream content) throws IOException;
+
+    /**
+     * Write the given text as an entry of the archive
+     *
+     * @param entryName Relative path of the entry
+     * @param content   Content of the entry
+     * @throws IOException If an error occurs while writing the entry
+     */
+    void writeEntry(String entryName, String content) throws IOException;
+}
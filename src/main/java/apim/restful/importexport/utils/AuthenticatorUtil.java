@@ -19,8 +19,13 @@
 package apim.restful.importexport.utils;
 
 import apim.restful.importexport.APIExportException;
+import apim.restful.importexport.APIImportExportConstants;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.StringUtils;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.CarbonContext;
@@ -33,21 +38,30 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides authentication facility for importing and exporting APIs
  * Basic authentication is used for this purpose
  * Users with admin roles are only eligible for accessing those JAX-RS services
+ * Authorization decisions of authenticated users are cached for a configurable period, keyed by a
+ * hash of the credentials and the tenant domain
  */
 public class AuthenticatorUtil {
 
     private static final String AUTHORIZATION_PROPERTY = "Authorization";
     private static final String AUTHENTICATION_SCHEME = "Basic";
     private static final Log log = LogFactory.getLog(AuthenticatorUtil.class);
-    private static String username;
-    private static String password;
+    private static final Cache<String, AuthorizationDecision> authorizationCache = CacheBuilder.newBuilder()
+            .maximumSize(Long.getLong(APIImportExportConstants.AUTH_CACHE_SIZE_PROPERTY,
+                    APIImportExportConstants.DEFAULT_AUTH_CACHE_SIZE))
+            .expireAfterWrite(Long.getLong(APIImportExportConstants.AUTH_CACHE_EXPIRY_PROPERTY,
+                    APIImportExportConstants.DEFAULT_AUTH_CACHE_EXPIRY), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
 
     private AuthenticatorUtil() {
     }
@@ -63,7 +77,8 @@ public class AuthenticatorUtil {
      */
 
     public static Response authorizeUser(HttpHeaders headers) throws APIExportException {
-        if (!isValidCredentials(headers)) {
+        Credentials credentials = getCredentials(headers);
+        if (credentials == null) {
             log.error("No username and password is provided for authentication");
             return Response.status(Response.Status.UNAUTHORIZED)
                     .entity("No username and password is provided for authentication").type(MediaType.APPLICATION_JSON).
@@ -71,39 +86,29 @@ public class AuthenticatorUtil {
 
         }
 
+        String username = credentials.username;
+        String tenantDomain = MultitenantUtils.getTenantDomain(username);
+        String cacheKey = getCacheKey(tenantDomain, username, credentials.password);
+
+        AuthorizationDecision cachedDecision = authorizationCache.getIfPresent(cacheKey);
+        if (cachedDecision != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Authorization decision of " + username + " retrieved from cache");
+            }
+            return getAuthorizationResponse(username, cachedDecision.isAdmin);
+        }
+
         try {
-            String tenantDomain = MultitenantUtils.getTenantDomain(username);
             PrivilegedCarbonContext.startTenantFlow();
             PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
 
             UserStoreManager userstoremanager =
                     CarbonContext.getThreadLocalCarbonContext().getUserRealm().getUserStoreManager();
+            //Get admin role name of the current domain
+            String adminRoleName =
+                    CarbonContext.getCurrentContext().getUserRealm().getRealmConfiguration().getAdminRoleName();
 
-            String tenantAwareUsername = MultitenantUtils.getTenantAwareUsername(username);
-
-            //authenticate user provided credentials
-            if (userstoremanager.authenticate(tenantAwareUsername, password)) {
-                log.info(username + " user authenticated successfully");
-                //Get admin role name of the current domain
-                String adminRoleName =
-                        CarbonContext.getCurrentContext().getUserRealm().getRealmConfiguration().getAdminRoleName();
-
-                String[] userRoles = userstoremanager.getRoleListOfUser(tenantAwareUsername);
-
-                //user is only authorized for exporting and importing if he is an admin of his
-                // domain
-                if (Arrays.asList(userRoles).contains(adminRoleName)) {
-                    log.info(username + " is authorized to import and export APIs");
-                    return Response.ok().build();
-                } else {
-                    return Response.status(Response.Status.FORBIDDEN).entity("User Authorization " + "Failed")
-                            .type(MediaType.APPLICATION_JSON).build();
-                }
-
-            } else {
-                return Response.status(Response.Status.UNAUTHORIZED).entity("User Authentication " + "Failed")
-                        .type(MediaType.APPLICATION_JSON).build();
-            }
+            return authorizeUser(username, credentials.password, userstoremanager, adminRoleName);
 
         } catch (UserStoreException e) {
             log.error("Error while accessing user configuration" + e.getMessage());
@@ -115,21 +120,139 @@ public class AuthenticatorUtil {
     }
 
     /**
-     * Checks whether user has provided non blank username and password for authentication
+     * Checks whether the given credentials are authorized for exporting and importing APIs against the
+     * given user store. Cached decisions are used when present, otherwise the decision is cached
+     *
+     * @param username         Name of the user including the tenant domain
+     * @param password         Password of the user
+     * @param userStoreManager User store of the user's tenant
+     * @param adminRoleName    Admin role name of the user's tenant
+     * @return Response indicating whether authentication and authorization for accessing API got
+     * succeeded
+     * @throws UserStoreException If an error occurs while accessing the user store
+     */
+    public static Response authorizeUser(String username, String password, UserStoreManager userStoreManager,
+            String adminRoleName) throws UserStoreException {
+        String cacheKey = getCacheKey(MultitenantUtils.getTenantDomain(username), username, password);
+
+        AuthorizationDecision cachedDecision = authorizationCache.getIfPresent(cacheKey);
+        if (cachedDecision != null) {
+            return getAuthorizationResponse(username, cachedDecision.isAdmin);
+        }
+
+        String tenantAwareUsername = MultitenantUtils.getTenantAwareUsername(username);
+
+        //authenticate user provided credentials
+        if (userStoreManager.authenticate(tenantAwareUsername, password)) {
+            log.info(username + " user authenticated successfully");
+
+            String[] userRoles = userStoreManager.getRoleListOfUser(tenantAwareUsername);
+
+            //user is only authorized for exporting and importing if he is an admin of his
+            // domain
+            boolean isAdmin = Arrays.asList(userRoles).contains(adminRoleName);
+            authorizationCache.put(cacheKey, new AuthorizationDecision(username,
+                    MultitenantUtils.getTenantDomain(username), isAdmin));
+            return getAuthorizationResponse(username, isAdmin);
+
+        } else {
+            return Response.status(Response.Status.UNAUTHORIZED).entity("User Authentication " + "Failed")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * Build the key of the cached authorization decision of a user
+     *
+     * @param tenantDomain Tenant domain of the user
+     * @param username     Name of the user
+     * @param password     Password of the user
+     * @return Hash of the credentials and the tenant domain
+     */
+    private static String getCacheKey(String tenantDomain, String username, String password) {
+        return DigestUtils.sha256Hex(tenantDomain + ":" + username + ":" + password);
+    }
+
+    /**
+     * Build the response of an authorization decision
+     *
+     * @param username Name of the authenticated user
+     * @param isAdmin  Whether the user is an admin of his domain
+     * @return Response indicating whether the user is authorized
+     */
+    private static Response getAuthorizationResponse(String username, boolean isAdmin) {
+        if (isAdmin) {
+            if (log.isDebugEnabled()) {
+                log.debug(username + " is authorized to import and export APIs");
+            }
+            return Response.ok().build();
+        } else {
+            return Response.status(Response.Status.FORBIDDEN).entity("User Authorization " + "Failed")
+                    .type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * Discard all the cached authorization decisions
+     */
+    public static void invalidateAuthorizationCache() {
+        authorizationCache.invalidateAll();
+    }
+
+    /**
+     * Discard the cached authorization decisions of the users of a tenant
+     *
+     * @param tenantDomain Tenant domain of the users
+     */
+    public static void invalidateTenantAuthorizationCache(String tenantDomain) {
+        Iterator<Map.Entry<String, AuthorizationDecision>> cacheEntries =
+                authorizationCache.asMap().entrySet().iterator();
+        while (cacheEntries.hasNext()) {
+            if (cacheEntries.next().getValue().tenantDomain.equals(tenantDomain)) {
+                cacheEntries.remove();
+            }
+        }
+    }
+
+    /**
+     * Discard the cached authorization decisions of a user, e.g. after the password or roles of the
+     * user got changed
+     *
+     * @param username Name of the user including the tenant domain
+     */
+    public static void invalidateAuthorizationCache(String username) {
+        Iterator<Map.Entry<String, AuthorizationDecision>> cacheEntries =
+                authorizationCache.asMap().entrySet().iterator();
+        while (cacheEntries.hasNext()) {
+            if (cacheEntries.next().getValue().username.equals(username)) {
+                cacheEntries.remove();
+            }
+        }
+    }
+
+    /**
+     * Retrieve hit and miss counters of the authorization cache
+     *
+     * @return Statistics of the authorization cache
+     */
+    public static CacheStats getAuthorizationCacheStats() {
+        return authorizationCache.stats();
+    }
+
+    /**
+     * Extracts the username and password provided for authentication
      *
      * @param headers Http Headers of the request
-     * @return boolean Whether a user name and password has been provided for authentication
-     * @throws APIExportException If an error occurs while extracting username and password from
-     *                            the header
+     * @return Credentials of the request or null if a user name and password has not been provided
      */
-    private static boolean isValidCredentials(HttpHeaders headers) throws APIExportException {
+    private static Credentials getCredentials(HttpHeaders headers) {
 
         //Fetch authorization header
         final List<String> authorization = headers.getRequestHeader(AUTHORIZATION_PROPERTY);
 
         //If no authorization information present; block access
         if (authorization == null || authorization.isEmpty()) {
-            return false;
+            return null;
         }
 
         //Get encoded username and password
@@ -140,25 +263,55 @@ public class AuthenticatorUtil {
         usernameAndPassword = StringUtils.newStringUtf8(Base64.decodeBase64(encodedUserPassword.getBytes()));
 
         if (usernameAndPassword != null) {
-            //Split username and password tokens
-            final StringTokenizer tokenizer = new StringTokenizer(usernameAndPassword, ":");
-            username = tokenizer.nextToken();
-            password = tokenizer.nextToken();
-
-            if (username != null && password != null) {
-                return true;
+            //Split username and password tokens, the password may contain the separator
+            int separatorIndex = usernameAndPassword.indexOf(':');
+            if (separatorIndex > 0 && separatorIndex < usernameAndPassword.length() - 1) {
+                return new Credentials(usernameAndPassword.substring(0, separatorIndex),
+                        usernameAndPassword.substring(separatorIndex + 1));
             }
         }
 
-        return false;
+        return null;
     }
 
     /**
-     * Retrieve authenticated user name for the current session
+     * Retrieve authenticated user name of the request
      *
+     * @param headers Http Headers of the request
      * @return User name
      */
-    public static String getAuthenticatedUserName() {
-        return username;
+    public static String getAuthenticatedUserName(HttpHeaders headers) {
+        Credentials credentials = getCredentials(headers);
+        return credentials == null ? null : credentials.username;
+    }
+
+    /**
+     * Cached outcome of authorizing an authenticated user
+     */
+    private static final class AuthorizationDecision {
+
+        private final String username;
+        private final String tenantDomain;
+        private final boolean isAdmin;
+
+        private AuthorizationDecision(String username, String tenantDomain, boolean isAdmin) {
+            this.username = username;
+            this.tenantDomain = tenantDomain;
+            this.isAdmin = isAdmin;
+        }
+    }
+
+    /**
+     * Username and password provided by a request
+     */
+    private static final class Credentials {
+
+        private final String username;
+        private final String password;
+
+        private Credentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
     }
 }
@@ -0,0 +1,120 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class stores the resources of a bulk export which are shared by several APIs only once. Resources
+ * written as streams, i.e. icons, documents, WSDLs and sequences, which are not larger than the blob
+ * threshold are stored under blobs/ named by the SHA-256 hash of their content. Each API folder gets a
+ * Meta-information/blobs.json mapping the paths of its resources to their hashes. Larger resources and
+ * text entries are written to the wrapped writer as they are
+ */
+public class DeduplicatingArchiveWriter implements ArchiveWriter {
+
+    private final ArchiveWriter archiveWriter;
+    private final int blobThreshold;
+    private final ConcurrentMap<String, Boolean> writtenBlobs = new ConcurrentHashMap<String, Boolean>();
+    private final ConcurrentMap<String, Map<String, String>> blobReferences =
+            new ConcurrentHashMap<String, Map<String, String>>();
+
+    /**
+     * @param archiveWriter Destination of the entries
+     * @param blobThreshold Size in bytes up to which resources are deduplicated
+     */
+    public DeduplicatingArchiveWriter(ArchiveWriter archiveWriter, int blobThreshold) {
+        this.archiveWriter = archiveWriter;
+        this.blobThreshold = blobThreshold;
+    }
+
+    public void writeEntry(String entryName, InputStream content) throws IOException {
+        int folderEnd = entryName.indexOf(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR);
+        if (folderEnd < 0) {
+            archiveWriter.writeEntry(entryName, content);
+            return;
+        }
+
+        //one byte more than the threshold is read to find out whether the resource is small enough
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOUtils.copyLarge(content, buffer, 0, blobThreshold + 1L);
+        byte[] blob = buffer.toByteArray();
+        if (blob.length > blobThreshold) {
+            archiveWriter.writeEntry(entryName, new SequenceInputStream(new ByteArrayInputStream(blob), content));
+            return;
+        }
+
+        String hash = DigestUtils.sha256Hex(blob);
+        if (writtenBlobs.putIfAbsent(hash, Boolean.TRUE) == null) {
+            archiveWriter.writeEntry(APIImportExportConstants.BLOB_FOLDER_NAME +
+                    APIImportExportConstants.ARCHIVE_PATH_SEPARATOR + hash, new ByteArrayInputStream(blob));
+        }
+
+        String folder = entryName.substring(0, folderEnd);
+        Map<String, String> references = blobReferences.get(folder);
+        if (references == null) {
+            blobReferences.putIfAbsent(folder, new TreeMap<String, String>());
+            references = blobReferences.get(folder);
+        }
+        synchronized (references) {
+            references.put(entryName.substring(folderEnd + 1), hash);
+        }
+    }
+
+    public void writeEntry(String entryName, String content) throws IOException {
+        archiveWriter.writeEntry(entryName, content);
+    }
+
+    /**
+     * Write the blob references of each API folder. Called once all the APIs are exported
+     *
+     * @throws IOException If an error occurs while writing the references
+     */
+    public void writeReferences() throws IOException {
+        for (Map.Entry<String, Map<String, String>> references : blobReferences.entrySet()) {
+            String json;
+            synchronized (references.getValue()) {
+                json = GsonHolder.getExportGson().toJson(references.getValue());
+            }
+            archiveWriter.writeEntry(references.getKey() + APIImportExportConstants.ARCHIVE_PATH_SEPARATOR +
+                    "Meta-information" + APIImportExportConstants.ARCHIVE_PATH_SEPARATOR +
+                    APIImportExportConstants.BLOB_REFERENCES_FILE_NAME, json);
+        }
+    }
+
+    /**
+     * @return Number of distinct blobs written to the archive
+     */
+    public int getBlobCount() {
+        return writtenBlobs.size();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+
+/**
+ * This class writes the entries of an exported API archive as files under a base directory
+ */
+public class DirectoryArchiveWriter implements ArchiveWriter {
+
+    private final File baseDirectory;
+
+    /**
+     * @param baseDirectory Directory under which the archive entries are created
+     */
+    public DirectoryArchiveWriter(String baseDirectory) {
+        this.baseDirectory = new File(baseDirectory);
+    }
+
+    public void writeEntry(String entryName, InputStream content) throws IOException {
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(createEntryFile(entryName));
+            IOUtils.copy(content, outputStream);
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+    }
+
+    public void writeEntry(String entryName, String content) throws IOException {
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(createEntryFile(entryName)),
+                    APIImportExportConstants.CHARSET);
+            IOUtils.copy(new StringReader(content), writer);
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
+    /**
+     * Resolve the file of the given entry and create its parent directories
+     *
+     * @param entryName Relative path of the entry
+     * @return File to write the entry content to
+     * @throws IOException If the parent directories cannot be created
+     */
+    private File createEntryFile(String entryName) throws IOException {
+        File entryFile = new File(baseDirectory, entryName.replace(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR,
+                File.separator));
+        File parent = entryFile.getParentFile();
+        //the directory may be created concurrently by the export of another resource
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Directory creation failed " + parent.getPath());
+        }
+        return entryFile;
+    }
+}
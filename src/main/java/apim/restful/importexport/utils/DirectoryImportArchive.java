@@ -0,0 +1,199 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.APIImportException;
+import apim.restful.importexport.ArchiveManifest;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * This class reads the entries of an API archive which has been extracted to a directory. Entries of
+ * an API of a bulk export may be stored once for all APIs in the blobs folder next to the API folder,
+ * in which case they are resolved through the blob references of the API. Shared blobs are named by
+ * the SHA-256 hash of their content. If the archive had a manifest, its entries have been verified
+ * against it while the archive was extracted, hence the hashes of the manifest are used as they are
+ */
+public class DirectoryImportArchive implements ImportArchive {
+
+    private static final Pattern BLOB_NAME_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final String basePath;
+    private final File blobDirectory;
+    private final Map<String, String> blobReferences;
+    private final ArchiveManifest archiveManifest;
+    private final String folderPrefix;
+
+    /**
+     * @param basePath Location of the extracted folder of the API
+     * @throws APIImportException If the blob references of the API cannot be read
+     */
+    public DirectoryImportArchive(String basePath) throws APIImportException {
+        this(basePath, null);
+    }
+
+    /**
+     * @param basePath        Location of the extracted folder of the API
+     * @param archiveManifest Manifest of the extracted archive, verified on extraction, null if it has none
+     * @throws APIImportException If the blob references of the API cannot be read
+     */
+    public DirectoryImportArchive(String basePath, ArchiveManifest archiveManifest) throws APIImportException {
+        this.basePath = basePath;
+        this.blobDirectory = new File(new File(basePath).getParentFile(), APIImportExportConstants.BLOB_FOLDER_NAME);
+        this.blobReferences = readBlobReferences(new File(basePath +
+                APIImportExportConstants.BLOB_REFERENCES_LOCATION));
+        this.archiveManifest = archiveManifest;
+        this.folderPrefix = new File(basePath).getName() + APIImportExportConstants.ARCHIVE_PATH_SEPARATOR;
+    }
+
+    public boolean hasEntry(String entryPath) {
+        return resolve(entryPath).exists();
+    }
+
+    public InputStream getEntryStream(String entryPath) throws IOException {
+        return new FileInputStream(resolve(entryPath));
+    }
+
+    public File getEntryFile(String entryPath) throws IOException {
+        return resolve(entryPath);
+    }
+
+    public ByteBuffer mapEntry(String entryPath) throws IOException {
+        return ResourceReader.mapFile(resolve(entryPath));
+    }
+
+    public String getEntryChecksum(String entryPath) {
+        String path = normalize(entryPath);
+        String hash = blobReferences.get(path);
+        if (hash != null || archiveManifest == null) {
+            return hash;
+        }
+        ArchiveManifest.Entry manifestEntry = archiveManifest.getEntry(folderPrefix + path);
+        return manifestEntry != null ? manifestEntry.getSha256() : null;
+    }
+
+    public List<String> listEntries(String directoryPath) {
+        List<String> entryNames = new ArrayList<String>();
+        File[] files = new File(basePath + directoryPath).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    entryNames.add(file.getName());
+                }
+            }
+        }
+
+        String directoryName = normalize(directoryPath);
+        if (!directoryName.endsWith(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR)) {
+            directoryName += APIImportExportConstants.ARCHIVE_PATH_SEPARATOR;
+        }
+        for (String referencedEntry : blobReferences.keySet()) {
+            if (referencedEntry.startsWith(directoryName) &&
+                    referencedEntry.indexOf(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR,
+                            directoryName.length()) < 0) {
+                entryNames.add(referencedEntry.substring(directoryName.length()));
+            }
+        }
+        return entryNames;
+    }
+
+    /**
+     * Resolve the file holding the content of an entry, which is either in the API folder or a shared blob
+     *
+     * @param entryPath Relative path of the entry
+     * @return File holding the content of the entry
+     */
+    private File resolve(String entryPath) {
+        String hash = blobReferences.get(normalize(entryPath));
+        if (hash != null) {
+            return new File(blobDirectory, hash);
+        }
+        return new File(basePath + entryPath);
+    }
+
+    /**
+     * Convert an entry path to the form used by the blob references, relative and separated by '/'
+     *
+     * @param entryPath Relative path of the entry
+     * @return Normalized path of the entry
+     */
+    private static String normalize(String entryPath) {
+        String normalizedPath = entryPath.replace(File.separator, APIImportExportConstants.ARCHIVE_PATH_SEPARATOR);
+        while (normalizedPath.startsWith(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR)) {
+            normalizedPath = normalizedPath.substring(1);
+        }
+        return normalizedPath;
+    }
+
+    /**
+     * Read the blob references of an API
+     *
+     * @param referencesFile File holding the blob references
+     * @return Hashes of the referenced blobs keyed by the paths of the entries, empty if there are none
+     * @throws APIImportException If the blob references cannot be read
+     */
+    private static Map<String, String> readBlobReferences(File referencesFile) throws APIImportException {
+        if (!referencesFile.exists()) {
+            return Collections.emptyMap();
+        }
+
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(referencesFile);
+            Map<String, String> blobReferences = GsonHolder.getGson().fromJson(new InputStreamReader(inputStream,
+                    APIImportExportConstants.CHARSET), new TypeToken<Map<String, String>>() {
+            }.getType());
+            if (blobReferences == null) {
+                return Collections.emptyMap();
+            }
+            //hashes are used as file names, hence anything else is rejected
+            for (String hash : blobReferences.values()) {
+                if (hash == null || !BLOB_NAME_PATTERN.matcher(hash).matches()) {
+                    throw new APIImportException("Invalid blob reference of the API : " + hash);
+                }
+            }
+            return blobReferences;
+        } catch (IOException e) {
+            throw new APIImportException("Error in reading blob references of the API. " + e.getMessage());
+        } catch (JsonParseException e) {
+            throw new APIImportException("Error in parsing blob references of the API. " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    public void close() {
+        //extracted directories are owned by the caller
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds the bounded worker pools shared by all the import and export requests of the
+ * web application. Pool and queue sizes are configured through system properties. The pools are
+ * shut down by {@link apim.restful.importexport.ImportExportContextListener} when the web
+ * application is stopped
+ */
+public final class ExecutorServiceHolder {
+
+    //runs a task in the submitting thread once the queue of the pool is full, which slows down the submitter
+    //instead of failing the request. Tasks of a pool which is shut down are rejected, so that no caller
+    //waits for a task which is never run
+    private static final RejectedExecutionHandler callerRunsPolicy = new RejectedExecutionHandler() {
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Worker pool is shut down.");
+            }
+            task.run();
+        }
+    };
+
+    private static final ExecutorService bulkImportExecutor = createExecutor("api-bulk-import",
+            Integer.getInteger(APIImportExportConstants.BULK_IMPORT_WORKERS_PROPERTY,
+                    APIImportExportConstants.DEFAULT_BULK_IMPORT_WORKERS));
+
+    private static final ExecutorService exportExecutor = createExecutor("api-export",
+            Integer.getInteger(APIImportExportConstants.EXPORT_WORKERS_PROPERTY,
+                    APIImportExportConstants.DEFAULT_EXPORT_WORKERS));
+
+    private static final ExecutorService documentExportExecutor = createExecutor("api-document-export",
+            Integer.getInteger(APIImportExportConstants.DOCUMENT_EXPORT_WORKERS_PROPERTY,
+                    APIImportExportConstants.DEFAULT_DOCUMENT_EXPORT_WORKERS));
+
+    private static final ExecutorService archiveExecutor = createExecutor("api-archive",
+            Integer.getInteger(APIImportExportConstants.ARCHIVE_WORKERS_PROPERTY,
+                    Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService jobExecutor = createExecutor("api-job",
+            Integer.getInteger(APIImportExportConstants.JOB_WORKERS_PROPERTY,
+                    APIImportExportConstants.DEFAULT_JOB_WORKERS),
+            new ArrayBlockingQueue<Runnable>(Integer.getInteger(APIImportExportConstants.JOB_QUEUE_SIZE_PROPERTY,
+                    APIImportExportConstants.DEFAULT_JOB_QUEUE_SIZE)), new ThreadPoolExecutor.AbortPolicy());
+
+    private static final ScheduledExecutorService maintenanceExecutor =
+            Executors.newSingleThreadScheduledExecutor(createThreadFactory("api-import-export-maintenance"));
+
+    private ExecutorServiceHolder() {
+    }
+
+    /**
+     * Retrieve the worker pool used to import the APIs of a bulk import
+     *
+     * @return Bulk import worker pool
+     */
+    public static ExecutorService getBulkImportExecutor() {
+        return bulkImportExecutor;
+    }
+
+    /**
+     * Retrieve the worker pool used to retrieve the registry resources of exporting APIs concurrently
+     *
+     * @return Export worker pool
+     */
+    public static ExecutorService getExportExecutor() {
+        return exportExecutor;
+    }
+
+    /**
+     * Retrieve the worker pool used to retrieve the document files of exporting APIs concurrently. It is
+     * separate from the export pool, since document files are retrieved by a task of the export pool
+     *
+     * @return Document export worker pool
+     */
+    public static ExecutorService getDocumentExportExecutor() {
+        return documentExportExecutor;
+    }
+
+    /**
+     * Retrieve the worker pool deflating the chunks of archive entries and writing extracted archive entries.
+     * Its tasks do not wait for other tasks, hence it is sized to the number of processors by default
+     *
+     * @return Archive worker pool
+     */
+    public static ExecutorService getArchiveExecutor() {
+        return archiveExecutor;
+    }
+
+    /**
+     * Retrieve the worker pool running asynchronous export and import jobs. Its queue is bounded, hence
+     * submissions are rejected with a RejectedExecutionException once the queue is full
+     *
+     * @return Job worker pool
+     */
+    public static ExecutorService getJobExecutor() {
+        return jobExecutor;
+    }
+
+    /**
+     * Retrieve the single threaded scheduler running periodic maintenance tasks such as sweeping orphaned
+     * workspaces
+     *
+     * @return Maintenance scheduler
+     */
+    public static ScheduledExecutorService getMaintenanceExecutor() {
+        return maintenanceExecutor;
+    }
+
+    /**
+     * Stop all the worker pools and the maintenance scheduler, interrupting the running tasks, so that
+     * their threads do not hold the class loader of the web application once it is undeployed
+     */
+    public static void shutdown() {
+        ExecutorService[] executors = new ExecutorService[]{bulkImportExecutor, exportExecutor,
+                documentExportExecutor, archiveExecutor, jobExecutor, maintenanceExecutor};
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Create a fixed size pool of daemon threads with a bounded queue. Once the queue is full, tasks are
+     * run by the submitting thread
+     *
+     * @param poolName Prefix of the thread names
+     * @param poolSize Number of threads of the pool
+     * @return Worker pool
+     */
+    private static ExecutorService createExecutor(String poolName, int poolSize) {
+        return createExecutor(poolName, poolSize, new ArrayBlockingQueue<Runnable>(Integer.getInteger(
+                APIImportExportConstants.WORKER_QUEUE_SIZE_PROPERTY,
+                APIImportExportConstants.DEFAULT_WORKER_QUEUE_SIZE)), callerRunsPolicy);
+    }
+
+    /**
+     * Create a fixed size pool of daemon threads
+     *
+     * @param poolName         Prefix of the thread names
+     * @param poolSize         Number of threads of the pool
+     * @param workQueue        Queue holding the tasks waiting for a thread
+     * @param rejectionHandler Handler of the tasks submitted while the queue is full
+     * @return Worker pool
+     */
+    private static ExecutorService createExecutor(String poolName, int poolSize,
+            BlockingQueue<Runnable> workQueue, RejectedExecutionHandler rejectionHandler) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                workQueue, createThreadFactory(poolName), rejectionHandler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create a factory of named daemon threads, so that the pools do not prevent the server from shutting down
+     *
+     * @param poolName Prefix of the thread names
+     * @return Thread factory
+     */
+    private static ThreadFactory createThreadFactory(final String poolName) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, poolName + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.ExportManifest;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class holds the baseline of an incremental export. The baseline is either a point in time,
+ * in which case everything modified after it is exported, or the manifest of a previous export, in
+ * which case everything whose last modified time differs from the recorded one is exported.
+ * Anything without a known last modified time is always exported
+ */
+public class ExportBaseline {
+
+    private final Long since;
+    private final Map<String, Long> recordedTimes;
+
+    /**
+     * @param since Time since which changes are exported, in milliseconds since the epoch
+     */
+    public ExportBaseline(long since) {
+        this.since = since;
+        this.recordedTimes = null;
+    }
+
+    /**
+     * @param previousManifest Manifest of the previous export
+     */
+    public ExportBaseline(ExportManifest previousManifest) {
+        this.since = previousManifest.getExportedAt();
+        this.recordedTimes = new HashMap<String, Long>();
+        for (ExportManifest.APIEntry apiEntry : previousManifest.getAPIs()) {
+            recordedTimes.put(apiEntry.getKey(), apiEntry.getLastUpdated());
+            for (ExportManifest.ResourceEntry resourceEntry : apiEntry.getResources()) {
+                recordedTimes.put(resourceEntry.getRegistryPath(), resourceEntry.getLastModified());
+            }
+        }
+    }
+
+    /**
+     * @return Time since which changes are exported, in milliseconds since the epoch
+     */
+    public Long getSince() {
+        return since;
+    }
+
+    /**
+     * Check whether an API or a registry resource changed after the baseline
+     *
+     * @param key          Key of the API or registry path of the resource
+     * @param lastModified Last modified time of the API or resource, null if not known
+     * @return true if it has to be exported
+     */
+    public boolean isModified(String key, Date lastModified) {
+        if (lastModified == null) {
+            return true;
+        }
+        if (recordedTimes == null) {
+            return lastModified.getTime() > since;
+        }
+        Long recordedTime = recordedTimes.get(key);
+        return recordedTime == null || recordedTime != lastModified.getTime();
+    }
+}
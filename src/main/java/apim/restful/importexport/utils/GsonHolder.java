@@ -0,0 +1,70 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * This class holds the Gson instances shared by all the import and export requests of the web application.
+ * Gson instances are thread safe and cache the reflective metadata of the bound types, e.g. the large API
+ * model, hence they are not created per call. Exported JSON files are written compact, unless pretty
+ * printing is enabled through a system property
+ */
+public final class GsonHolder {
+
+    private static final Gson gson = new Gson();
+
+    private static final Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final boolean isExportPrettyPrinted =
+            Boolean.getBoolean(APIImportExportConstants.EXPORT_PRETTY_PRINT_PROPERTY);
+
+    private GsonHolder() {
+    }
+
+    /**
+     * Retrieve the Gson instance used to parse JSON and to write compact JSON
+     *
+     * @return Compact Gson instance
+     */
+    public static Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * Retrieve the Gson instance writing pretty printed JSON
+     *
+     * @return Pretty printing Gson instance
+     */
+    public static Gson getPrettyGson() {
+        return prettyGson;
+    }
+
+    /**
+     * Retrieve the Gson instance writing the JSON files of exported archives, which is compact by default
+     *
+     * @return Gson instance of exports
+     */
+    public static Gson getExportGson() {
+        return isExportPrettyPrinted ? prettyGson : gson;
+    }
+}
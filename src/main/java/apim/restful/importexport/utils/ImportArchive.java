@@ -0,0 +1,92 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * This interface represents the source of the entries of an API archive being imported. Entry paths
+ * are relative to the folder of the API, e.g. /Meta-information/api.json, and may use either '/' or
+ * the platform file separator
+ */
+public interface ImportArchive {
+
+    /**
+     * Check whether the archive contains the given entry
+     *
+     * @param entryPath Relative path of the entry
+     * @return true if the entry exists, false otherwise
+     */
+    boolean hasEntry(String entryPath);
+
+    /**
+     * Open the content of the given entry. The caller closes the returned stream
+     *
+     * @param entryPath Relative path of the entry
+     * @return Content of the entry
+     * @throws IOException If the entry does not exist or cannot be read
+     */
+    InputStream getEntryStream(String entryPath) throws IOException;
+
+    /**
+     * Retrieve the content of the given entry as a file, for consumers which only accept files or URLs
+     *
+     * @param entryPath Relative path of the entry
+     * @return File holding the content of the entry
+     * @throws IOException If the entry does not exist or cannot be stored as a file
+     */
+    File getEntryFile(String entryPath) throws IOException;
+
+    /**
+     * Map the content of the given entry into memory, if it is held in a file larger than the mapping
+     * threshold of {@link ResourceReader}
+     *
+     * @param entryPath Relative path of the entry
+     * @return Read only buffer over the content of the entry, null if the entry is not worth mapping
+     * @throws IOException If the entry does not exist or cannot be mapped
+     */
+    ByteBuffer mapEntry(String entryPath) throws IOException;
+
+    /**
+     * Retrieve the SHA-256 hash of the given entry, as listed in the manifest of the archive and verified
+     * against the content of the entry
+     *
+     * @param entryPath Relative path of the entry
+     * @return Hash of the entry as a hex string, null if the archive has no manifest
+     */
+    String getEntryChecksum(String entryPath);
+
+    /**
+     * List the names of the files directly under the given directory of the archive
+     *
+     * @param directoryPath Relative path of the directory
+     * @return Names of the files of the directory, empty if the directory does not exist
+     */
+    List<String> listEntries(String directoryPath);
+
+    /**
+     * Release the resources held by the archive
+     */
+    void close();
+}
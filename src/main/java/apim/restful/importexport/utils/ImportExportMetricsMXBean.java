@@ -0,0 +1,40 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import java.util.List;
+
+/**
+ * Management interface exposing the metrics of the export and import phases through JMX
+ */
+public interface ImportExportMetricsMXBean {
+
+    /**
+     * Retrieve the statistics of every phase, tenant and outcome recorded so far
+     *
+     * @return Statistics of the recorded phases
+     */
+    List<PhaseStatistics> getPhaseStatistics();
+
+    /**
+     * Discard all the recorded metrics
+     */
+    void reset();
+}
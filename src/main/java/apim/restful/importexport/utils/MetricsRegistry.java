@@ -0,0 +1,308 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class records timers, counters and byte histograms of the phases of the export and import
+ * processes, tagged by tenant and outcome. Recording a phase only updates atomic counters, hence it
+ * is cheap enough to be done on every request. The metrics are exposed through JMX under
+ * {@value #OBJECT_NAME} and through the metrics service of the web application
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Phases of the export and import processes for which metrics are recorded
+     */
+    public enum Phase {
+        EXPORT_API, EXPORT_THUMBNAIL, EXPORT_DOCUMENTATION, EXPORT_WSDL, EXPORT_SEQUENCE, EXPORT_SWAGGER_DEFINITION,
+        EXPORT_META_INFORMATION, ARCHIVE_API, TRANSFER_UPLOAD, EXTRACT_ARCHIVE, READ_ARCHIVE, IMPORT_API, ADD_API,
+        ADD_IMAGE, ADD_DOCUMENTS, ADD_SEQUENCES, ADD_WSDL, ADD_SWAGGER_DEFINITION, RETRIEVE_TIERS, VALIDATE_API
+    }
+
+    /**
+     * Outcomes of a phase
+     */
+    public enum Outcome {
+        SUCCESS, FAILURE
+    }
+
+    public static final String OBJECT_NAME = "apim.restful.importexport:type=Metrics";
+
+    private static final Log log = LogFactory.getLog(MetricsRegistry.class);
+    //values up to 2^62 are counted in distinct buckets, larger ones in the last bucket
+    private static final int HISTOGRAM_BUCKETS = 64;
+    private static final ConcurrentMap<MetricKey, PhaseMetric> metrics =
+            new ConcurrentHashMap<MetricKey, PhaseMetric>();
+
+    static {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            //the web application may be redeployed within the same JVM
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(new ImportExportMetrics(), objectName);
+        } catch (JMException e) {
+            //metrics are still available through the metrics service
+            log.error("Error while registering the metrics MBean " + e.getMessage());
+        }
+    }
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Unregister the metrics MBean, so that the platform MBean server does not keep the classes of the web
+     * application after it is stopped
+     */
+    public static void unregister() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.error("Error while unregistering the metrics MBean " + e.getMessage());
+        }
+    }
+
+    /**
+     * Start timing a phase. The returned timer has to be stopped once the phase is over, failed
+     * phases are recorded as such unless the timer was marked as succeeded before
+     *
+     * @param phase        Phase being carried out
+     * @param tenantDomain Tenant domain of the requester
+     * @return Timer of the phase
+     */
+    public static PhaseTimer startTimer(Phase phase, String tenantDomain) {
+        return new PhaseTimer(phase, tenantDomain);
+    }
+
+    /**
+     * Retrieve the statistics of every phase, tenant and outcome recorded so far
+     *
+     * @return Statistics of the recorded phases
+     */
+    public static List<PhaseStatistics> getPhaseStatistics() {
+        List<PhaseStatistics> statistics = new ArrayList<PhaseStatistics>();
+        for (Map.Entry<MetricKey, PhaseMetric> metric : metrics.entrySet()) {
+            statistics.add(metric.getValue().snapshot(metric.getKey()));
+        }
+        return statistics;
+    }
+
+    /**
+     * Retrieve the statistics of the phases carried out for a tenant
+     *
+     * @param tenantDomain Tenant domain of the requesters
+     * @return Statistics of the recorded phases of the tenant
+     */
+    public static List<PhaseStatistics> getPhaseStatistics(String tenantDomain) {
+        List<PhaseStatistics> statistics = new ArrayList<PhaseStatistics>();
+        for (Map.Entry<MetricKey, PhaseMetric> metric : metrics.entrySet()) {
+            if (metric.getKey().tenantDomain.equals(tenantDomain)) {
+                statistics.add(metric.getValue().snapshot(metric.getKey()));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Discard all the recorded metrics
+     */
+    public static void reset() {
+        metrics.clear();
+    }
+
+    private static void record(Phase phase, String tenantDomain, Outcome outcome, long elapsedNanos, long bytes) {
+        MetricKey key = new MetricKey(phase, tenantDomain == null ? "" : tenantDomain, outcome);
+        PhaseMetric metric = metrics.get(key);
+        if (metric == null) {
+            PhaseMetric newMetric = new PhaseMetric();
+            metric = metrics.putIfAbsent(key, newMetric);
+            if (metric == null) {
+                metric = newMetric;
+            }
+        }
+        metric.record(elapsedNanos, bytes);
+    }
+
+    /**
+     * Timer of a single run of a phase
+     */
+    public static final class PhaseTimer {
+
+        private final Phase phase;
+        private final String tenantDomain;
+        private final long startTime = System.nanoTime();
+        private long bytes = -1;
+        private boolean succeeded;
+        private boolean stopped;
+
+        private PhaseTimer(Phase phase, String tenantDomain) {
+            this.phase = phase;
+            this.tenantDomain = tenantDomain;
+        }
+
+        /**
+         * Set the number of bytes processed by the phase, phases without a size are left out of the
+         * byte histogram
+         *
+         * @param bytes Number of bytes processed
+         */
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Mark the phase as succeeded
+         */
+        public void succeeded() {
+            succeeded = true;
+        }
+
+        /**
+         * Record the elapsed time, the processed bytes and the outcome of the phase. Only the first call
+         * is recorded
+         */
+        public void stop() {
+            if (!stopped) {
+                stopped = true;
+                record(phase, tenantDomain, succeeded ? Outcome.SUCCESS : Outcome.FAILURE,
+                        System.nanoTime() - startTime, bytes);
+            }
+        }
+    }
+
+    /**
+     * Metrics of a phase carried out for a tenant with an outcome
+     */
+    private static final class PhaseMetric {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalTimeNanos = new AtomicLong();
+        private final AtomicLong maxTimeNanos = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLongArray timeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+        private final AtomicLongArray byteHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        void record(long elapsedNanos, long processedBytes) {
+            count.incrementAndGet();
+            totalTimeNanos.addAndGet(elapsedNanos);
+            long max = maxTimeNanos.get();
+            while (elapsedNanos > max && !maxTimeNanos.compareAndSet(max, elapsedNanos)) {
+                max = maxTimeNanos.get();
+            }
+            timeHistogram.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+            if (processedBytes >= 0) {
+                bytes.addAndGet(processedBytes);
+                byteHistogram.incrementAndGet(getBucket(processedBytes));
+            }
+        }
+
+        PhaseStatistics snapshot(MetricKey key) {
+            return new PhaseStatistics(key.phase.name(), key.tenantDomain, key.outcome.name(), count.get(),
+                    TimeUnit.NANOSECONDS.toMicros(totalTimeNanos.get()),
+                    TimeUnit.NANOSECONDS.toMicros(maxTimeNanos.get()), bytes.get(), toArray(timeHistogram),
+                    toArray(byteHistogram));
+        }
+
+        private static int getBucket(long value) {
+            return Math.min(HISTOGRAM_BUCKETS - Long.numberOfLeadingZeros(Math.max(value, 0L)),
+                    HISTOGRAM_BUCKETS - 1);
+        }
+
+        private static long[] toArray(AtomicLongArray histogram) {
+            int length = histogram.length();
+            while (length > 0 && histogram.get(length - 1) == 0) {
+                length--;
+            }
+            long[] buckets = new long[length];
+            for (int i = 0; i < length; i++) {
+                buckets[i] = histogram.get(i);
+            }
+            return buckets;
+        }
+    }
+
+    /**
+     * Key of the metrics of a phase carried out for a tenant with an outcome
+     */
+    private static final class MetricKey {
+
+        private final Phase phase;
+        private final String tenantDomain;
+        private final Outcome outcome;
+
+        MetricKey(Phase phase, String tenantDomain, Outcome outcome) {
+            this.phase = phase;
+            this.tenantDomain = tenantDomain;
+            this.outcome = outcome;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MetricKey)) {
+                return false;
+            }
+            MetricKey metricKey = (MetricKey) o;
+            return phase == metricKey.phase && outcome == metricKey.outcome &&
+                    tenantDomain.equals(metricKey.tenantDomain);
+        }
+
+        public int hashCode() {
+            return (phase.hashCode() * 31 + tenantDomain.hashCode()) * 31 + outcome.hashCode();
+        }
+    }
+
+    /**
+     * JMX view of the recorded metrics
+     */
+    private static final class ImportExportMetrics implements ImportExportMetricsMXBean {
+
+        public List<PhaseStatistics> getPhaseStatistics() {
+            return MetricsRegistry.getPhaseStatistics();
+        }
+
+        public void reset() {
+            MetricsRegistry.reset();
+        }
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.ArchiveManifest;
+import com.google.gson.JsonParseException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * This class extracts a zipped archive to a directory, writing the entries on a worker pool. Deflated entries
+ * are inflated through the {@link ZipFile} of the archive, while STORED entries are transferred from the
+ * channel of the archive to the channel of the extracted file without being copied through user space.
+ * If the archive has an {@link ArchiveManifest}, at any position, every entry is hashed while it is
+ * extracted and verified against the manifest, in which case STORED entries are copied through a buffer
+ */
+public class ParallelZipExtractor {
+
+    private static final Log log = LogFactory.getLog(ParallelZipExtractor.class);
+
+    //signature of the end of central directory record
+    private static final int END_SIGNATURE = 0x06054b50;
+    //signature of a central directory header
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    //size of the end of central directory record without the comment
+    private static final int END_RECORD_SIZE = 22;
+    //size of a central directory header without the name, extra field and comment
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    //size of a local header without the name and extra field
+    private static final int LOCAL_HEADER_SIZE = 30;
+    //value of a size or offset which is held by the ZIP64 extra field instead
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    //number of bytes transferred to an extracted file at a time
+    private static final long TRANSFER_SIZE = 1048576L;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param executor Worker pool writing the extracted files
+     */
+    public ParallelZipExtractor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Extract an archive to a directory. Entries resolving to a location outside the directory are rejected
+     *
+     * @param sourceFile  Archive to be extracted
+     * @param destination Directory the archive is extracted to
+     * @return Name of the first folder at the root of the archive
+     * @throws IOException If an entry is invalid, does not match the manifest of the archive or an error
+     *                     occurs while extracting it
+     */
+    public String extract(File sourceFile, File destination) throws IOException {
+        String archiveName = null;
+        String destinationPath = destination.getCanonicalPath() + File.separator;
+        List<Future<Void>> pendingEntries = new ArrayList<Future<Void>>();
+        Set<String> entryNames = new HashSet<String>();
+
+        final ZipFile zip = new ZipFile(sourceFile);
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(sourceFile, "r");
+        try {
+            final FileChannel archiveChannel = randomAccessFile.getChannel();
+            final Map<String, Long> storedEntryOffsets = readStoredEntryOffsets(archiveChannel);
+            final ArchiveManifest archiveManifest = readManifest(zip);
+
+            Enumeration<? extends ZipEntry> zipFileEntries = zip.entries();
+            while (zipFileEntries.hasMoreElements()) {
+                final ZipEntry entry = zipFileEntries.nextElement();
+                String currentEntry = entry.getName();
+
+                final File destinationFile = new File(destination, currentEntry);
+                if (!destinationFile.getCanonicalPath().startsWith(destinationPath)) {
+                    throw new IOException("Archive entry " + currentEntry + " is outside of the target directory");
+                }
+
+                //files at the root of a bulk archive, e.g. its manifest, do not name the extracted folder
+                int separatorIndex = currentEntry.indexOf(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR);
+                if (archiveName == null && separatorIndex > 0) {
+                    archiveName = currentEntry.substring(0, separatorIndex);
+                }
+
+                // create the parent directory structure before the files are written concurrently
+                File directory = entry.isDirectory() ? destinationFile : destinationFile.getParentFile();
+                if (directory.mkdirs() && log.isDebugEnabled()) {
+                    log.debug("Creation of folder is successful. Directory Name : " + directory.getName());
+                }
+
+                if (!entry.isDirectory()) {
+                    final ArchiveManifest.Entry manifestEntry = getManifestEntry(archiveManifest, currentEntry);
+                    entryNames.add(currentEntry);
+                    pendingEntries.add(executor.submit(new Callable<Void>() {
+                        public Void call() throws IOException {
+                            MessageDigest digest = manifestEntry != null ? ResourceReader.createSha256Digest() :
+                                    null;
+                            Long localHeaderOffset = storedEntryOffsets.get(entry.getName());
+                            long size;
+                            if (localHeaderOffset != null) {
+                                size = transferStoredEntry(archiveChannel, localHeaderOffset, entry,
+                                        destinationFile, digest);
+                            } else {
+                                size = inflateEntry(zip, entry, destinationFile, digest);
+                            }
+                            if (manifestEntry != null && (manifestEntry.getSize() != size ||
+                                    !manifestEntry.getSha256().equals(new String(Hex.encodeHex(digest.digest()))))) {
+                                throw new IOException("Checksum mismatch of archive entry : " + entry.getName());
+                            }
+                            return null;
+                        }
+                    }));
+                }
+            }
+
+            for (Future<Void> pendingEntry : pendingEntries) {
+                getResult(pendingEntry);
+            }
+            if (archiveManifest != null) {
+                for (ArchiveManifest.Entry manifestEntry : archiveManifest.getEntries()) {
+                    if (!entryNames.contains(manifestEntry.getPath())) {
+                        throw new IOException("Archive is missing an entry listed in its manifest : " +
+                                manifestEntry.getPath());
+                    }
+                }
+            }
+            return archiveName;
+        } finally {
+            //the archive is closed only once no task reads it any longer
+            for (Future<Void> pendingEntry : pendingEntries) {
+                pendingEntry.cancel(false);
+            }
+            for (Future<Void> pendingEntry : pendingEntries) {
+                awaitQuietly(pendingEntry);
+            }
+            IOUtils.closeQuietly(randomAccessFile);
+            zip.close();
+        }
+    }
+
+    /**
+     * Read the manifest of an archive
+     *
+     * @param zip Archive holding the manifest
+     * @return Manifest of the archive, null if it has none
+     * @throws IOException If the manifest cannot be read or parsed
+     */
+    private static ArchiveManifest readManifest(ZipFile zip) throws IOException {
+        ZipEntry manifestEntry = zip.getEntry(APIImportExportConstants.ARCHIVE_MANIFEST_FILE_NAME);
+        if (manifestEntry == null) {
+            return null;
+        }
+
+        InputStream inputStream = zip.getInputStream(manifestEntry);
+        try {
+            ArchiveManifest manifest = GsonHolder.getGson().fromJson(new InputStreamReader(inputStream,
+                    APIImportExportConstants.CHARSET), ArchiveManifest.class);
+            if (manifest == null) {
+                throw new IOException("Manifest of the archive is empty");
+            }
+            return manifest;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid manifest of the archive " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Look up the entry of an archive in its manifest
+     *
+     * @param archiveManifest Manifest of the archive, null if it has none
+     * @param entryName       Name of the entry
+     * @return Entry of the manifest, null if the archive has no manifest or the entry is the manifest itself
+     * @throws IOException If the entry is not listed in the manifest
+     */
+    private static ArchiveManifest.Entry getManifestEntry(ArchiveManifest archiveManifest, String entryName)
+            throws IOException {
+        if (archiveManifest == null || APIImportExportConstants.ARCHIVE_MANIFEST_FILE_NAME.equals(entryName)) {
+            return null;
+        }
+        ArchiveManifest.Entry manifestEntry = archiveManifest.getEntry(entryName);
+        if (manifestEntry == null) {
+            throw new IOException("Entry is not listed in the manifest of the archive : " + entryName);
+        }
+        return manifestEntry;
+    }
+
+    /**
+     * Transfer the content of a STORED entry from the channel of the archive to the extracted file. Content
+     * to be hashed is copied through a buffer instead
+     *
+     * @param archiveChannel    Channel of the archive
+     * @param localHeaderOffset Offset of the local header of the entry
+     * @param entry             Entry to be extracted
+     * @param destinationFile   Extracted file
+     * @param digest            Digest receiving the content of the entry, null if it is not hashed
+     * @return Number of bytes of the entry
+     * @throws IOException If an error occurs while transferring the entry
+     */
+    private static long transferStoredEntry(FileChannel archiveChannel, long localHeaderOffset, ZipEntry entry,
+                                            File destinationFile, MessageDigest digest) throws IOException {
+        ByteBuffer localHeader = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(archiveChannel, localHeader, localHeaderOffset);
+        long position = localHeaderOffset + LOCAL_HEADER_SIZE + (localHeader.getShort(26) & 0xFFFF) +
+                (localHeader.getShort(28) & 0xFFFF);
+        long end = position + entry.getSize();
+        if (end > archiveChannel.size()) {
+            throw new IOException("Archive entry " + entry.getName() + " exceeds the archive");
+        }
+
+        long size = end - position;
+        FileOutputStream outputStream = new FileOutputStream(destinationFile);
+        try {
+            FileChannel outputChannel = outputStream.getChannel();
+            if (digest == null) {
+                while (position < end) {
+                    position += archiveChannel.transferTo(position, Math.min(TRANSFER_SIZE, end - position),
+                            outputChannel);
+                }
+                return size;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(APIImportExportConstants.BUFFER_SIZE);
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                readFully(archiveChannel, buffer, position);
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    outputChannel.write(buffer);
+                }
+                position += buffer.limit();
+            }
+            return size;
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Inflate the content of an entry to the extracted file
+     *
+     * @param zip             Archive holding the entry
+     * @param entry           Entry to be extracted
+     * @param destinationFile Extracted file
+     * @param digest          Digest receiving the content of the entry, null if it is not hashed
+     * @return Number of bytes of the entry
+     * @throws IOException If an error occurs while inflating the entry
+     */
+    private static long inflateEntry(ZipFile zip, ZipEntry entry, File destinationFile, MessageDigest digest)
+            throws IOException {
+        InputStream zipInputStream = null;
+        FileOutputStream outputStream = null;
+        try {
+            zipInputStream = zip.getInputStream(entry);
+            if (digest != null) {
+                zipInputStream = new DigestInputStream(zipInputStream, digest);
+            }
+            ReadableByteChannel inputChannel = Channels.newChannel(zipInputStream);
+            outputStream = new FileOutputStream(destinationFile);
+            FileChannel outputChannel = outputStream.getChannel();
+            long position = 0;
+            long transferred;
+            while ((transferred = outputChannel.transferFrom(inputChannel, position, TRANSFER_SIZE)) > 0) {
+                position += transferred;
+            }
+            return position;
+        } finally {
+            IOUtils.closeQuietly(zipInputStream);
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Read the offsets of the local headers of the STORED entries from the central directory of an archive.
+     * Entries of archives using the ZIP64 extensions are not listed and are extracted through the
+     * {@link ZipFile} instead
+     *
+     * @param archiveChannel Channel of the archive
+     * @return Local header offset of each STORED entry by entry name
+     * @throws IOException If an error occurs while reading the archive
+     */
+    private static Map<String, Long> readStoredEntryOffsets(FileChannel archiveChannel) throws IOException {
+        Map<String, Long> storedEntryOffsets = new HashMap<String, Long>();
+
+        //the end record is followed by a comment of up to 65535 bytes
+        long archiveSize = archiveChannel.size();
+        int tailSize = (int) Math.min(archiveSize, END_RECORD_SIZE + 0xFFFF);
+        ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(archiveChannel, tail, archiveSize - tailSize);
+        int endOffset = -1;
+        for (int i = tailSize - END_RECORD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                endOffset = i;
+                break;
+            }
+        }
+        if (endOffset < 0) {
+            return storedEntryOffsets;
+        }
+
+        long centralDirectorySize = tail.getInt(endOffset + 12) & ZIP64_MAGIC;
+        long centralDirectoryOffset = tail.getInt(endOffset + 16) & ZIP64_MAGIC;
+        if (centralDirectoryOffset == ZIP64_MAGIC || centralDirectoryOffset + centralDirectorySize > archiveSize) {
+            return storedEntryOffsets;
+        }
+
+        ByteBuffer centralDirectory = ByteBuffer.allocate((int) centralDirectorySize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(archiveChannel, centralDirectory, centralDirectoryOffset);
+        int position = 0;
+        while (position + CENTRAL_DIRECTORY_HEADER_SIZE <= centralDirectory.capacity() &&
+                centralDirectory.getInt(position) == CENTRAL_DIRECTORY_SIGNATURE) {
+            int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+            long compressedSize = centralDirectory.getInt(position + 20) & ZIP64_MAGIC;
+            int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = centralDirectory.getInt(position + 42) & ZIP64_MAGIC;
+            if (position + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength > centralDirectory.capacity()) {
+                break;
+            }
+
+            if (method == ZipEntry.STORED && compressedSize != ZIP64_MAGIC && localHeaderOffset != ZIP64_MAGIC) {
+                byte[] name = new byte[nameLength];
+                centralDirectory.position(position + CENTRAL_DIRECTORY_HEADER_SIZE);
+                centralDirectory.get(name);
+                storedEntryOffsets.put(new String(name, APIImportExportConstants.CHARSET), localHeaderOffset);
+            }
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return storedEntryOffsets;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+    }
+
+    /**
+     * Wait for an extraction task to complete
+     *
+     * @param future Pending result of the task
+     * @throws IOException If the task failed or waiting for it got interrupted
+     */
+    private static void getResult(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error while extracting archive entry " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extraction of archive got interrupted");
+        }
+    }
+
+    private static void awaitQuietly(Future<Void> future) {
+        if (!future.isCancelled()) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                //the failure is reported by the task which is waited for first
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * This class writes files to a zipped archive, deflating them on a worker pool. Files are split into chunks
+ * which are deflated independently, each primed with the last 32 KB of the preceding chunk as dictionary and
+ * ended with a sync flush, so that the compressed chunks of a file concatenate to a single deflate stream.
+ * The compressed entries are assembled in order into a standard zip archive, whose local headers carry the
+ * CRC and sizes of the entries. Entries of already compressed files are stored as they are
+ */
+public class ParallelZipWriter {
+
+    //size of the window of a deflate stream, which is the largest useful dictionary
+    private static final int DICTIONARY_SIZE = 32768;
+    //largest size or offset a zip archive without the ZIP64 extensions can hold
+    private static final long MAX_ZIP_SIZE = 0xFFFFFFFFL;
+    //largest number of entries a zip archive without the ZIP64 extensions can hold
+    private static final int MAX_ZIP_ENTRIES = 0xFFFF;
+    //general purpose flag marking entry names encoded in UTF-8
+    private static final int UTF8_FLAG = 0x0800;
+    //version of the zip specification needed to extract deflated entries
+    private static final int ZIP_VERSION = 20;
+
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int maxPendingTasks;
+    private final List<PendingEntry> entries = new ArrayList<PendingEntry>();
+
+    /**
+     * @param executor        Worker pool deflating the chunks
+     * @param chunkSize       Size in bytes of the chunks files are split into
+     * @param maxPendingTasks Number of checksum and deflate tasks submitted ahead of the entry being written,
+     *                        bounding the memory held by compressed chunks and the tasks queued on the pool
+     */
+    public ParallelZipWriter(ExecutorService executor, int chunkSize, int maxPendingTasks) {
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxPendingTasks = maxPendingTasks;
+    }
+
+    /**
+     * Add a file to the archive
+     *
+     * @param entryName Name of the entry, using '/' as the path separator
+     * @param file      File holding the content of the entry
+     */
+    public void addEntry(String entryName, File file) {
+        entries.add(new PendingEntry(entryName, file, null));
+    }
+
+    /**
+     * Add a file whose CRC-32 checksum is already known to the archive, so that it is not read for it again
+     *
+     * @param entryName Name of the entry, using '/' as the path separator
+     * @param file      File holding the content of the entry
+     * @param crc       CRC-32 checksum of the file content
+     */
+    public void addEntry(String entryName, File file, long crc) {
+        entries.add(new PendingEntry(entryName, file, crc));
+    }
+
+    /**
+     * Deflate the added files and write the archive to the given stream. The stream is not closed
+     *
+     * @param outputStream Destination of the archive
+     * @throws IOException If an error occurs while reading the files or writing the archive
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (entries.size() > MAX_ZIP_ENTRIES) {
+            throw new IOException("Too many entries for a zip archive " + entries.size());
+        }
+
+        CountingOutputStream archiveStream = new CountingOutputStream(outputStream);
+        int submitted = 0;
+        int pendingTasks = 0;
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                //the following entries are checked and deflated while the current entry is written
+                while (submitted < entries.size() && (submitted <= i || pendingTasks < maxPendingTasks)) {
+                    pendingTasks += entries.get(submitted).submit();
+                    submitted++;
+                }
+                PendingEntry entry = entries.get(i);
+                pendingTasks -= entry.getTaskCount();
+                entry.writeLocalEntry(archiveStream);
+            }
+
+            long centralDirectoryOffset = archiveStream.getByteCount();
+            for (PendingEntry entry : entries) {
+                entry.writeCentralDirectoryEntry(archiveStream);
+            }
+            long centralDirectorySize = archiveStream.getByteCount() - centralDirectoryOffset;
+            checkZipSize(archiveStream.getByteCount());
+
+            writeInt(archiveStream, 0x06054b50);
+            writeShort(archiveStream, 0);
+            writeShort(archiveStream, 0);
+            writeShort(archiveStream, entries.size());
+            writeShort(archiveStream, entries.size());
+            writeInt(archiveStream, centralDirectorySize);
+            writeInt(archiveStream, centralDirectoryOffset);
+            writeShort(archiveStream, 0);
+            archiveStream.flush();
+        } finally {
+            //tasks of entries which were not written are not needed any longer
+            for (int i = 0; i < submitted; i++) {
+                entries.get(i).cancel();
+            }
+        }
+    }
+
+    /**
+     * Deflate a chunk of a file
+     *
+     * @param file       File to be deflated
+     * @param chunkStart Offset of the chunk in the file
+     * @param chunkEnd   Offset of the end of the chunk in the file
+     * @param level      Compression level
+     * @return Compressed chunk, ending the deflate stream if the chunk is the last one of the file
+     * @throws IOException If an error occurs while reading the file
+     */
+    private static byte[] deflateChunk(File file, long chunkStart, long chunkEnd, int level) throws IOException {
+        int dictionaryLength = (int) Math.min(DICTIONARY_SIZE, chunkStart);
+        byte[] data = new byte[dictionaryLength + (int) (chunkEnd - chunkStart)];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.seek(chunkStart - dictionaryLength);
+            randomAccessFile.readFully(data);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        ByteArrayOutputStream compressedChunk = new ByteArrayOutputStream();
+        byte[] buffer = new byte[APIImportExportConstants.BUFFER_SIZE];
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionaryLength > 0) {
+                deflater.setDictionary(data, 0, dictionaryLength);
+            }
+            deflater.setInput(data, dictionaryLength, data.length - dictionaryLength);
+            if (chunkEnd == file.length()) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressedChunk.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                //a sync flush ends the chunk on a byte boundary without ending the deflate stream
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressedChunk.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return compressedChunk.toByteArray();
+    }
+
+    /**
+     * Compute the CRC-32 checksum of a file
+     *
+     * @param file File to be checked
+     * @return CRC-32 checksum of the file content
+     * @throws IOException If an error occurs while reading the file
+     */
+    private static long getChecksum(File file) throws IOException {
+        CheckedInputStream checkedInputStream = null;
+        try {
+            checkedInputStream = new CheckedInputStream(new FileInputStream(file), new CRC32());
+            IOUtils.copy(checkedInputStream, NullOutputStream.NULL_OUTPUT_STREAM);
+            return checkedInputStream.getChecksum().getValue();
+        } finally {
+            IOUtils.closeQuietly(checkedInputStream);
+        }
+    }
+
+    /**
+     * Retrieve the result of a task of the worker pool
+     *
+     * @param future Pending result of the task
+     * @return Result of the task
+     * @throws IOException If the task failed or waiting for it got interrupted
+     */
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error while compressing archive entry " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compression of archive entry got interrupted");
+        }
+    }
+
+    /**
+     * Convert a time to the MS-DOS date and time format of zip archives
+     *
+     * @param time Time in milliseconds since the epoch
+     * @return Date in the upper and time in the lower 16 bits
+     */
+    private static long toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((year - 1980) << 25) | ((calendar.get(Calendar.MONTH) + 1) << 21) |
+                (calendar.get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11) |
+                (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    /**
+     * Check that a size or offset fits a zip archive without the ZIP64 extensions
+     *
+     * @param size Size or offset
+     * @throws IOException If the size is too large
+     */
+    private static void checkZipSize(long size) throws IOException {
+        if (size > MAX_ZIP_SIZE) {
+            throw new IOException("Archive exceeds the size of a zip archive without ZIP64 extensions");
+        }
+    }
+
+    private static void writeShort(OutputStream outputStream, int value) throws IOException {
+        outputStream.write(value & 0xFF);
+        outputStream.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(OutputStream outputStream, long value) throws IOException {
+        writeShort(outputStream, (int) (value & 0xFFFF));
+        writeShort(outputStream, (int) ((value >>> 16) & 0xFFFF));
+    }
+
+    /**
+     * This class holds a file of the archive together with the tasks preparing its entry
+     */
+    private class PendingEntry {
+
+        private final byte[] name;
+        private final File file;
+        private final boolean stored;
+        private long size;
+        private long dosTime;
+        private long crc;
+        private long compressedSize;
+        private long offset;
+        private Future<Long> checksumTask;
+        private List<Future<byte[]>> chunkTasks = new ArrayList<Future<byte[]>>();
+
+        private final boolean checksumKnown;
+
+        PendingEntry(String entryName, File file, Long crc) {
+            try {
+                this.name = entryName.getBytes(APIImportExportConstants.CHARSET);
+            } catch (java.io.UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            this.file = file;
+            this.stored = ArchiveCompression.isCompressed(entryName);
+            this.checksumKnown = crc != null;
+            if (checksumKnown) {
+                this.crc = crc;
+            }
+        }
+
+        /**
+         * Submit the tasks computing the checksum, unless it is known, and deflating the chunks of the file
+         *
+         * @return Number of submitted tasks
+         * @throws IOException If the file is too large for a zip archive
+         */
+        int submit() throws IOException {
+            size = file.length();
+            dosTime = toDosTime(file.lastModified());
+            checkZipSize(size);
+
+            if (!checksumKnown) {
+                checksumTask = executor.submit(new Callable<Long>() {
+                    public Long call() throws IOException {
+                        return getChecksum(file);
+                    }
+                });
+            }
+            if (!stored) {
+                final int level = ArchiveCompression.getCompressionLevel();
+                long chunkStart = 0;
+                do {
+                    final long start = chunkStart;
+                    final long end = Math.min(size, chunkStart + chunkSize);
+                    chunkTasks.add(executor.submit(new Callable<byte[]>() {
+                        public byte[] call() throws IOException {
+                            return deflateChunk(file, start, end, level);
+                        }
+                    }));
+                    chunkStart = end;
+                } while (chunkStart < size);
+            }
+            return getTaskCount();
+        }
+
+        /**
+         * @return Number of tasks of the entry, being the checksum task and the deflate tasks of its chunks
+         */
+        int getTaskCount() {
+            return (checksumTask != null ? 1 : 0) + chunkTasks.size();
+        }
+
+        /**
+         * Write the local header and the content of the entry, waiting for its tasks to complete
+         *
+         * @param archiveStream Stream of the archive
+         * @throws IOException If an error occurs while writing the entry
+         */
+        void writeLocalEntry(CountingOutputStream archiveStream) throws IOException {
+            offset = archiveStream.getByteCount();
+            checkZipSize(offset);
+            if (checksumTask != null) {
+                crc = getResult(checksumTask);
+            }
+
+            List<byte[]> compressedChunks = new ArrayList<byte[]>();
+            compressedSize = 0;
+            if (stored) {
+                compressedSize = size;
+            } else {
+                for (Future<byte[]> chunkTask : chunkTasks) {
+                    byte[] compressedChunk = getResult(chunkTask);
+                    compressedChunks.add(compressedChunk);
+                    compressedSize += compressedChunk.length;
+                }
+            }
+            checkZipSize(compressedSize);
+
+            writeInt(archiveStream, 0x04034b50);
+            writeShort(archiveStream, ZIP_VERSION);
+            writeShort(archiveStream, UTF8_FLAG);
+            writeShort(archiveStream, stored ? ZipEntry.STORED : ZipEntry.DEFLATED);
+            writeInt(archiveStream, dosTime);
+            writeInt(archiveStream, crc);
+            writeInt(archiveStream, compressedSize);
+            writeInt(archiveStream, size);
+            writeShort(archiveStream, name.length);
+            writeShort(archiveStream, 0);
+            archiveStream.write(name);
+
+            if (stored) {
+                InputStream fileStream = new FileInputStream(file);
+                try {
+                    if (IOUtils.copyLarge(fileStream, archiveStream) != size) {
+                        throw new IOException("File changed while being archived " + file.getPath());
+                    }
+                } finally {
+                    IOUtils.closeQuietly(fileStream);
+                }
+            } else {
+                for (byte[] compressedChunk : compressedChunks) {
+                    archiveStream.write(compressedChunk);
+                }
+            }
+            //compressed chunks are released as soon as they are written
+            chunkTasks = new ArrayList<Future<byte[]>>();
+        }
+
+        /**
+         * Write the central directory header of the entry
+         *
+         * @param archiveStream Stream of the archive
+         * @throws IOException If an error occurs while writing the header
+         */
+        void writeCentralDirectoryEntry(OutputStream archiveStream) throws IOException {
+            writeInt(archiveStream, 0x02014b50);
+            writeShort(archiveStream, ZIP_VERSION);
+            writeShort(archiveStream, ZIP_VERSION);
+            writeShort(archiveStream, UTF8_FLAG);
+            writeShort(archiveStream, stored ? ZipEntry.STORED : ZipEntry.DEFLATED);
+            writeInt(archiveStream, dosTime);
+            writeInt(archiveStream, crc);
+            writeInt(archiveStream, compressedSize);
+            writeInt(archiveStream, size);
+            writeShort(archiveStream, name.length);
+            writeShort(archiveStream, 0);
+            writeShort(archiveStream, 0);
+            writeShort(archiveStream, 0);
+            writeShort(archiveStream, 0);
+            writeInt(archiveStream, 0);
+            writeInt(archiveStream, offset);
+            archiveStream.write(name);
+        }
+
+        void cancel() {
+            if (checksumTask != null) {
+                checksumTask.cancel(true);
+            }
+            for (Future<byte[]> chunkTask : chunkTasks) {
+                chunkTask.cancel(true);
+            }
+        }
+    }
+}
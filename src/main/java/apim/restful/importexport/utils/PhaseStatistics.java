@@ -0,0 +1,103 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * This class is a snapshot of the metrics of a single phase of the export and import processes,
+ * recorded for a tenant and an outcome.
+ * Histograms count values by powers of two: bucket 0 counts zero values and bucket i counts values
+ * from 2^(i-1) up to 2^i - 1. Trailing empty buckets are left out
+ */
+public class PhaseStatistics {
+
+    private final String phase;
+    private final String tenantDomain;
+    private final String outcome;
+    private final long count;
+    private final long totalTimeMicros;
+    private final long maxTimeMicros;
+    private final long bytes;
+    private final long[] timeHistogramMicros;
+    private final long[] byteHistogram;
+
+    /**
+     * @param phase               Name of the phase
+     * @param tenantDomain        Tenant domain of the requesters
+     * @param outcome             Outcome of the phase
+     * @param count               Number of times the phase was carried out
+     * @param totalTimeMicros     Total time spent in the phase in microseconds
+     * @param maxTimeMicros       Longest time spent in the phase in microseconds
+     * @param bytes               Total number of bytes processed by the phase
+     * @param timeHistogramMicros Histogram of the times spent in the phase in microseconds
+     * @param byteHistogram       Histogram of the numbers of bytes processed by the phase
+     */
+    @ConstructorProperties({"phase", "tenantDomain", "outcome", "count", "totalTimeMicros", "maxTimeMicros",
+            "bytes", "timeHistogramMicros", "byteHistogram"})
+    public PhaseStatistics(String phase, String tenantDomain, String outcome, long count, long totalTimeMicros,
+            long maxTimeMicros, long bytes, long[] timeHistogramMicros, long[] byteHistogram) {
+        this.phase = phase;
+        this.tenantDomain = tenantDomain;
+        this.outcome = outcome;
+        this.count = count;
+        this.totalTimeMicros = totalTimeMicros;
+        this.maxTimeMicros = maxTimeMicros;
+        this.bytes = bytes;
+        this.timeHistogramMicros = timeHistogramMicros;
+        this.byteHistogram = byteHistogram;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public String getTenantDomain() {
+        return tenantDomain;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalTimeMicros() {
+        return totalTimeMicros;
+    }
+
+    public long getMaxTimeMicros() {
+        return maxTimeMicros;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long[] getTimeHistogramMicros() {
+        return timeHistogramMicros.clone();
+    }
+
+    public long[] getByteHistogram() {
+        return byteHistogram.clone();
+    }
+}
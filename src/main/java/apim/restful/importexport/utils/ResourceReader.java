@@ -0,0 +1,243 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class reads the resources of an API archive being imported. Entries held in files larger than the
+ * mapping threshold are memory mapped and handed on as buffer views or streams over the mapping, instead of
+ * being copied into heap arrays. The bytes read into the heap and the bytes mapped are counted, so that the
+ * heap allocation of an import can be reported
+ */
+public class ResourceReader implements ImportArchive {
+
+    private static final long mapThreshold = Long.getLong(APIImportExportConstants.IMPORT_MAP_THRESHOLD_PROPERTY,
+            APIImportExportConstants.DEFAULT_IMPORT_MAP_THRESHOLD);
+
+    private final ImportArchive archive;
+    private final AtomicLong heapBytes = new AtomicLong();
+    private final AtomicLong mappedBytes = new AtomicLong();
+
+    /**
+     * @param archive Archive of the API
+     */
+    public ResourceReader(ImportArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Map a file into memory if it is larger than the mapping threshold. The mapping is released once the
+     * buffer is garbage collected, independently of the file being deleted
+     *
+     * @param file File to be mapped
+     * @return Read only buffer over the content of the file, null if the file is below the threshold
+     * @throws IOException If the file cannot be mapped
+     */
+    public static ByteBuffer mapFile(File file) throws IOException {
+        long fileSize = file.length();
+        if (fileSize <= mapThreshold || fileSize > Integer.MAX_VALUE) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        } finally {
+            IOUtils.closeQuietly(randomAccessFile);
+        }
+    }
+
+    public boolean hasEntry(String entryPath) {
+        return archive.hasEntry(entryPath);
+    }
+
+    /**
+     * Open the content of the given entry, which is a stream over the mapping for entries above the mapping
+     * threshold. The caller closes the returned stream
+     *
+     * @param entryPath Relative path of the entry
+     * @return Content of the entry
+     * @throws IOException If the entry does not exist or cannot be read
+     */
+    public InputStream getEntryStream(String entryPath) throws IOException {
+        ByteBuffer mappedContent = archive.mapEntry(entryPath);
+        if (mappedContent != null) {
+            mappedBytes.addAndGet(mappedContent.remaining());
+            return new ByteBufferInputStream(mappedContent);
+        }
+        return archive.getEntryStream(entryPath);
+    }
+
+    public File getEntryFile(String entryPath) throws IOException {
+        return archive.getEntryFile(entryPath);
+    }
+
+    public ByteBuffer mapEntry(String entryPath) throws IOException {
+        ByteBuffer mappedContent = archive.mapEntry(entryPath);
+        if (mappedContent != null) {
+            mappedBytes.addAndGet(mappedContent.remaining());
+        }
+        return mappedContent;
+    }
+
+    public String getEntryChecksum(String entryPath) {
+        return archive.getEntryChecksum(entryPath);
+    }
+
+    public List<String> listEntries(String directoryPath) {
+        return archive.listEntries(directoryPath);
+    }
+
+    public void close() {
+        archive.close();
+    }
+
+    /**
+     * Retrieve the whole content of the given entry, which is a view of the mapping for entries above the
+     * mapping threshold and a heap buffer otherwise
+     *
+     * @param entryPath Relative path of the entry
+     * @return Read only buffer over the content of the entry
+     * @throws IOException If the entry does not exist or cannot be read
+     */
+    public ByteBuffer getEntryBuffer(String entryPath) throws IOException {
+        ByteBuffer content = mapEntry(entryPath);
+        if (content == null) {
+            InputStream inputStream = archive.getEntryStream(entryPath);
+            try {
+                byte[] heapContent = IOUtils.toByteArray(inputStream);
+                heapBytes.addAndGet(heapContent.length);
+                content = ByteBuffer.wrap(heapContent);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * Retrieve the content of the given entry as text. A mapped entry is decoded straight from the mapping
+     *
+     * @param entryPath Relative path of the entry
+     * @return Content of the entry
+     * @throws IOException If the entry does not exist or cannot be read
+     */
+    public String getEntryString(String entryPath) throws IOException {
+        String content = Charset.forName(APIImportExportConstants.CHARSET).decode(getEntryBuffer(entryPath))
+                .toString();
+        //the decoded characters are held in the heap, two bytes each
+        heapBytes.addAndGet(2L * content.length());
+        return content;
+    }
+
+    /**
+     * Compute the SHA-256 hash of a buffer without copying it
+     *
+     * @param content Buffer to be hashed, which is left unchanged
+     * @return Hash of the remaining content of the buffer as a hex string
+     */
+    public static String sha256Hex(ByteBuffer content) {
+        MessageDigest digest = createSha256Digest();
+        digest.update(content.duplicate());
+        return new String(Hex.encodeHex(digest.digest()));
+    }
+
+    /**
+     * Create a digest computing SHA-256 hashes, which every Java platform supports
+     *
+     * @return SHA-256 digest
+     */
+    static MessageDigest createSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return Number of bytes of resources read into the heap by this reader
+     */
+    public long getHeapBytes() {
+        return heapBytes.get();
+    }
+
+    /**
+     * @return Number of bytes of resources mapped by this reader
+     */
+    public long getMappedBytes() {
+        return mappedBytes.get();
+    }
+
+    /**
+     * This class streams the content of a buffer, leaving the buffer itself unchanged
+     */
+    public static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        /**
+         * @param buffer Buffer to be streamed from its position to its limit
+         */
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.ArchiveManifest;
+import com.google.gson.JsonParseException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * This class reads an API archive in a single pass from a stream, such as the multipart upload of an
+ * import request, without storing the archive itself. Entries up to the spill threshold, e.g. api.json,
+ * swagger.json, docs.json and sequences, are kept in memory as long as the entries in memory do not
+ * exceed the memory limit in total. Other entries are spilled to files of a spill directory, which is
+ * created on demand and deleted when the archive is closed. Every entry is hashed while it is read.
+ * If the archive has an {@link ArchiveManifest}, the entries are verified against it, either while
+ * being read if the manifest is the first entry, or once the manifest is read if it is a trailing entry
+ * of a streamed export
+ */
+public class StreamedImportArchive implements ImportArchive {
+
+    private static final Log log = LogFactory.getLog(StreamedImportArchive.class);
+
+    private final Map<String, byte[]> memoryEntries = new HashMap<String, byte[]>();
+    private final Map<String, File> spilledEntries = new HashMap<String, File>();
+    private final Map<String, String> entryChecksums = new HashMap<String, String>();
+    private final Set<String> verifiedEntries = new HashSet<String>();
+    private final List<ArchiveManifest.Entry> unverifiedEntries = new ArrayList<ArchiveManifest.Entry>();
+    private final File spillDirectory;
+    private final long spillThreshold;
+    private final long memoryLimit;
+    private long memoryBytes;
+    private String archiveName;
+    private ArchiveManifest archiveManifest;
+
+    /**
+     * Read all the entries of the given zipped archive
+     *
+     * @param archiveStream  Stream of the zipped archive, which is not closed
+     * @param spillDirectory Directory for the entries exceeding the spill threshold
+     * @param spillThreshold Maximum size in bytes of an entry kept in memory
+     * @param memoryLimit    Maximum total size in bytes of the entries kept in memory
+     * @throws IOException If the archive cannot be read, an entry cannot be spilled or an entry does not
+     *                     match the manifest of the archive
+     */
+    public StreamedImportArchive(InputStream archiveStream, File spillDirectory, long spillThreshold,
+                                 long memoryLimit) throws IOException {
+        this.spillDirectory = spillDirectory;
+        this.spillThreshold = spillThreshold;
+        this.memoryLimit = memoryLimit;
+
+        try {
+            ZipInputStream zipInputStream = new ZipInputStream(archiveStream);
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String entryName = entry.getName().replace('\\', '/');
+                if (APIImportExportConstants.ARCHIVE_MANIFEST_FILE_NAME.equals(entryName)) {
+                    if (archiveManifest != null) {
+                        throw new IOException("Archive has more than one manifest");
+                    }
+                    archiveManifest = readManifest(zipInputStream);
+                    //entries read ahead of a trailing manifest are verified as soon as it is known
+                    for (ArchiveManifest.Entry readEntry : unverifiedEntries) {
+                        verifyEntry(readEntry.getPath(), normalize(readEntry.getPath()), readEntry.getSize(),
+                                readEntry.getSha256());
+                    }
+                    unverifiedEntries.clear();
+                } else {
+                    readEntry(entryName, normalize(entryName), zipInputStream);
+                }
+            }
+            if (archiveManifest != null) {
+                verifyCompleteness();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieve the name of the root folder of the archive
+     *
+     * @return Name of the root folder, null if the archive is empty
+     */
+    public String getArchiveName() {
+        return archiveName;
+    }
+
+    public boolean hasEntry(String entryPath) {
+        String path = normalize(entryPath);
+        return memoryEntries.containsKey(path) || spilledEntries.containsKey(path);
+    }
+
+    public InputStream getEntryStream(String entryPath) throws IOException {
+        String path = normalize(entryPath);
+        byte[] content = memoryEntries.get(path);
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        File spilledFile = spilledEntries.get(path);
+        if (spilledFile != null) {
+            return new FileInputStream(spilledFile);
+        }
+        throw new FileNotFoundException("Entry not found in archive : " + entryPath);
+    }
+
+    public File getEntryFile(String entryPath) throws IOException {
+        String path = normalize(entryPath);
+        File spilledFile = spilledEntries.get(path);
+        if (spilledFile == null) {
+            byte[] content = memoryEntries.get(path);
+            if (content == null) {
+                throw new FileNotFoundException("Entry not found in archive : " + entryPath);
+            }
+            spilledFile = createSpillFile(path);
+            FileUtils.writeByteArrayToFile(spilledFile, content);
+            spilledEntries.put(path, spilledFile);
+            memoryEntries.remove(path);
+            memoryBytes -= content.length;
+        }
+        return spilledFile;
+    }
+
+    public ByteBuffer mapEntry(String entryPath) throws IOException {
+        String path = normalize(entryPath);
+        File spilledFile = spilledEntries.get(path);
+        if (spilledFile != null) {
+            return ResourceReader.mapFile(spilledFile);
+        }
+        if (!memoryEntries.containsKey(path)) {
+            throw new FileNotFoundException("Entry not found in archive : " + entryPath);
+        }
+        //entries kept in memory are already in the heap
+        return null;
+    }
+
+    public String getEntryChecksum(String entryPath) {
+        return entryChecksums.get(normalize(entryPath));
+    }
+
+    public List<String> listEntries(String directoryPath) {
+        String directory = normalize(directoryPath);
+        if (!directory.endsWith(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR)) {
+            directory = directory + APIImportExportConstants.ARCHIVE_PATH_SEPARATOR;
+        }
+        List<String> entryNames = new ArrayList<String>();
+        List<String> paths = new ArrayList<String>(memoryEntries.keySet());
+        paths.addAll(spilledEntries.keySet());
+        for (String path : paths) {
+            if (path.startsWith(directory) &&
+                    path.indexOf(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR, directory.length()) < 0) {
+                entryNames.add(path.substring(directory.length()));
+            }
+        }
+        return entryNames;
+    }
+
+    public void close() {
+        memoryEntries.clear();
+        spilledEntries.clear();
+        entryChecksums.clear();
+        verifiedEntries.clear();
+        unverifiedEntries.clear();
+        memoryBytes = 0;
+        FileUtils.deleteQuietly(spillDirectory);
+    }
+
+    /**
+     * Read the manifest of the archive
+     *
+     * @param zipInputStream Stream positioned at the content of the manifest
+     * @return Manifest of the archive
+     * @throws IOException If the manifest cannot be read or parsed
+     */
+    private static ArchiveManifest readManifest(ZipInputStream zipInputStream) throws IOException {
+        try {
+            ArchiveManifest manifest = GsonHolder.getGson().fromJson(new InputStreamReader(zipInputStream,
+                    APIImportExportConstants.CHARSET), ArchiveManifest.class);
+            if (manifest == null) {
+                throw new IOException("Manifest of the archive is empty");
+            }
+            return manifest;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid manifest of the archive " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read the content of the current entry of the archive, keeping it in memory until it exceeds
+     * the spill threshold or the entries in memory exceed the memory limit. The entry is hashed while
+     * it is read and verified against the manifest, or kept for verification until the manifest is read
+     *
+     * @param entryName      Name of the entry in the archive
+     * @param path           Normalized path of the entry
+     * @param zipInputStream Stream positioned at the content of the entry
+     * @throws IOException If the entry cannot be read or spilled, or does not match the manifest
+     */
+    private void readEntry(String entryName, String path, ZipInputStream zipInputStream) throws IOException {
+        MessageDigest digest = ResourceReader.createSha256Digest();
+        InputStream entryStream = new DigestInputStream(zipInputStream, digest);
+
+        ByteArrayOutputStream memoryContent = new ByteArrayOutputStream();
+        byte[] buffer = new byte[APIImportExportConstants.BUFFER_SIZE];
+        int count;
+        long size = -1;
+        while ((count = entryStream.read(buffer)) != -1) {
+            memoryContent.write(buffer, 0, count);
+            if (memoryContent.size() > spillThreshold || memoryBytes + memoryContent.size() > memoryLimit) {
+                size = spillEntry(path, memoryContent, entryStream);
+                break;
+            }
+        }
+        if (size < 0) {
+            size = memoryContent.size();
+            byte[] previousContent = memoryEntries.put(path, memoryContent.toByteArray());
+            memoryBytes += size - (previousContent == null ? 0 : previousContent.length);
+        }
+
+        String checksum = new String(Hex.encodeHex(digest.digest()));
+        if (archiveManifest != null) {
+            verifyEntry(entryName, path, size, checksum);
+        } else {
+            unverifiedEntries.add(new ArchiveManifest.Entry(entryName, size, checksum));
+        }
+    }
+
+    /**
+     * Check an entry against the manifest of the archive
+     *
+     * @param entryName Name of the entry in the archive
+     * @param path      Normalized path of the entry
+     * @param size      Size of the content of the entry
+     * @param checksum  SHA-256 hash of the content of the entry
+     * @throws IOException If the entry is not listed in the manifest or its content differs
+     */
+    private void verifyEntry(String entryName, String path, long size, String checksum) throws IOException {
+        ArchiveManifest.Entry manifestEntry = archiveManifest.getEntry(entryName);
+        if (manifestEntry == null) {
+            throw new IOException("Entry is not listed in the manifest of the archive : " + entryName);
+        }
+        if (manifestEntry.getSize() != size || !checksum.equals(manifestEntry.getSha256())) {
+            throw new IOException("Checksum mismatch of archive entry : " + entryName);
+        }
+        entryChecksums.put(path, checksum);
+        verifiedEntries.add(entryName);
+    }
+
+    /**
+     * Check that every entry listed in the manifest of the archive has been read. Entries are compared by
+     * name, so that an entry repeated in the archive cannot take the place of a missing one
+     *
+     * @throws IOException If an entry listed in the manifest is missing from the archive
+     */
+    private void verifyCompleteness() throws IOException {
+        for (ArchiveManifest.Entry manifestEntry : archiveManifest.getEntries()) {
+            if (!verifiedEntries.contains(manifestEntry.getPath())) {
+                throw new IOException("Archive is missing an entry listed in its manifest : " +
+                        manifestEntry.getPath());
+            }
+        }
+    }
+
+    /**
+     * Move an entry exceeding the spill threshold to a file, followed by the rest of its content
+     *
+     * @param path          Normalized path of the entry
+     * @param memoryContent Content of the entry read so far
+     * @param entryStream   Stream positioned at the rest of the content of the entry
+     * @return Size of the entry
+     * @throws IOException If the entry cannot be spilled
+     */
+    private long spillEntry(String path, ByteArrayOutputStream memoryContent, InputStream entryStream)
+            throws IOException {
+        File spillFile = createSpillFile(path);
+        OutputStream outputStream = null;
+        long size;
+        try {
+            outputStream = new FileOutputStream(spillFile);
+            memoryContent.writeTo(outputStream);
+            size = memoryContent.size() + IOUtils.copyLarge(entryStream, outputStream);
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+        spilledEntries.put(path, spillFile);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Entry " + path + " spilled to " + spillFile.getPath());
+        }
+        return size;
+    }
+
+    /**
+     * Create a file in the spill directory for an entry. Spill files are named by their sequence rather
+     * than the entry path, so that entry paths cannot point outside the spill directory
+     *
+     * @param path Normalized path of the entry
+     * @return File to hold the content of the entry
+     * @throws IOException If the spill directory cannot be created
+     */
+    private File createSpillFile(String path) throws IOException {
+        if (!spillDirectory.mkdirs() && !spillDirectory.isDirectory()) {
+            throw new IOException("Directory creation failed " + spillDirectory.getPath());
+        }
+        String fileName = "entry-" + spilledEntries.size();
+        int extensionIndex = path.lastIndexOf('.');
+        if (extensionIndex > path.lastIndexOf(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR)) {
+            //the extension is kept, since consumers such as the WSDL import rely on it
+            fileName = fileName + path.substring(extensionIndex);
+        }
+        return new File(spillDirectory, fileName);
+    }
+
+    /**
+     * Normalize an entry path to '/' separators relative to the root folder of the archive. The root
+     * folder of the archive is recorded from the first entry
+     *
+     * @param entryName Name of an entry of the archive or an entry path of the importer
+     * @return Normalized path starting with '/'
+     */
+    private String normalize(String entryName) {
+        String path = entryName.replace('\\', '/');
+        if (path.startsWith(APIImportExportConstants.ARCHIVE_PATH_SEPARATOR)) {
+            return path;
+        }
+        int rootIndex = path.indexOf('/');
+        if (archiveName == null) {
+            archiveName = rootIndex < 0 ? path : path.substring(0, rootIndex);
+        }
+        return rootIndex < 0 ? APIImportExportConstants.ARCHIVE_PATH_SEPARATOR + path : path.substring(rootIndex);
+    }
+}
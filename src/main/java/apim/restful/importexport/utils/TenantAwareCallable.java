@@ -0,0 +1,62 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport.utils;
+
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
+
+import java.util.concurrent.Callable;
+
+/**
+ * This class runs a task of an import or export on a worker thread within a tenant flow of the
+ * requesting user, so that provider and registry operations are carried out in the correct tenant
+ *
+ * @param <V> Result type of the task
+ */
+public abstract class TenantAwareCallable<V> implements Callable<V> {
+
+    private final String userName;
+
+    /**
+     * @param userName User name of the requester
+     */
+    protected TenantAwareCallable(String userName) {
+        this.userName = userName;
+    }
+
+    public V call() throws Exception {
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+            carbonContext.setTenantDomain(MultitenantUtils.getTenantDomain(userName), true);
+            carbonContext.setUsername(MultitenantUtils.getTenantAwareUsername(userName));
+            return callInTenantFlow();
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    /**
+     * Carry out the task within the tenant flow of the requester
+     *
+     * @return Result of the task
+     * @throws Exception If the task fails
+     */
+    protected abstract V callInTenantFlow() throws Exception;
+}
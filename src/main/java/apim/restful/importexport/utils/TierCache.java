@@ -0,0 +1,110 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.ImportContext;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.apimgt.api.APIManagementException;
+import org.wso2.carbon.apimgt.api.model.Tier;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class caches the tiers of each tenant, against which the tiers of imported APIs are validated.
+ * A bulk import into a tenant would otherwise retrieve the same tiers for every API of the archive. Tiers
+ * are cached for a short configurable period, so that tiers added to a tenant are soon picked up
+ */
+public final class TierCache {
+
+    private static final Log log = LogFactory.getLog(TierCache.class);
+    private static final Cache<String, Set<Tier>> tierCache = CacheBuilder.newBuilder()
+            .maximumSize(Long.getLong(APIImportExportConstants.TIER_CACHE_SIZE_PROPERTY,
+                    APIImportExportConstants.DEFAULT_TIER_CACHE_SIZE))
+            .expireAfterWrite(Long.getLong(APIImportExportConstants.TIER_CACHE_EXPIRY_PROPERTY,
+                    APIImportExportConstants.DEFAULT_TIER_CACHE_EXPIRY), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+
+    private TierCache() {
+    }
+
+    /**
+     * Retrieve the tiers of the tenant of an import request, from the cache if they were retrieved recently
+     *
+     * @param importContext Context of the import request
+     * @return Unmodifiable set of the tiers of the tenant
+     * @throws APIManagementException If the tiers cannot be retrieved from the provider
+     */
+    public static Set<Tier> getTiers(ImportContext importContext) throws APIManagementException {
+        String tenantDomain = importContext.getTenantDomain();
+        Set<Tier> tiers = tierCache.getIfPresent(tenantDomain);
+        if (tiers != null) {
+            return tiers;
+        }
+
+        MetricsRegistry.PhaseTimer timer = MetricsRegistry.startTimer(MetricsRegistry.Phase.RETRIEVE_TIERS,
+                tenantDomain);
+        try {
+            tiers = Collections.unmodifiableSet(new HashSet<Tier>(importContext.getProvider().getTiers()));
+            timer.succeeded();
+        } finally {
+            timer.stop();
+        }
+        tierCache.put(tenantDomain, tiers);
+
+        if (log.isDebugEnabled()) {
+            log.debug(tiers.size() + " tiers of tenant " + tenantDomain + " cached");
+        }
+        return tiers;
+    }
+
+    /**
+     * Discard the cached tiers of all the tenants
+     */
+    public static void invalidate() {
+        tierCache.invalidateAll();
+    }
+
+    /**
+     * Discard the cached tiers of a tenant, e.g. after tiers were added to the tenant
+     *
+     * @param tenantDomain Tenant domain
+     */
+    public static void invalidate(String tenantDomain) {
+        tierCache.invalidate(tenantDomain);
+    }
+
+    /**
+     * Retrieve hit and miss counters of the tier cache
+     *
+     * @return Statistics of the tier cache
+     */
+    public static CacheStats getStats() {
+        return tierCache.stats();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIExportException;
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.WorkspaceQuotaExceededException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class manages the temporary directories used by export and import requests. Each request
+ * allocates its own workspace under a common root in the temporary directory and releases it once
+ * the response is complete. Workspaces left behind, e.g. by a restart, are swept in the background
+ * and no workspace is allocated while the workspaces exceed the configured disk quota. The disk usage
+ * of the workspaces is measured periodically in the background, not by the requests
+ */
+public final class WorkspaceManager {
+
+    private static final Log log = LogFactory.getLog(WorkspaceManager.class);
+
+    private static final File workspaceRoot = new File(System.getProperty(APIImportExportConstants.TEMP_DIR),
+            APIImportExportConstants.WORKSPACE_ROOT_NAME);
+
+    private static final Set<File> activeWorkspaces =
+            Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    private static final long quota = Long.getLong(APIImportExportConstants.WORKSPACE_QUOTA_PROPERTY,
+            APIImportExportConstants.DEFAULT_WORKSPACE_QUOTA);
+
+    private static final long maxAge = TimeUnit.SECONDS.toMillis(Long.getLong(
+            APIImportExportConstants.WORKSPACE_MAX_AGE_PROPERTY, APIImportExportConstants.DEFAULT_WORKSPACE_MAX_AGE));
+
+    //number of bytes stored in workspaces as of the last measurement
+    private static volatile long usage;
+
+    static {
+        long sweepInterval = Long.getLong(APIImportExportConstants.WORKSPACE_SWEEP_INTERVAL_PROPERTY,
+                APIImportExportConstants.DEFAULT_WORKSPACE_SWEEP_INTERVAL);
+        ExecutorServiceHolder.getMaintenanceExecutor().scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                sweepOrphanedWorkspaces();
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+
+        long usageInterval = Long.getLong(APIImportExportConstants.WORKSPACE_USAGE_INTERVAL_PROPERTY,
+                APIImportExportConstants.DEFAULT_WORKSPACE_USAGE_INTERVAL);
+        ExecutorServiceHolder.getMaintenanceExecutor().scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                usage = getUsage(workspaceRoot);
+            }
+        }, 0, usageInterval, TimeUnit.SECONDS);
+    }
+
+    private WorkspaceManager() {
+    }
+
+    /**
+     * Allocate a new empty workspace. The workspace must be released by the caller once it is no longer used
+     *
+     * @return Directory of the workspace
+     * @throws WorkspaceQuotaExceededException If the workspaces exceed the disk quota
+     * @throws APIExportException              If the workspace cannot be created
+     */
+    public static File allocateWorkspace() throws APIExportException {
+        if (usage >= quota) {
+            log.error("Workspace quota exceeded. " + usage + " bytes in use");
+            throw new WorkspaceQuotaExceededException("Workspace quota of " + quota + " bytes exceeded");
+        }
+
+        if (!workspaceRoot.mkdirs() && !workspaceRoot.isDirectory()) {
+            throw new APIExportException("Directory creation failed " + workspaceRoot.getPath());
+        }
+        //random UUIDs do not collide in practice, mkdir guarantees that an existing directory is never shared
+        File workspace = new File(workspaceRoot, UUID.randomUUID().toString());
+        if (!workspace.mkdir()) {
+            throw new APIExportException("Directory creation failed " + workspace.getPath());
+        }
+        activeWorkspaces.add(workspace);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Workspace allocated " + workspace.getPath());
+        }
+        return workspace;
+    }
+
+    /**
+     * Delete a workspace and all its content
+     *
+     * @param workspace Directory of the workspace, ignored if null
+     */
+    public static void releaseWorkspace(File workspace) {
+        if (workspace == null) {
+            return;
+        }
+        //the workspace may already be deleted by its owner, e.g. as the spill directory of an import
+        if (!FileUtils.deleteQuietly(workspace) && workspace.exists()) {
+            //left for the sweeper, which deletes the workspace once it is no longer active
+            log.warn("Failed to delete workspace " + workspace.getPath());
+        }
+        activeWorkspaces.remove(workspace);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Workspace released " + workspace.getPath());
+        }
+    }
+
+    /**
+     * Sum up the sizes of the files under a directory. Workspaces are released concurrently, hence
+     * files vanishing during the walk are counted as empty
+     *
+     * @param directory Directory to be measured
+     * @return Number of bytes stored under the directory
+     */
+    private static long getUsage(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0L;
+        }
+        long usage = 0L;
+        for (File file : files) {
+            usage += file.isDirectory() ? getUsage(file) : file.length();
+        }
+        return usage;
+    }
+
+    /**
+     * Delete the workspaces which are not allocated to a request in progress and have not been
+     * modified within the maximum age
+     */
+    private static void sweepOrphanedWorkspaces() {
+        File[] workspaces = workspaceRoot.listFiles();
+        if (workspaces == null) {
+            return;
+        }
+
+        long expiryTime = System.currentTimeMillis() - maxAge;
+        int sweptCount = 0;
+        for (File workspace : workspaces) {
+            if (!activeWorkspaces.contains(workspace) && workspace.lastModified() < expiryTime &&
+                    FileUtils.deleteQuietly(workspace)) {
+                sweptCount++;
+            }
+        }
+        if (sweptCount > 0) {
+            log.info(sweptCount + " orphaned workspaces deleted");
+        }
+    }
+}
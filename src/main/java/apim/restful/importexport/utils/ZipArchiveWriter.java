@@ -0,0 +1,171 @@
+/*
+ *
+ *  Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * /
+ */
+
+package apim.restful.importexport.utils;
+
+import apim.restful.importexport.APIImportExportConstants;
+import apim.restful.importexport.ArchiveManifest;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This class writes the entries of an exported API archive directly into a zipped stream,
+ * without materializing them on the file system. Entries are compressed as decided by
+ * {@link ArchiveCompression}. The content of an entry is read before the archive is locked, so that
+ * resources written concurrently are retrieved in parallel and only their copy into the archive is
+ * serialized. Content up to the buffer threshold is read into memory and larger content is stored in
+ * the spill directory, or copied from its source while the archive is locked if there is none.
+ * The size and SHA-256 hash of every entry are recorded while it is read, and the resulting
+ * {@link ArchiveManifest} is written as the last entry of the archive, since the entries of a streamed
+ * archive are not known before they are written
+ */
+public class ZipArchiveWriter implements ArchiveWriter {
+
+    private final ZipOutputStream zipOutputStream;
+    private final File spillDirectory;
+    private final ArchiveManifest archiveManifest = new ArchiveManifest();
+    private final long bufferThreshold = Long.getLong(APIImportExportConstants.EXPORT_BUFFER_THRESHOLD_PROPERTY,
+            APIImportExportConstants.DEFAULT_EXPORT_BUFFER_THRESHOLD);
+
+    /**
+     * @param outputStream Stream to which the zipped archive is written
+     */
+    public ZipArchiveWriter(OutputStream outputStream) {
+        this(outputStream, null);
+    }
+
+    /**
+     * @param outputStream   Stream to which the zipped archive is written
+     * @param spillDirectory Directory for the content of entries larger than the buffer threshold, null to copy
+     *                       such content from its source while the archive is locked
+     */
+    public ZipArchiveWriter(OutputStream outputStream, File spillDirectory) {
+        this.zipOutputStream = new ZipOutputStream(outputStream);
+        this.spillDirectory = spillDirectory;
+    }
+
+    public void writeEntry(String entryName, InputStream content) throws IOException {
+        MessageDigest digest = ResourceReader.createSha256Digest();
+        InputStream digestStream = new DigestInputStream(content, digest);
+
+        //one byte more than the threshold is read to find out whether the content fits into the buffer
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        IOUtils.copyLarge(digestStream, buffer, 0, bufferThreshold + 1L);
+        if (buffer.size() <= bufferThreshold) {
+            copyEntry(entryName, new ByteArrayInputStream(buffer.toByteArray()));
+            addManifestEntry(entryName, buffer.size(), digest);
+            return;
+        }
+
+        InputStream remainingContent = new SequenceInputStream(new ByteArrayInputStream(buffer.toByteArray()),
+                digestStream);
+        if (spillDirectory == null) {
+            addManifestEntry(entryName, copyEntry(entryName, remainingContent), digest);
+            return;
+        }
+
+        File spillFile = File.createTempFile("entry", null, spillDirectory);
+        OutputStream spillStream = null;
+        InputStream spilledContent = null;
+        try {
+            spillStream = new FileOutputStream(spillFile);
+            long size = IOUtils.copyLarge(remainingContent, spillStream);
+            spillStream.close();
+
+            spilledContent = new FileInputStream(spillFile);
+            copyEntry(entryName, spilledContent);
+            addManifestEntry(entryName, size, digest);
+        } finally {
+            IOUtils.closeQuietly(spillStream);
+            IOUtils.closeQuietly(spilledContent);
+            FileUtils.deleteQuietly(spillFile);
+        }
+    }
+
+    public void writeEntry(String entryName, String content) throws IOException {
+        byte[] bytes = content.getBytes(APIImportExportConstants.CHARSET);
+        writeBytes(entryName, bytes);
+        archiveManifest.addEntry(new ArchiveManifest.Entry(entryName, bytes.length, DigestUtils.sha256Hex(bytes)));
+    }
+
+    /**
+     * Write an entry held in memory into the archive
+     *
+     * @param entryName Name of the entry
+     * @param content   Content of the entry
+     * @throws IOException If an error occurs while writing the entry
+     */
+    private synchronized void writeBytes(String entryName, byte[] content) throws IOException {
+        ArchiveCompression.putNextEntry(zipOutputStream, entryName);
+        zipOutputStream.write(content);
+        zipOutputStream.closeEntry();
+    }
+
+    /**
+     * Copy the content of an entry into the archive, which is locked until the entry is complete
+     *
+     * @param entryName Name of the entry
+     * @param content   Content of the entry
+     * @return Number of bytes of the entry
+     * @throws IOException If an error occurs while writing the entry
+     */
+    private synchronized long copyEntry(String entryName, InputStream content) throws IOException {
+        ArchiveCompression.putNextEntry(zipOutputStream, entryName);
+        long size = IOUtils.copyLarge(content, zipOutputStream);
+        zipOutputStream.closeEntry();
+        return size;
+    }
+
+    /**
+     * Record a written entry in the manifest of the archive
+     *
+     * @param entryName Name of the entry
+     * @param size      Number of bytes of the entry
+     * @param digest    SHA-256 digest which has read the whole content of the entry
+     */
+    private void addManifestEntry(String entryName, long size, MessageDigest digest) {
+        archiveManifest.addEntry(new ArchiveManifest.Entry(entryName, size, new String(Hex.encodeHex(
+                digest.digest()))));
+    }
+
+    /**
+     * Write the manifest and the central directory of the archive. The underlying stream is left open
+     *
+     * @throws IOException If an error occurs while completing the archive
+     */
+    public synchronized void finish() throws IOException {
+        writeBytes(APIImportExportConstants.ARCHIVE_MANIFEST_FILE_NAME, GsonHolder.getExportGson()
+                .toJson(archiveManifest).getBytes(APIImportExportConstants.CHARSET));
+        zipOutputStream.finish();
+    }
+}